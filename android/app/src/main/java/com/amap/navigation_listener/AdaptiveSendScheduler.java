@@ -0,0 +1,128 @@
+package com.amap.navigation_listener;
+
+import java.util.Objects;
+
+// 自适应发送调度器
+// 根据到下一个动作的距离和车速决定发送频率：临近转向或高速接近路口时高频发送，
+// 长直路巡航时大幅降频；道路、动作或导航状态变化立即发送；长时间无变化时按心跳间隔重发
+public class AdaptiveSendScheduler {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    public static final long FAST_INTERVAL_MS = 200;
+    public static final long NORMAL_INTERVAL_MS = 1000;
+    public static final long CRUISE_INTERVAL_MS = 3000;
+    public static final long HEARTBEAT_INTERVAL_MS = 5000;
+
+    // 距离下一个动作小于该值时高频发送
+    public static final int NEAR_MANOEUVRE_METERS = 300;
+    // 高速行驶且预计在该时间内到达动作点时同样高频发送
+    public static final int HIGH_SPEED_KMH = 80;
+    public static final int FAST_TIME_TO_MANOEUVRE_SECONDS = 30;
+    // 距离足够远且预计到达时间足够长时视为巡航
+    public static final int CRUISE_DISTANCE_METERS = 2000;
+    public static final int CRUISE_TIME_TO_MANOEUVRE_SECONDS = 90;
+
+    // 动作或道路变化属于提示性变化，必须马上送达
+    private static final int URGENT_FIELDS = NavigationData.FIELD_ROAD_NAME
+            | NavigationData.FIELD_ACTION
+            | NavigationData.FIELD_ACTIVE;
+
+    private NavigationSnapshot lastSent;
+    private long lastSentTime;
+    private NavigationSnapshot pending;
+
+    // 统计
+    private long submitted;
+    private long sent;
+    private long heartbeats;
+
+    // 提交最新数据，未发出的旧数据直接被替换
+    public synchronized void submit(NavigationSnapshot data) {
+        submitted++;
+        pending = data;
+    }
+
+    // 重新连接后立即发送当前数据
+    public synchronized void reset() {
+        if (pending == null) {
+            pending = lastSent;
+        }
+        lastSent = null;
+        lastSentTime = 0;
+    }
+
+    // 返回当前应当发送的数据，不需要发送时返回null
+    public synchronized NavigationSnapshot poll(long nowMs) {
+        long deadline = nextDeadline();
+        if (deadline == NO_DEADLINE || nowMs < deadline) {
+            return null;
+        }
+
+        NavigationSnapshot data = pending != null ? pending : lastSent;
+        if (pending == null) {
+            heartbeats++;
+        }
+        pending = null;
+        lastSent = data;
+        lastSentTime = nowMs;
+        sent++;
+        return data;
+    }
+
+    // 下一次需要调用poll的时间
+    public synchronized long nextDeadline() {
+        if (lastSent == null) {
+            return pending != null ? 0 : NO_DEADLINE;
+        }
+        if (pending == null || pending.equals(lastSent)) {
+            return lastSentTime + HEARTBEAT_INTERVAL_MS;
+        }
+        if ((changedFields(pending, lastSent) & URGENT_FIELDS) != 0) {
+            return lastSentTime;
+        }
+        return lastSentTime + intervalFor(pending);
+    }
+
+    // 根据驾驶情况选择发送间隔
+    public static long intervalFor(NavigationSnapshot data) {
+        if (!data.isActive()) {
+            return CRUISE_INTERVAL_MS;
+        }
+
+        int distance = data.getDistance();
+        int speed = data.getSpeed();
+        if (distance <= NEAR_MANOEUVRE_METERS) {
+            return FAST_INTERVAL_MS;
+        }
+
+        // 速度为0时视为无限远
+        long secondsToManoeuvre = speed > 0 ? distance * 36L / (speed * 10L) : Long.MAX_VALUE;
+        if (speed >= HIGH_SPEED_KMH && secondsToManoeuvre <= FAST_TIME_TO_MANOEUVRE_SECONDS) {
+            return FAST_INTERVAL_MS;
+        }
+        if (distance >= CRUISE_DISTANCE_METERS && secondsToManoeuvre >= CRUISE_TIME_TO_MANOEUVRE_SECONDS) {
+            return CRUISE_INTERVAL_MS;
+        }
+        return NORMAL_INTERVAL_MS;
+    }
+
+    private static int changedFields(NavigationSnapshot a, NavigationSnapshot b) {
+        int mask = 0;
+        if (!Objects.equals(a.getRoadName(), b.getRoadName())) {
+            mask |= NavigationData.FIELD_ROAD_NAME;
+        }
+        if (!Objects.equals(a.getAction(), b.getAction())) {
+            mask |= NavigationData.FIELD_ACTION;
+        }
+        if (a.isActive() != b.isActive()) {
+            mask |= NavigationData.FIELD_ACTIVE;
+        }
+        return mask;
+    }
+
+    public synchronized String getStats() {
+        return "提交: " + submitted +
+                ", 发送: " + sent +
+                ", 心跳: " + heartbeats;
+    }
+}
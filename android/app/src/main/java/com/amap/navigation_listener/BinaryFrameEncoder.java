@@ -0,0 +1,257 @@
+package com.amap.navigation_listener;
+
+import java.util.Arrays;
+
+// 二进制帧编码器，每个编码组一个实例，组内所有设备收到相同的帧序列
+// 道路名称通过字典ID传输；v2起只发送变化的字段，并定期插入关键帧。
+// 关键帧总是重新定义当前道路，v1没有增量帧，请求关键帧时在下一帧重新定义当前道路
+public class BinaryFrameEncoder {
+    private static final int NO_ROAD = 0;
+
+    // 关键帧间隔，两个条件满足其一即发送关键帧
+    public static final int KEYFRAME_INTERVAL_FRAMES = 50;
+    public static final long KEYFRAME_INTERVAL_MS = 10000;
+
+    private final int version;
+
+    // 字典槽位1..capacity，按轮转方式复用
+    private final String[] roadDictionary;
+    private int nextRoadSlot = 1;
+
+    private final byte[] buffer = new byte[NavigationProtocol.HEADER_SIZE + NavigationProtocol.MAX_BODY_SIZE];
+
+    // 上一帧发送的内容
+    private boolean hasSent;
+    private String lastRoadName;
+    private String lastAction;
+    private int lastDistance;
+    private int lastRemainingTime;
+    private int lastSpeed;
+    private boolean lastActive;
+
+    private int sequence;
+    private int framesSinceKeyframe;
+    private long lastKeyframeTime;
+    private boolean keyframeRequested;
+
+    // 统计
+    private long keyframeCount;
+    private long deltaCount;
+
+    public BinaryFrameEncoder(NavigationProtocol.Capabilities capabilities) {
+        this(capabilities.getVersion(), capabilities.getRoadDictionaryCapacity());
+    }
+
+    public BinaryFrameEncoder(int version, int roadDictionaryCapacity) {
+        this.version = version;
+        roadDictionary = new String[Math.max(roadDictionaryCapacity, 1) + 1];
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // 对端请求重新同步时调用，下一帧发送关键帧
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    // 有设备没有收到之前的道路定义（新加入组或丢了帧）时调用：清空字典并发送关键帧，
+    // 之后每条道路第一次用到时都会重新定义，帧序号保持连续
+    public void resetDictionary() {
+        Arrays.fill(roadDictionary, null);
+        nextRoadSlot = 1;
+        keyframeRequested = true;
+    }
+
+    public byte[] encode(NavigationSnapshot data, long nowMs) {
+        String roadName = data.getRoadName() != null ? data.getRoadName() : "";
+        String action = data.getAction() != null ? data.getAction() : "";
+
+        int roadId = findRoad(roadName);
+        boolean newRoad = false;
+        if (roadId == NO_ROAD && !roadName.isEmpty()) {
+            roadId = assignRoad(roadName);
+            newRoad = true;
+        }
+
+        byte[] frame;
+        if (version < NavigationProtocol.VERSION_2) {
+            boolean keyframe = keyframeRequested;
+            frame = encodeFullV1(data, roadId, newRoad || keyframe, action);
+            keyframeRequested = false;
+            if (keyframe) {
+                keyframeCount++;
+            }
+        } else if (needsKeyframe(nowMs)) {
+            frame = encodeV2(NavigationProtocol.FRAME_FULL, NavigationData.ALL_FIELDS, data, roadId, true, action);
+            framesSinceKeyframe = 0;
+            lastKeyframeTime = nowMs;
+            keyframeRequested = false;
+            keyframeCount++;
+        } else {
+            int mask = changedFields(data, roadName, action);
+            frame = encodeV2(NavigationProtocol.FRAME_DELTA, mask, data, roadId, newRoad, action);
+            framesSinceKeyframe++;
+            deltaCount++;
+        }
+
+        hasSent = true;
+        lastRoadName = roadName;
+        lastAction = action;
+        lastDistance = data.getDistance();
+        lastRemainingTime = data.getRemainingTime();
+        lastSpeed = data.getSpeed();
+        lastActive = data.isActive();
+        return frame;
+    }
+
+    // 重新连接后对端状态已清空
+    public void reset() {
+        Arrays.fill(roadDictionary, null);
+        nextRoadSlot = 1;
+        hasSent = false;
+        sequence = 0;
+        framesSinceKeyframe = 0;
+        keyframeRequested = false;
+    }
+
+    public long getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    public long getDeltaCount() {
+        return deltaCount;
+    }
+
+    private boolean needsKeyframe(long nowMs) {
+        return !hasSent
+                || keyframeRequested
+                || framesSinceKeyframe >= KEYFRAME_INTERVAL_FRAMES
+                || nowMs - lastKeyframeTime >= KEYFRAME_INTERVAL_MS;
+    }
+
+    private int changedFields(NavigationSnapshot data, String roadName, String action) {
+        int mask = 0;
+        if (!roadName.equals(lastRoadName)) {
+            mask |= NavigationData.FIELD_ROAD_NAME;
+        }
+        if (!action.equals(lastAction)) {
+            mask |= NavigationData.FIELD_ACTION;
+        }
+        if (data.getDistance() != lastDistance) {
+            mask |= NavigationData.FIELD_DISTANCE;
+        }
+        if (data.getRemainingTime() != lastRemainingTime) {
+            mask |= NavigationData.FIELD_REMAINING_TIME;
+        }
+        if (data.getSpeed() != lastSpeed) {
+            mask |= NavigationData.FIELD_SPEED;
+        }
+        if (data.isActive() != lastActive) {
+            mask |= NavigationData.FIELD_ACTIVE;
+        }
+        return mask;
+    }
+
+    private byte[] encodeV2(int type, int mask, NavigationSnapshot data, int roadId, boolean defineRoad, String action) {
+        boolean sendRoad = (mask & NavigationData.FIELD_ROAD_NAME) != 0;
+        boolean sendAction = (mask & NavigationData.FIELD_ACTION) != 0;
+        int actionCode = NavigationProtocol.encodeAction(action);
+        boolean customAction = sendAction && actionCode == NavigationProtocol.ACTION_CUSTOM;
+        defineRoad = defineRoad && sendRoad && roadId != NO_ROAD;
+
+        int offset = NavigationProtocol.HEADER_SIZE;
+        buffer[offset++] = (byte) sequence;
+        sequence = (sequence + 1) & 0xFF;
+        buffer[offset++] = (byte) mask;
+        buffer[offset++] = (byte) flags(data.isActive(), defineRoad, customAction);
+        if (sendAction) {
+            buffer[offset++] = (byte) actionCode;
+        }
+        if ((mask & NavigationData.FIELD_DISTANCE) != 0) {
+            offset = NavigationProtocol.writeVarint(buffer, offset, data.getDistance());
+        }
+        if ((mask & NavigationData.FIELD_REMAINING_TIME) != 0) {
+            offset = NavigationProtocol.writeVarint(buffer, offset, data.getRemainingTime());
+        }
+        if ((mask & NavigationData.FIELD_SPEED) != 0) {
+            offset = NavigationProtocol.writeVarint(buffer, offset, data.getSpeed());
+        }
+        if (sendRoad) {
+            offset = NavigationProtocol.writeVarint(buffer, offset, roadId);
+        }
+        if (defineRoad) {
+            offset = writeString(offset, roadDictionary[roadId]);
+        }
+        if (customAction) {
+            offset = writeString(offset, action);
+        }
+        return finishFrame(NavigationProtocol.VERSION_2, type, offset);
+    }
+
+    private byte[] encodeFullV1(NavigationSnapshot data, int roadId, boolean defineRoad, String action) {
+        int actionCode = NavigationProtocol.encodeAction(action);
+        boolean customAction = actionCode == NavigationProtocol.ACTION_CUSTOM;
+        defineRoad = defineRoad && roadId != NO_ROAD;
+
+        int offset = NavigationProtocol.HEADER_SIZE;
+        buffer[offset++] = (byte) flags(data.isActive(), defineRoad, customAction);
+        buffer[offset++] = (byte) actionCode;
+        offset = NavigationProtocol.writeVarint(buffer, offset, data.getDistance());
+        offset = NavigationProtocol.writeVarint(buffer, offset, data.getRemainingTime());
+        offset = NavigationProtocol.writeVarint(buffer, offset, data.getSpeed());
+        offset = NavigationProtocol.writeVarint(buffer, offset, roadId);
+        if (defineRoad) {
+            offset = writeString(offset, roadDictionary[roadId]);
+        }
+        if (customAction) {
+            offset = writeString(offset, action);
+        }
+        return finishFrame(NavigationProtocol.VERSION_1, NavigationProtocol.FRAME_FULL, offset);
+    }
+
+    private static int flags(boolean active, boolean defineRoad, boolean customAction) {
+        int flags = 0;
+        if (active) {
+            flags |= NavigationProtocol.FLAG_ACTIVE;
+        }
+        if (defineRoad) {
+            flags |= NavigationProtocol.FLAG_ROAD_DEFINITION;
+        }
+        if (customAction) {
+            flags |= NavigationProtocol.FLAG_CUSTOM_ACTION;
+        }
+        return flags;
+    }
+
+    private byte[] finishFrame(int frameVersion, int type, int end) {
+        buffer[0] = NavigationProtocol.MAGIC;
+        buffer[1] = (byte) (end - NavigationProtocol.HEADER_SIZE);
+        buffer[2] = NavigationProtocol.versionAndType(frameVersion, type);
+        return Arrays.copyOf(buffer, end);
+    }
+
+    private int findRoad(String roadName) {
+        for (int id = 1; id < roadDictionary.length; id++) {
+            if (roadName.equals(roadDictionary[id])) {
+                return id;
+            }
+        }
+        return NO_ROAD;
+    }
+
+    private int assignRoad(String roadName) {
+        int id = nextRoadSlot;
+        roadDictionary[id] = roadName;
+        nextRoadSlot = id + 1 < roadDictionary.length ? id + 1 : 1;
+        return id;
+    }
+
+    private int writeString(int offset, String value) {
+        byte[] bytes = NavigationProtocol.encodeString(value);
+        buffer[offset++] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+        return offset + bytes.length;
+    }
+}
@@ -2,6 +2,8 @@ package com.amap.navigation_listener;
 
 import android.bluetooth.BluetoothDevice;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -20,6 +22,7 @@ import java.util.List;
 
 public class BluetoothFragment extends Fragment {
     private static final String TAG = "BluetoothFragment";
+    private static final long REFRESH_INTERVAL_MS = 1000;
 
     // UI组件
     private Button btnScanDevices;
@@ -35,6 +38,15 @@ public class BluetoothFragment extends Fragment {
 
     private MainActivity mainActivity;
 
+    private final Handler refreshHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateConnectionStatus();
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,6 +66,19 @@ public class BluetoothFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        // 页面可见时每秒刷新各设备的连接状态和吞吐
+        refreshHandler.post(refreshRunnable);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        refreshHandler.removeCallbacks(refreshRunnable);
+    }
+
     private void initViews(View view) {
         btnScanDevices = view.findViewById(R.id.btnScanDevices);
         btnDisconnect = view.findViewById(R.id.btnDisconnect);
@@ -122,18 +147,16 @@ public class BluetoothFragment extends Fragment {
     }
 
     public void updateConnectionStatus() {
-        if (mainActivity != null && mainActivity.isConnected()) {
-            tvConnectionStatus.setText("已连接");
-            tvConnectionStatus.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
+        DisplayConnectionManager manager = mainActivity != null ? mainActivity.getDisplayManager() : null;
+        if (manager != null && manager.getSessionCount() > 0) {
+            int ready = manager.getReadyCount();
+            tvConnectionStatus.setText("已连接" + ready + "/" + manager.getSessionCount() + "台显示设备");
+            tvConnectionStatus.setTextColor(getResources().getColor(ready > 0
+                    ? android.R.color.holo_green_dark : android.R.color.holo_orange_dark));
             btnDisconnect.setEnabled(true);
 
-            // 显示设备信息
-            if (mainActivity.getNavigationData() != null) {
-                String info = "设备: ESP32导航显示\n" +
-                            "服务UUID: " + "4fafc201-1fb5-459e-8fcc-c5c9c331914b\n" +
-                            "特征值UUID: " + "beb5483e-36e1-4688-b7f5-ea07361b26a8";
-                tvDeviceInfo.setText(info);
-            }
+            // 每台设备的格式、健康状况和吞吐
+            tvDeviceInfo.setText(manager.getStats());
         } else {
             tvConnectionStatus.setText("未连接");
             tvConnectionStatus.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
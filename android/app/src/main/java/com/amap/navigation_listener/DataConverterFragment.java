@@ -1,6 +1,9 @@
 package com.amap.navigation_listener;
 
+import android.content.Context;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,11 +14,23 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.fragment.app.Fragment;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,6 +45,12 @@ public class DataConverterFragment extends Fragment {
     private Button btnConvertStatus;
     private Button btnConvertJson;
     private Button btnClearAll;
+    private Button btnConvertLogFile;
+
+    // 日志文件批量转换：先选择输入文件，再选择输出位置
+    private ActivityResultLauncher<String[]> openLogLauncher;
+    private ActivityResultLauncher<String> createOutputLauncher;
+    private Uri pendingLogUri;
 
     // 状态码映射
     private Map<Integer, String> statusMap;
@@ -38,6 +59,20 @@ public class DataConverterFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         initStatusMap();
+
+        openLogLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+            if (uri != null) {
+                pendingLogUri = uri;
+                createOutputLauncher.launch("navigation_log.txt");
+            }
+        });
+        createOutputLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("text/plain"), uri -> {
+            if (uri != null && pendingLogUri != null) {
+                convertLogFile(pendingLogUri, uri);
+            }
+            pendingLogUri = null;
+        });
     }
 
     @Nullable
@@ -83,12 +118,14 @@ public class DataConverterFragment extends Fragment {
         btnConvertStatus = view.findViewById(R.id.btnConvertStatus);
         btnConvertJson = view.findViewById(R.id.btnConvertJson);
         btnClearAll = view.findViewById(R.id.btnClearAll);
+        btnConvertLogFile = view.findViewById(R.id.btnConvertLogFile);
     }
 
     private void setupListeners() {
         btnConvertStatus.setOnClickListener(v -> convertStatusCode());
         btnConvertJson.setOnClickListener(v -> convertJsonToText());
         btnClearAll.setOnClickListener(v -> clearAll());
+        btnConvertLogFile.setOnClickListener(v -> openLogLauncher.launch(new String[]{"*/*"}));
     }
 
     private void convertStatusCode() {
@@ -126,41 +163,43 @@ public class DataConverterFragment extends Fragment {
 
         try {
             JSONObject json = new JSONObject(input);
-            StringBuilder naturalText = new StringBuilder();
+            NavigationData data = new NavigationData();
+            int present = 0;
 
             // 解析各个字段
             if (json.has("roadName")) {
-                String roadName = json.getString("roadName");
-                naturalText.append("当前在").append(roadName).append("上行驶");
+                data.setRoadName(json.getString("roadName"));
+                present |= NavigationData.FIELD_ROAD_NAME;
             }
 
             if (json.has("action")) {
-                String action = json.getString("action");
-                naturalText.append("，").append(action);
+                data.setAction(json.getString("action"));
+                present |= NavigationData.FIELD_ACTION;
             }
 
             if (json.has("distance")) {
-                int distance = json.getInt("distance");
-                naturalText.append("，距离").append(distance).append("米");
+                data.setDistance(json.getInt("distance"));
+                present |= NavigationData.FIELD_DISTANCE;
             }
 
             if (json.has("remainingTime")) {
-                int time = json.getInt("remainingTime");
-                naturalText.append("，预计").append(formatTime(time));
+                data.setRemainingTime(json.getInt("remainingTime"));
+                present |= NavigationData.FIELD_REMAINING_TIME;
             }
 
             if (json.has("speed")) {
-                int speed = json.getInt("speed");
-                naturalText.append("，当前车速").append(speed).append("公里每小时");
+                data.setSpeed(json.getInt("speed"));
+                present |= NavigationData.FIELD_SPEED;
             }
 
             if (json.has("isActive")) {
-                boolean isActive = json.getBoolean("isActive");
-                if (!isActive) {
-                    naturalText.append("【导航未开始】");
-                }
+                data.setActive(json.getBoolean("isActive"));
+                present |= NavigationData.FIELD_ACTIVE;
             }
 
+            StringBuilder naturalText = new StringBuilder();
+            NavigationDescriptionFormatter.append(naturalText, data, present);
+
             tvJsonResult.setText(naturalText.toString());
             tvJsonResult.setTextColor(getResources().getColor(android.R.color.black));
 
@@ -170,18 +209,43 @@ public class DataConverterFragment extends Fragment {
         }
     }
 
-    private String formatTime(int seconds) {
-        if (seconds < 60) {
-            return seconds + "秒";
-        } else {
-            int minutes = seconds / 60;
-            int remainingSeconds = seconds % 60;
-            if (remainingSeconds == 0) {
-                return minutes + "分钟";
-            } else {
-                return minutes + "分钟" + remainingSeconds + "秒";
+    // 在后台线程上流式转换，大文件也不会整体读入内存
+    private void convertLogFile(Uri input, Uri output) {
+        Context context = requireContext().getApplicationContext();
+        btnConvertLogFile.setEnabled(false);
+        tvJsonResult.setText("正在转换日志文件...");
+
+        new Thread(() -> {
+            String message;
+            try (InputStream is = context.getContentResolver().openInputStream(input);
+                 OutputStream os = context.getContentResolver().openOutputStream(output)) {
+                if (is == null || os == null) {
+                    throw new IOException("无法打开文件");
+                }
+                Reader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                NavigationLogConverter.Result result = new NavigationLogConverter()
+                        .convert(reader, writer, Runtime.getRuntime().availableProcessors());
+                writer.flush();
+                message = "日志转换完成，" + result;
+            } catch (IOException e) {
+                Log.e(TAG, "日志转换失败", e);
+                message = "日志转换失败: " + e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                message = "日志转换被中断";
             }
-        }
+
+            String result = message;
+            if (getActivity() != null) {
+                getActivity().runOnUiThread(() -> {
+                    if (isAdded()) {
+                        tvJsonResult.setText(result);
+                        btnConvertLogFile.setEnabled(true);
+                    }
+                });
+            }
+        }, "LogConverter").start();
     }
 
     private void clearAll() {
@@ -194,30 +258,6 @@ public class DataConverterFragment extends Fragment {
 
     // 专业术语转通俗中文
     public static String convertTechnicalTerms(String technicalText) {
-        String commonText = technicalText;
-
-        // 替换专业术语
-        Map<String, String> termMap = new HashMap<>();
-        termMap.put("GPS信号弱", "卫星定位信号不好");
-        termMap.put("偏航", "偏离了规划路线");
-        termMap.put("重新规划", "正在重新计算路线");
-        termMap.put("前方拥堵", "前面堵车了");
-        termMap.put("限速", "速度限制");
-        termMap.put("违章拍照", "有摄像头拍照");
-        termMap.put("区间测速", "这一段路测平均速度");
-        termMap.put("应急车道", "紧急情况下用的车道");
-        termMap.put("匝道", "上下高速的连接路");
-        termMap.put("并线", "需要变换车道");
-        termMap.put("主路", "主要道路");
-        termMap.put("辅路", "辅助道路");
-        termMap.put("调头", "掉头往回走");
-        termMap.put("靠左", "往左边车道走");
-        termMap.put("靠右", "往右边车道走");
-
-        for (Map.Entry<String, String> entry : termMap.entrySet()) {
-            commonText = commonText.replace(entry.getKey(), entry.getValue());
-        }
-
-        return commonText;
+        return TechnicalTermConverter.convert(technicalText);
     }
-}
\ No newline at end of file
+}
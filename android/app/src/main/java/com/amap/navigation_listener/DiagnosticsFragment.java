@@ -0,0 +1,116 @@
+package com.amap.navigation_listener;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.fragment.app.Fragment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// 流水线诊断页面，显示各阶段延迟和计数，可导出为文本文件
+public class DiagnosticsFragment extends Fragment {
+    private static final String TAG = "DiagnosticsFragment";
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    // UI组件
+    private TextView tvMetrics;
+    private Button btnResetMetrics;
+    private Button btnExportMetrics;
+
+    private final PipelineMetrics metrics = PipelineMetrics.getDefault();
+    private final Handler refreshHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshMetrics();
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    private ActivityResultLauncher<String> exportLauncher;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        exportLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("text/plain"), uri -> {
+            if (uri != null) {
+                exportMetrics(uri);
+            }
+        });
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                           @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_diagnostics, container, false);
+        initViews(view);
+        setupListeners();
+        return view;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // 页面可见时每秒刷新
+        refreshHandler.post(refreshRunnable);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        refreshHandler.removeCallbacks(refreshRunnable);
+    }
+
+    private void initViews(View view) {
+        tvMetrics = view.findViewById(R.id.tvMetrics);
+        btnResetMetrics = view.findViewById(R.id.btnResetMetrics);
+        btnExportMetrics = view.findViewById(R.id.btnExportMetrics);
+    }
+
+    private void setupListeners() {
+        btnResetMetrics.setOnClickListener(v -> {
+            metrics.reset();
+            refreshMetrics();
+            Toast.makeText(getContext(), "统计已重置", Toast.LENGTH_SHORT).show();
+        });
+        btnExportMetrics.setOnClickListener(v -> exportLauncher.launch("pipeline_metrics.txt"));
+    }
+
+    private void refreshMetrics() {
+        if (tvMetrics != null) {
+            tvMetrics.setText(metrics.dump());
+        }
+    }
+
+    private void exportMetrics(Uri output) {
+        Context context = requireContext();
+        try (OutputStream os = context.getContentResolver().openOutputStream(output)) {
+            if (os == null) {
+                throw new IOException("无法打开文件");
+            }
+            os.write(metrics.dump().getBytes(StandardCharsets.UTF_8));
+            Toast.makeText(context, "报告已导出", Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "导出报告失败", e);
+            Toast.makeText(context, "导出报告失败", Toast.LENGTH_SHORT).show();
+        }
+    }
+}
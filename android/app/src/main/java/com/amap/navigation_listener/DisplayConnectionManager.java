@@ -0,0 +1,481 @@
+package com.amap.navigation_listener;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+// 多显示设备连接管理
+// 同时保持多个GATT连接（例如HUD、仪表和后排屏幕），每个连接有自己的写入队列和格式协商。
+// 协商出相同格式（JSON，或相同版本和字典容量的二进制协议）的设备组成一个编码组，
+// 每次更新每组只编码一次，同一帧交给组内所有设备发送。组内设备共享增量帧的序号和道路字典，
+// 任一设备加入、请求重新同步、积压过多或写入超时丢帧时，下一帧改为发给全组的关键帧。
+// 就绪过的设备地址会被记住，下次不经扫描直接连接；设备意外断开后按指数退避自动重连，
+// 直到用户主动断开
+public class DisplayConnectionManager {
+    private static final String TAG = "DisplayConnectionManager";
+
+    // Android同时保持的BLE连接数有限，超过时拒绝新的连接
+    public static final int MAX_DISPLAYS = 4;
+
+    // 直连在这段时间内没有完成协商就放弃本次尝试；对端不在范围内时系统要30秒才报告失败
+    public static final long CONNECT_TIMEOUT_MS = 5000;
+    // 重连间隔从INITIAL开始每次失败翻倍，最长MAX
+    public static final long RECONNECT_INITIAL_DELAY_MS = 100;
+    public static final long RECONNECT_MAX_DELAY_MS = 10000;
+
+    private static final String PREFS_NAME = "display_connections";
+    private static final String KEY_KNOWN_ADDRESSES = "known_addresses";
+    private static final int MAX_KNOWN_DISPLAYS = 8;
+
+    public interface OnSessionsChangedListener {
+        // 在蓝牙协议栈的线程上调用
+        void onSessionsChanged(int readyCount, int sessionCount);
+    }
+
+    // 协商出相同格式的一组设备，共享一个编码器
+    private static final class FrameGroup {
+        final int key;
+        // 为null时使用JSON格式
+        final BinaryFrameEncoder encoder;
+        final List<DisplaySession> members = new ArrayList<>();
+        long framesEncoded;
+
+        FrameGroup(int key, NavigationProtocol.Capabilities capabilities) {
+            this.key = key;
+            this.encoder = capabilities != null ? new BinaryFrameEncoder(capabilities) : null;
+        }
+
+        // JSON帧彼此独立，可以只发最新的一帧
+        boolean isIndependent() {
+            return encoder == null;
+        }
+    }
+
+    private final Context context;
+    private final PipelineMetrics metrics;
+    private final Handler handler;
+    private final SharedPreferences prefs;
+
+    // 按设备地址索引，保持连接顺序
+    private final LinkedHashMap<String, DisplaySession> sessions = new LinkedHashMap<>();
+    private final List<FrameGroup> groups = new ArrayList<>();
+    private NavigationSnapshot lastData;
+    private boolean writeWithoutResponse;
+    private volatile OnSessionsChangedListener listener;
+
+    // 需要自动重连的设备（就绪过且没有被用户断开），值为连续失败的次数
+    private final HashMap<String, Integer> reconnectAttempts = new HashMap<>();
+    private final HashMap<String, Runnable> pendingReconnects = new HashMap<>();
+    private final HashMap<String, Long> disconnectTimes = new HashMap<>();
+    private boolean autoReconnect = true;
+
+    // 统计
+    private long updates;
+    private long framesEncoded;
+    private long framesDelivered;
+    private long keyframesForced;
+    private long reconnects;
+    private long connectTimeouts;
+    private long totalRecoveryMs;
+    private long lastRecoveryMs = -1;
+
+    public DisplayConnectionManager(Context context, PipelineMetrics metrics) {
+        this(context, metrics, Looper.getMainLooper());
+    }
+
+    // 重连、连接超时和写入队列的重试在looper所在的线程上调度
+    public DisplayConnectionManager(Context context, PipelineMetrics metrics, Looper looper) {
+        this.context = context.getApplicationContext();
+        this.metrics = metrics;
+        this.handler = new Handler(looper);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void setOnSessionsChangedListener(OnSessionsChangedListener listener) {
+        this.listener = listener;
+    }
+
+    // 已连接或正在连接的设备不会重复连接；达到上限时返回false
+    // 设备正在等待重连时立即连接，不再等待退避时间
+    public boolean connect(BluetoothDevice device) {
+        DisplaySession session;
+        synchronized (this) {
+            cancelReconnect(device.getAddress());
+            if (sessions.containsKey(device.getAddress())) {
+                return true;
+            }
+            if (sessions.size() >= MAX_DISPLAYS) {
+                Log.w(TAG, "显示设备数量已达上限: " + MAX_DISPLAYS);
+                return false;
+            }
+            session = new DisplaySession(device, sessionCallback, metrics, handler);
+            session.setWriteWithoutResponse(writeWithoutResponse);
+            sessions.put(device.getAddress(), session);
+        }
+        session.connect(context);
+        handler.postDelayed(() -> onConnectTimeout(session), CONNECT_TIMEOUT_MS);
+        notifySessionsChanged();
+        return true;
+    }
+
+    // 不经扫描直接连接之前就绪过的设备，返回发起连接的数量
+    public int connectKnownDisplays(BluetoothAdapter adapter) {
+        int started = 0;
+        for (String address : getKnownAddresses()) {
+            if (BluetoothAdapter.checkBluetoothAddress(address) && !isConnected(address)
+                    && connect(adapter.getRemoteDevice(address))) {
+                started++;
+            }
+        }
+        return started;
+    }
+
+    public synchronized Set<String> getKnownAddresses() {
+        return new HashSet<>(prefs.getStringSet(KEY_KNOWN_ADDRESSES, new HashSet<>()));
+    }
+
+    // 关闭后设备意外断开时不再重连，已在等待的重连也被取消
+    public synchronized void setAutoReconnect(boolean enabled) {
+        autoReconnect = enabled;
+        if (!enabled) {
+            for (String address : new ArrayList<>(pendingReconnects.keySet())) {
+                cancelReconnect(address);
+            }
+            reconnectAttempts.clear();
+            disconnectTimes.clear();
+        }
+    }
+
+    // 用户主动断开，不再自动重连
+    public void disconnect(String address) {
+        DisplaySession session;
+        synchronized (this) {
+            reconnectAttempts.remove(address);
+            cancelReconnect(address);
+            disconnectTimes.remove(address);
+            session = sessions.remove(address);
+            if (session != null) {
+                leaveGroup(session);
+            }
+        }
+        if (session != null) {
+            session.close();
+            notifySessionsChanged();
+        }
+    }
+
+    public void disconnectAll() {
+        List<DisplaySession> closing;
+        synchronized (this) {
+            for (String address : new ArrayList<>(pendingReconnects.keySet())) {
+                cancelReconnect(address);
+            }
+            reconnectAttempts.clear();
+            disconnectTimes.clear();
+            closing = new ArrayList<>(sessions.values());
+            sessions.clear();
+            groups.clear();
+        }
+        for (DisplaySession session : closing) {
+            session.close();
+        }
+        if (!closing.isEmpty()) {
+            Log.i(TAG, "连接管理统计: " + getSummary());
+            notifySessionsChanged();
+        }
+    }
+
+    // 已连接、正在连接或等待重连
+    public synchronized boolean isConnected(String address) {
+        return sessions.containsKey(address) || pendingReconnects.containsKey(address);
+    }
+
+    // 每组编码一次后发给组内所有就绪的设备，可在任意线程调用
+    public synchronized void send(NavigationSnapshot data) {
+        lastData = data;
+        updates++;
+        for (FrameGroup group : groups) {
+            broadcast(group, data);
+        }
+    }
+
+    // 无响应写入吞吐更高，对所有连接立即生效
+    public void setWriteWithoutResponse(boolean enabled) {
+        List<DisplaySession> current;
+        synchronized (this) {
+            writeWithoutResponse = enabled;
+            current = new ArrayList<>(sessions.values());
+        }
+        for (DisplaySession session : current) {
+            session.setWriteWithoutResponse(enabled);
+        }
+    }
+
+    public synchronized int getSessionCount() {
+        return sessions.size();
+    }
+
+    public synchronized int getReadyCount() {
+        int ready = 0;
+        for (DisplaySession session : sessions.values()) {
+            if (session.isReady()) {
+                ready++;
+            }
+        }
+        return ready;
+    }
+
+    public synchronized List<DisplaySession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public synchronized String getSummary() {
+        return "设备: " + getReadyCount() + "/" + sessions.size() +
+                ", 编码组: " + groups.size() +
+                ", 更新: " + updates +
+                ", 编码帧: " + framesEncoded +
+                ", 送出帧: " + framesDelivered +
+                ", 强制关键帧: " + keyframesForced +
+                ", 等待重连: " + pendingReconnects.size() +
+                ", 重连成功: " + reconnects +
+                ", 连接超时: " + connectTimeouts +
+                ", 平均恢复: " + (reconnects > 0 ? totalRecoveryMs / reconnects + "ms" : "无") +
+                ", 最近恢复: " + (lastRecoveryMs >= 0 ? lastRecoveryMs + "ms" : "无");
+    }
+
+    // 汇总和每台设备的健康与吞吐统计
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder(getSummary());
+        for (DisplaySession session : sessions.values()) {
+            sb.append("\n\n").append(session.getStats());
+        }
+        return sb.toString();
+    }
+
+    private void broadcast(FrameGroup group, NavigationSnapshot data) {
+        if (group.members.isEmpty()) {
+            return;
+        }
+        byte[] frame = encode(group, data);
+        if (frame == null) {
+            return;
+        }
+
+        boolean overflow = false;
+        for (DisplaySession session : group.members) {
+            if (session.offerFrame(frame, group.isIndependent())) {
+                framesDelivered++;
+            } else {
+                overflow = true;
+            }
+        }
+        // 跟不上或写入超时的设备丢掉了增量帧，下一帧发关键帧让它重新同步
+        if (overflow && group.encoder != null) {
+            Log.w(TAG, "设备积压过多或丢帧，下一帧发送关键帧");
+            forceKeyframe(group);
+        }
+    }
+
+    private byte[] encode(FrameGroup group, NavigationSnapshot data) {
+        long start = System.nanoTime();
+        try {
+            byte[] frame = group.encoder != null
+                    ? group.encoder.encode(data, SystemClock.elapsedRealtime())
+                    : NavigationProtocol.encodeJson(data);
+            group.framesEncoded++;
+            framesEncoded++;
+            metrics.recordSince(PipelineMetrics.STAGE_ENCODE, start);
+            metrics.increment(PipelineMetrics.COUNT_FRAMES_ENCODED);
+            metrics.add(PipelineMetrics.COUNT_BYTES_ENCODED, frame.length);
+            return frame;
+        } catch (JSONException e) {
+            Log.e(TAG, "JSON转换错误", e);
+            return null;
+        }
+    }
+
+    // 组内有设备可能缺少道路定义，清空组的字典后下一帧发给全组的关键帧；v1设备同样会收到当前道路的定义
+    private void forceKeyframe(FrameGroup group) {
+        group.encoder.resetDictionary();
+        keyframesForced++;
+    }
+
+    // 格式相同的设备进入同一组；新成员加入后立即向全组发送当前数据的关键帧
+    private void joinGroup(DisplaySession session) {
+        NavigationProtocol.Capabilities caps = session.getCapabilities();
+        int key = caps != null ? (caps.getVersion() << 8) | caps.getRoadDictionaryCapacity() : 0;
+        FrameGroup group = null;
+        for (FrameGroup g : groups) {
+            if (g.key == key) {
+                group = g;
+                break;
+            }
+        }
+        if (group == null) {
+            group = new FrameGroup(key, caps);
+            groups.add(group);
+        }
+        group.members.add(session);
+        if (group.encoder != null) {
+            forceKeyframe(group);
+        }
+        if (lastData != null) {
+            broadcast(group, lastData);
+        }
+    }
+
+    private void leaveGroup(DisplaySession session) {
+        for (int i = 0; i < groups.size(); i++) {
+            FrameGroup group = groups.get(i);
+            if (group.members.remove(session)) {
+                if (group.members.isEmpty()) {
+                    groups.remove(i);
+                }
+                return;
+            }
+        }
+    }
+
+    private FrameGroup findGroup(DisplaySession session) {
+        for (FrameGroup group : groups) {
+            if (group.members.contains(session)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private void onConnectTimeout(DisplaySession session) {
+        synchronized (this) {
+            if (sessions.get(session.getAddress()) != session || session.isReady()) {
+                return;
+            }
+            Log.w(TAG, session.getName() + " 连接超时");
+            connectTimeouts++;
+            sessions.remove(session.getAddress());
+            leaveGroup(session);
+            scheduleReconnect(session.getDevice());
+        }
+        session.close();
+        notifySessionsChanged();
+    }
+
+    // 只有需要自动重连的设备才会被安排
+    private void scheduleReconnect(BluetoothDevice device) {
+        String address = device.getAddress();
+        Integer attempts = reconnectAttempts.get(address);
+        if (!autoReconnect || attempts == null || pendingReconnects.containsKey(address)) {
+            return;
+        }
+        long delay = Math.min(RECONNECT_INITIAL_DELAY_MS << Math.min(attempts, 16), RECONNECT_MAX_DELAY_MS);
+        reconnectAttempts.put(address, attempts + 1);
+        Runnable reconnect = () -> {
+            synchronized (DisplayConnectionManager.this) {
+                if (pendingReconnects.remove(address) == null) {
+                    return;
+                }
+            }
+            Log.i(TAG, "重连 " + address + "，第" + (attempts + 1) + "次");
+            connect(device);
+        };
+        pendingReconnects.put(address, reconnect);
+        handler.postDelayed(reconnect, delay);
+    }
+
+    private void cancelReconnect(String address) {
+        Runnable reconnect = pendingReconnects.remove(address);
+        if (reconnect != null) {
+            handler.removeCallbacks(reconnect);
+        }
+    }
+
+    // 记住就绪过的设备，超过上限时丢掉任意一个旧地址
+    private void rememberAddress(String address) {
+        Set<String> known = getKnownAddresses();
+        if (known.contains(address)) {
+            return;
+        }
+        if (known.size() >= MAX_KNOWN_DISPLAYS) {
+            known.remove(known.iterator().next());
+        }
+        known.add(address);
+        prefs.edit().putStringSet(KEY_KNOWN_ADDRESSES, known).apply();
+    }
+
+    private void notifySessionsChanged() {
+        OnSessionsChangedListener l = listener;
+        if (l != null) {
+            l.onSessionsChanged(getReadyCount(), getSessionCount());
+        }
+    }
+
+    private final DisplaySession.Callback sessionCallback = new DisplaySession.Callback() {
+        @Override
+        public void onReady(DisplaySession session) {
+            synchronized (DisplayConnectionManager.this) {
+                if (sessions.get(session.getAddress()) != session) {
+                    return;
+                }
+                String address = session.getAddress();
+                Long disconnectTime = disconnectTimes.remove(address);
+                if (disconnectTime != null) {
+                    lastRecoveryMs = SystemClock.elapsedRealtime() - disconnectTime;
+                    totalRecoveryMs += lastRecoveryMs;
+                    reconnects++;
+                    Log.i(TAG, session.getName() + " 重连成功，中断" + lastRecoveryMs + "ms");
+                }
+                reconnectAttempts.put(address, 0);
+                rememberAddress(address);
+                joinGroup(session);
+            }
+            notifySessionsChanged();
+        }
+
+        @Override
+        public void onResyncRequested(DisplaySession session) {
+            synchronized (DisplayConnectionManager.this) {
+                FrameGroup group = findGroup(session);
+                if (group == null || group.encoder == null) {
+                    return;
+                }
+                // 立即补发关键帧，组内其他设备同样会收到
+                forceKeyframe(group);
+                if (lastData != null) {
+                    broadcast(group, lastData);
+                }
+            }
+        }
+
+        @Override
+        public void onDisconnected(DisplaySession session) {
+            synchronized (DisplayConnectionManager.this) {
+                if (sessions.get(session.getAddress()) != session) {
+                    return;
+                }
+                sessions.remove(session.getAddress());
+                if (findGroup(session) != null && !disconnectTimes.containsKey(session.getAddress())) {
+                    // 从就绪状态断开，开始计算中断时间
+                    disconnectTimes.put(session.getAddress(), SystemClock.elapsedRealtime());
+                }
+                leaveGroup(session);
+                scheduleReconnect(session.getDevice());
+            }
+            Log.i(TAG, session.getName() + " 已断开");
+            notifySessionsChanged();
+        }
+    };
+}
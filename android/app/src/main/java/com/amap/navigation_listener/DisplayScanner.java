@@ -0,0 +1,159 @@
+package com.amap.navigation_listener;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+// 显示设备扫描器
+// 基于BluetoothLeScanner，由蓝牙控制器按服务UUID过滤广播，只有导航显示设备才会唤醒应用。
+// 用户主动扫描用低延迟模式并立即上报；后台补充扫描用均衡模式，控制器支持时攒一批结果再上报。
+// 只能在主线程上使用
+public class DisplayScanner {
+    private static final String TAG = "DisplayScanner";
+
+    public static final int MODE_LOW_LATENCY = ScanSettings.SCAN_MODE_LOW_LATENCY;
+    public static final int MODE_BALANCED = ScanSettings.SCAN_MODE_BALANCED;
+
+    // 均衡模式下批量上报的间隔
+    public static final long BATCH_REPORT_DELAY_MS = 1000;
+
+    public interface Listener {
+        // 每次扫描中同一设备只回调一次
+        void onDisplayFound(BluetoothDevice device, int rssi);
+
+        void onScanStopped(int foundCount);
+    }
+
+    private final BluetoothAdapter adapter;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable stopRunnable = this::stop;
+
+    private final HashSet<String> foundAddresses = new HashSet<>();
+    private BluetoothLeScanner scanner;
+    private boolean scanning;
+    private long scanStartTime;
+
+    // 统计
+    private long scans;
+    private long results;
+    private long batches;
+    private long failures;
+    private long firstResultLatencyMs = -1;
+
+    public DisplayScanner(BluetoothAdapter adapter, Listener listener) {
+        this.adapter = adapter;
+        this.listener = listener;
+    }
+
+    // 扫描durationMs后自动停止；正在扫描时先停止再按新模式开始
+    @SuppressLint("MissingPermission")
+    public boolean start(int mode, long durationMs) {
+        stop();
+        scanner = adapter.getBluetoothLeScanner();
+        if (scanner == null) {
+            // 蓝牙未开启
+            return false;
+        }
+
+        ScanFilter filter = new ScanFilter.Builder()
+                .setServiceUuid(new ParcelUuid(DisplaySession.SERVICE_UUID))
+                .build();
+        ScanSettings.Builder settings = new ScanSettings.Builder().setScanMode(mode);
+        if (mode != MODE_LOW_LATENCY && adapter.isOffloadedScanBatchingSupported()) {
+            settings.setReportDelay(BATCH_REPORT_DELAY_MS);
+        }
+
+        foundAddresses.clear();
+        firstResultLatencyMs = -1;
+        scanStartTime = SystemClock.elapsedRealtime();
+        scanner.startScan(Collections.singletonList(filter), settings.build(), scanCallback);
+        scanning = true;
+        scans++;
+        handler.postDelayed(stopRunnable, durationMs);
+        return true;
+    }
+
+    @SuppressLint("MissingPermission")
+    public void stop() {
+        handler.removeCallbacks(stopRunnable);
+        if (!scanning) {
+            return;
+        }
+        // 先清除扫描状态，回调中再次调用stop()时直接返回
+        scanning = false;
+        if (adapter.isEnabled()) {
+            // 先取出已攒下的批量结果，它们不受扫描状态限制
+            scanner.flushPendingScanResults(scanCallback);
+            scanner.stopScan(scanCallback);
+        }
+        Log.i(TAG, "扫描结束: " + getStats());
+        listener.onScanStopped(foundAddresses.size());
+    }
+
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    public String getStats() {
+        return "扫描: " + scans +
+                ", 结果: " + results +
+                ", 批次: " + batches +
+                ", 失败: " + failures +
+                ", 本次找到: " + foundAddresses.size() +
+                ", 首个结果: " + (firstResultLatencyMs >= 0 ? firstResultLatencyMs + "ms" : "无");
+    }
+
+    // 批量结果由stop()中的flushPendingScanResults取出，送达时扫描状态已清除，不受其限制；
+    // 停止扫描后控制器不会再产生新的结果
+    private void onResult(ScanResult result, boolean batched) {
+        results++;
+        BluetoothDevice device = result.getDevice();
+        if ((!scanning && !batched) || !foundAddresses.add(device.getAddress())) {
+            return;
+        }
+        if (firstResultLatencyMs < 0) {
+            firstResultLatencyMs = SystemClock.elapsedRealtime() - scanStartTime;
+        }
+        listener.onDisplayFound(device, result.getRssi());
+    }
+
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            onResult(result, false);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> batch) {
+            batches++;
+            for (ScanResult result : batch) {
+                onResult(result, true);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            // 常见原因是30秒内启动扫描超过5次
+            Log.w(TAG, "扫描失败: " + errorCode);
+            failures++;
+            scanning = false;
+            handler.removeCallbacks(stopRunnable);
+            listener.onScanStopped(foundAddresses.size());
+        }
+    };
+}
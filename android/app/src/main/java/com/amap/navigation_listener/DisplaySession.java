@@ -0,0 +1,312 @@
+package com.amap.navigation_listener;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.UUID;
+
+// 与一台ESP32显示设备的GATT连接
+// 连接后依次协商MTU、发现服务、开启通知、读取协议能力，全部完成后通知连接管理器，
+// 由管理器把它加入对应格式的编码组。每个连接有自己的写入队列，互不阻塞
+public class DisplaySession {
+    private static final String TAG = "DisplaySession";
+
+    // BLE UUIDs
+    public static final UUID SERVICE_UUID = UUID.fromString("4fafc201-1fb5-459e-8fcc-c5c9c331914b");
+    public static final UUID CHARACTERISTIC_UUID = UUID.fromString("beb5483e-36e1-4688-b7f5-ea07361b26a8");
+    private static final UUID CLIENT_CONFIG_DESCRIPTOR_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    public static final int STATE_CONNECTING = 0;
+    public static final int STATE_NEGOTIATING = 1;
+    public static final int STATE_READY = 2;
+    public static final int STATE_DISCONNECTED = 3;
+
+    private static final String[] STATE_NAMES = {"连接中", "协商中", "已就绪", "已断开"};
+
+    // 回调都在蓝牙协议栈的线程上调用
+    interface Callback {
+        void onReady(DisplaySession session);
+
+        // 对端请求重新同步，或写入队列丢失了有增量依赖的帧
+        void onResyncRequested(DisplaySession session);
+
+        void onDisconnected(DisplaySession session);
+    }
+
+    private final BluetoothDevice device;
+    private final String name;
+    private final Callback callback;
+    private final PipelineMetrics metrics;
+    // 写入队列的重试和确认超时在这个handler上调度
+    private final Handler handler;
+
+    private volatile BluetoothGatt gatt;
+    private volatile int state = STATE_CONNECTING;
+    private volatile int negotiatedMtu = GattWriteQueue.DEFAULT_MTU;
+    private volatile boolean writeWithoutResponse;
+
+    // 协议协商结果，为null时使用JSON格式
+    private volatile NavigationProtocol.Capabilities capabilities;
+    private volatile GattWriteQueue writeQueue;
+
+    // 统计
+    private volatile long connectTime;
+    private volatile long readyTime;
+    private volatile long lastAckTime;
+    private volatile long resyncRequests;
+
+    @SuppressLint("MissingPermission")
+    DisplaySession(BluetoothDevice device, Callback callback, PipelineMetrics metrics, Handler handler) {
+        this.device = device;
+        String deviceName = device.getName();
+        this.name = deviceName != null && !deviceName.isEmpty() ? deviceName : "未知设备";
+        this.callback = callback;
+        this.metrics = metrics;
+        this.handler = handler;
+    }
+
+    @SuppressLint("MissingPermission")
+    void connect(Context context) {
+        state = STATE_CONNECTING;
+        connectTime = SystemClock.elapsedRealtime();
+        gatt = device.connectGatt(context, false, gattCallback);
+    }
+
+    // 主动断开，之后不再回调onDisconnected
+    @SuppressLint("MissingPermission")
+    void close() {
+        state = STATE_DISCONNECTED;
+        closeWriteQueue();
+        BluetoothGatt g = gatt;
+        gatt = null;
+        if (g != null) {
+            g.disconnect();
+            g.close();
+        }
+    }
+
+    // 由连接管理器调用，frame在多个连接间共享
+    boolean offerFrame(byte[] frame, boolean independent) {
+        GattWriteQueue queue = writeQueue;
+        return queue == null || queue.offerFrame(frame, independent);
+    }
+
+    // 无响应写入吞吐更高，对当前连接立即生效
+    void setWriteWithoutResponse(boolean enabled) {
+        writeWithoutResponse = enabled;
+        GattWriteQueue queue = writeQueue;
+        if (queue != null && !queue.setWriteWithoutResponse(enabled)) {
+            Log.w(TAG, name + " 不支持无响应写入");
+        }
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return state == STATE_READY;
+    }
+
+    public NavigationProtocol.Capabilities getCapabilities() {
+        return capabilities;
+    }
+
+    public GattWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    public long getResyncRequests() {
+        return resyncRequests;
+    }
+
+    // 就绪以来的平均发送速率
+    public long getThroughputBytesPerSecond() {
+        GattWriteQueue queue = writeQueue;
+        long elapsed = SystemClock.elapsedRealtime() - readyTime;
+        if (queue == null || state != STATE_READY || elapsed <= 0) {
+            return 0;
+        }
+        return queue.getBytesWritten() * 1000 / elapsed;
+    }
+
+    public String getStats() {
+        long now = SystemClock.elapsedRealtime();
+        NavigationProtocol.Capabilities caps = capabilities;
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(name).append(" (").append(getAddress()).append(")\n")
+                .append("状态: ").append(STATE_NAMES[state])
+                .append(", 格式: ").append(caps != null ? "二进制v" + caps.getVersion() : "JSON")
+                .append(", MTU: ").append(negotiatedMtu);
+        if (state == STATE_READY) {
+            sb.append(", 已连接: ").append((now - readyTime) / 1000).append("秒")
+                    .append(", 吞吐: ").append(getThroughputBytesPerSecond()).append("B/s")
+                    .append(", 最后确认: ")
+                    .append(lastAckTime > 0 ? (now - lastAckTime) + "ms前" : "无");
+        }
+        sb.append(", 重新同步: ").append(resyncRequests);
+        GattWriteQueue queue = writeQueue;
+        if (queue != null) {
+            sb.append('\n').append(queue.getStats());
+        }
+        return sb.toString();
+    }
+
+    private void startWriteQueue(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+        closeWriteQueue();
+        GattWriteQueue queue = new GattWriteQueue(g, characteristic, handler);
+        queue.setMtu(negotiatedMtu);
+        queue.setMetrics(metrics);
+        queue.setOnFrameLostListener(q -> {
+            if (writeQueue == q) {
+                Log.w(TAG, name + " 写入丢帧，请求关键帧");
+                callback.onResyncRequested(DisplaySession.this);
+            }
+        });
+        if (writeWithoutResponse && !queue.setWriteWithoutResponse(true)) {
+            Log.w(TAG, name + " 不支持无响应写入");
+        }
+        writeQueue = queue;
+    }
+
+    private void closeWriteQueue() {
+        GattWriteQueue queue = writeQueue;
+        if (queue != null) {
+            Log.i(TAG, name + " 写入队列统计: " + queue.getStats());
+            queue.close();
+            writeQueue = null;
+        }
+    }
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+            if (state == STATE_DISCONNECTED) {
+                return;
+            }
+            if (newState == BluetoothProfile.STATE_CONNECTED) {
+                Log.i(TAG, name + " 已连接到GATT服务器，耗时"
+                        + (SystemClock.elapsedRealtime() - connectTime) + "ms");
+                state = STATE_NEGOTIATING;
+                // 先协商最大MTU，完成后再发现服务
+                negotiatedMtu = GattWriteQueue.DEFAULT_MTU;
+                if (!g.requestMtu(GattWriteQueue.MAX_MTU)) {
+                    g.discoverServices();
+                }
+            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                Log.i(TAG, name + " 已断开GATT服务器连接: " + status);
+                state = STATE_DISCONNECTED;
+                closeWriteQueue();
+                g.close();
+                gatt = null;
+                callback.onDisconnected(DisplaySession.this);
+            }
+        }
+
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onMtuChanged(BluetoothGatt g, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.i(TAG, name + " MTU协商完成: " + mtu);
+                negotiatedMtu = mtu;
+            }
+            g.discoverServices();
+        }
+
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onServicesDiscovered(BluetoothGatt g, int status) {
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                return;
+            }
+            BluetoothGattService service = g.getService(SERVICE_UUID);
+            if (service == null) {
+                Log.w(TAG, name + " 没有导航显示服务");
+                return;
+            }
+            BluetoothGattCharacteristic characteristic = service.getCharacteristic(CHARACTERISTIC_UUID);
+            if (characteristic == null) {
+                return;
+            }
+            g.setCharacteristicNotification(characteristic, true);
+            // 开启通知以接收重新同步请求，写入完成后再读取协议能力
+            BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CLIENT_CONFIG_DESCRIPTOR_UUID);
+            if (descriptor != null) {
+                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                g.writeDescriptor(descriptor);
+            } else {
+                g.readCharacteristic(characteristic);
+            }
+        }
+
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor, int status) {
+            // 读取ESP32声明的协议能力
+            g.readCharacteristic(descriptor.getCharacteristic());
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt g, BluetoothGattCharacteristic characteristic, int status) {
+            NavigationProtocol.Capabilities caps = status == BluetoothGatt.GATT_SUCCESS
+                    ? NavigationProtocol.parseCapabilities(characteristic.getValue())
+                    : null;
+            if (caps != null) {
+                Log.i(TAG, name + " 支持二进制协议 v" + caps.getVersion() +
+                        "，道路字典容量: " + caps.getRoadDictionaryCapacity());
+            } else {
+                Log.i(TAG, name + " 不支持二进制协议，使用JSON格式");
+            }
+            capabilities = caps;
+            startWriteQueue(g, characteristic);
+            readyTime = SystemClock.elapsedRealtime();
+            lastAckTime = 0;
+            state = STATE_READY;
+            callback.onReady(DisplaySession.this);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+            // ESP32发现丢帧时请求重新同步
+            if (capabilities != null && NavigationProtocol.isResyncRequest(characteristic.getValue())) {
+                Log.i(TAG, name + " 请求重新同步");
+                resyncRequests++;
+                callback.onResyncRequested(DisplaySession.this);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt g, BluetoothGattCharacteristic characteristic, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                lastAckTime = SystemClock.elapsedRealtime();
+            }
+            GattWriteQueue queue = writeQueue;
+            if (queue != null) {
+                queue.onWriteComplete(status);
+            }
+        }
+    };
+}
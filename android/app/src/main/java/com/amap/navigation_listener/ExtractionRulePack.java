@@ -0,0 +1,292 @@
+package com.amap.navigation_listener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 导航文本提取规则包
+// 高德地图界面改版时只需更新规则文件，不必修改代码。一个文件可以包含多个规则包，
+// 每个规则包声明适用的高德地图版本范围，运行时按检测到的版本选择
+//
+// 文件格式（UTF-8，以#开头的行为注释）：
+//   [pack]            name=名称, version=规则版本, amapVersions=版本范围（逗号分隔，如 10.0-11.9, 12.0-, *）
+//   [actions]         导航动作，按优先级排列
+//   [roadPrefixes]    道路名称前的引导词
+//   [roadSuffixes]    道路名称的结尾
+//   [activeMarkers]   表示正在导航的标记
+//   [distanceUnits]   单位=换算为米的倍数
+//   [timeUnits]       单位=换算为秒的倍数，相邻的多个单位累加（如 1小时20分钟）
+//   [speedUnits]      单位=换算为km/h的倍数
+public final class ExtractionRulePack {
+    private static final String BUNDLED_RULES = "/extraction_rules.txt";
+    private static final char SEPARATOR = '=';
+
+    private String name = "未命名";
+    private String version = "0";
+    private final List<String> amapVersions = new ArrayList<>();
+    private final List<String> actions = new ArrayList<>();
+    private final List<String> roadPrefixes = new ArrayList<>();
+    private final List<String> roadSuffixes = new ArrayList<>();
+    private final List<String> activeMarkers = new ArrayList<>();
+    private final List<String> distanceUnits = new ArrayList<>();
+    private final List<Double> distanceScales = new ArrayList<>();
+    private final List<String> timeUnits = new ArrayList<>();
+    private final List<Double> timeScales = new ArrayList<>();
+    private final List<String> speedUnits = new ArrayList<>();
+    private final List<Double> speedScales = new ArrayList<>();
+
+    // 内置规则包在第一次使用时加载
+    private static final class BundledHolder {
+        static final List<ExtractionRulePack> PACKS = loadBundled();
+    }
+
+    private ExtractionRulePack() {
+    }
+
+    // 内置规则中适用于所有版本的规则包
+    public static ExtractionRulePack getDefault() {
+        return select(getBundled(), null);
+    }
+
+    public static List<ExtractionRulePack> getBundled() {
+        return BundledHolder.PACKS;
+    }
+
+    // 读取文件中的全部规则包，格式错误时抛出IOException并指出行号
+    public static List<ExtractionRulePack> read(Reader in) throws IOException {
+        List<ExtractionRulePack> packs = new ArrayList<>();
+        ExtractionRulePack pack = null;
+        String section = null;
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                section = line.substring(1, line.length() - 1);
+                if (section.equals("pack")) {
+                    pack = new ExtractionRulePack();
+                    packs.add(pack);
+                } else if (pack == null) {
+                    throw new IOException("第" + lineNumber + "行: 缺少[pack]");
+                }
+                continue;
+            }
+            if (pack == null) {
+                throw new IOException("第" + lineNumber + "行: 缺少[pack]");
+            }
+            pack.addLine(section, line, lineNumber);
+        }
+
+        for (ExtractionRulePack p : packs) {
+            if (p.actions.isEmpty() || p.roadPrefixes.isEmpty() || p.roadSuffixes.isEmpty()
+                    || p.distanceUnits.isEmpty() || p.timeUnits.isEmpty() || p.speedUnits.isEmpty()) {
+                throw new IOException("规则包" + p.name + "缺少必要的规则");
+            }
+        }
+        return packs;
+    }
+
+    // 按高德地图版本选择第一个适用的规则包；没有匹配时使用声明了*的规则包，再没有则用第一个
+    public static ExtractionRulePack select(List<ExtractionRulePack> packs, String amapVersion) {
+        if (packs.isEmpty()) {
+            throw new IllegalArgumentException("没有可用的规则包");
+        }
+        ExtractionRulePack fallback = null;
+        for (ExtractionRulePack pack : packs) {
+            if (amapVersion != null && pack.supportsVersion(amapVersion)) {
+                return pack;
+            }
+            if (fallback == null && pack.amapVersions.contains("*")) {
+                fallback = pack;
+            }
+        }
+        return fallback != null ? fallback : packs.get(0);
+    }
+
+    // 版本范围：*、单个版本前缀（12.1）、闭区间（10.0-11.9）或只有下限（12.0-）
+    // 上限按前缀比较，11.9包含11.9.x
+    public boolean supportsVersion(String amapVersion) {
+        for (String range : amapVersions) {
+            if (range.equals("*")) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            String min = dash >= 0 ? range.substring(0, dash).trim() : range;
+            String max = dash >= 0 ? range.substring(dash + 1).trim() : range;
+            if (compareVersions(amapVersion, min, false) >= 0
+                    && (max.isEmpty() || compareVersions(amapVersion, max, true) <= 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 按数字逐段比较；truncate为true时只比较到bound的段数
+    static int compareVersions(String version, String bound, boolean truncate) {
+        String[] a = version.split("\\.");
+        String[] b = bound.split("\\.");
+        int n = truncate ? b.length : Math.max(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            long x = i < a.length ? parseVersionPart(a[i]) : 0;
+            long y = i < b.length ? parseVersionPart(b[i]) : 0;
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static long parseVersionPart(String part) {
+        long value = 0;
+        for (int i = 0; i < part.length() && Character.isDigit(part.charAt(i)); i++) {
+            value = Math.min(value * 10 + (part.charAt(i) - '0'), Integer.MAX_VALUE);
+        }
+        return value;
+    }
+
+    private void addLine(String section, String line, int lineNumber) throws IOException {
+        switch (section) {
+            case "pack":
+                int separator = line.indexOf(SEPARATOR);
+                if (separator <= 0) {
+                    throw new IOException("第" + lineNumber + "行格式错误: " + line);
+                }
+                String key = line.substring(0, separator).trim();
+                String value = line.substring(separator + 1).trim();
+                if (key.equals("name")) {
+                    name = value;
+                } else if (key.equals("version")) {
+                    version = value;
+                } else if (key.equals("amapVersions")) {
+                    for (String range : value.split(",")) {
+                        if (!range.trim().isEmpty()) {
+                            amapVersions.add(range.trim());
+                        }
+                    }
+                }
+                break;
+            case "actions":
+                actions.add(line);
+                break;
+            case "roadPrefixes":
+                roadPrefixes.add(line);
+                break;
+            case "roadSuffixes":
+                roadSuffixes.add(line);
+                break;
+            case "activeMarkers":
+                activeMarkers.add(line);
+                break;
+            case "distanceUnits":
+                addUnit(distanceUnits, distanceScales, line, lineNumber);
+                break;
+            case "timeUnits":
+                addUnit(timeUnits, timeScales, line, lineNumber);
+                break;
+            case "speedUnits":
+                addUnit(speedUnits, speedScales, line, lineNumber);
+                break;
+            default:
+                throw new IOException("第" + lineNumber + "行: 未知的分节[" + section + "]");
+        }
+    }
+
+    private static void addUnit(List<String> units, List<Double> scales, String line, int lineNumber)
+            throws IOException {
+        int separator = line.lastIndexOf(SEPARATOR);
+        if (separator <= 0) {
+            throw new IOException("第" + lineNumber + "行格式错误: " + line);
+        }
+        try {
+            double scale = Double.parseDouble(line.substring(separator + 1).trim());
+            if (!(scale > 0)) {
+                throw new NumberFormatException();
+            }
+            units.add(line.substring(0, separator).trim());
+            scales.add(scale);
+        } catch (NumberFormatException e) {
+            throw new IOException("第" + lineNumber + "行倍数错误: " + line);
+        }
+    }
+
+    private static List<ExtractionRulePack> loadBundled() {
+        InputStream in = ExtractionRulePack.class.getResourceAsStream(BUNDLED_RULES);
+        if (in == null) {
+            throw new IllegalStateException("缺少内置规则: " + BUNDLED_RULES);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Collections.unmodifiableList(read(reader));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<String> getAmapVersions() {
+        return Collections.unmodifiableList(amapVersions);
+    }
+
+    public List<String> getActions() {
+        return Collections.unmodifiableList(actions);
+    }
+
+    public List<String> getRoadPrefixes() {
+        return Collections.unmodifiableList(roadPrefixes);
+    }
+
+    public List<String> getRoadSuffixes() {
+        return Collections.unmodifiableList(roadSuffixes);
+    }
+
+    public List<String> getActiveMarkers() {
+        return Collections.unmodifiableList(activeMarkers);
+    }
+
+    public List<String> getDistanceUnits() {
+        return Collections.unmodifiableList(distanceUnits);
+    }
+
+    public List<Double> getDistanceScales() {
+        return Collections.unmodifiableList(distanceScales);
+    }
+
+    public List<String> getTimeUnits() {
+        return Collections.unmodifiableList(timeUnits);
+    }
+
+    public List<Double> getTimeScales() {
+        return Collections.unmodifiableList(timeScales);
+    }
+
+    public List<String> getSpeedUnits() {
+        return Collections.unmodifiableList(speedUnits);
+    }
+
+    public List<Double> getSpeedScales() {
+        return Collections.unmodifiableList(speedScales);
+    }
+
+    @Override
+    public String toString() {
+        return name + " v" + version;
+    }
+}
@@ -0,0 +1,353 @@
+package com.amap.navigation_listener;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+// GATT写入队列
+// Android同一时刻只允许一个写操作在途，新写入会被直接丢弃；这里串行化所有写入。
+// 导航帧由连接管理器统一编码后交给每台设备的队列：互相独立的帧（JSON）只保留最新的一帧，
+// 有增量依赖的帧按顺序发送，积压过多时整体丢弃，由调用方安排关键帧让对端重新同步。
+// 协议栈忙和写入确认超时由handler上的定时任务处理，不依赖下一次提交或确认
+public class GattWriteQueue {
+    private static final String TAG = "GattWriteQueue";
+
+    public static final int DEFAULT_MTU = 23;
+    public static final int MAX_MTU = 517;
+    private static final int ATT_HEADER_SIZE = 3;
+
+    // 非导航数据帧的分包上限，超过时拒绝入队
+    private static final int MAX_PENDING_CHUNKS = 64;
+    // 有增量依赖的导航帧最多积压的帧数，超过说明该设备跟不上，继续排队只会增加延迟
+    public static final int MAX_BACKLOG_FRAMES = 4;
+    // 写入确认超时后视为失败，避免丢失回调导致队列卡死
+    private static final long WRITE_TIMEOUT_MS = 1000;
+    private static final long WRITE_TIMEOUT_NANOS = WRITE_TIMEOUT_MS * 1000_000L;
+    // 协议栈忙时重试的间隔
+    private static final long RETRY_DELAY_MS = 20;
+
+    public interface OnFrameLostListener {
+        // 有增量依赖的帧因写入超时或失败没有完整送达，对端需要关键帧
+        // 在handler或蓝牙线程上调用，调用时不持有队列的锁
+        void onFrameLost(GattWriteQueue queue);
+    }
+
+    private final BluetoothGatt gatt;
+    private final BluetoothGattCharacteristic characteristic;
+    private final Handler handler;
+    private final Runnable timer = this::onTimer;
+    private volatile PipelineMetrics metrics;
+    private volatile OnFrameLostListener frameLostListener;
+
+    private final ArrayDeque<byte[]> pendingChunks = new ArrayDeque<>();
+    // 尚未开始发送的导航帧，上一帧的分包全部发出后才拆分下一帧
+    private final ArrayDeque<byte[]> pendingFrames = new ArrayDeque<>();
+    private int maxPayload = DEFAULT_MTU - ATT_HEADER_SIZE;
+    // 最近提交的导航帧是否有增量依赖
+    private boolean sequential;
+    // 当前导航帧在pendingChunks开头尚未发出的分包数
+    private int frameChunksLeft;
+    // 在途的分包属于导航帧
+    private boolean frameWriteInFlight;
+    private boolean writeInFlight;
+    private long writeStartNanos;
+    private boolean closed;
+
+    // 统计
+    private long framesSent;
+    private long bytesWritten;
+    private long writesCompleted;
+    private long writesFailed;
+    private long writesRejected;
+    private long dataReplaced;
+    private long framesDropped;
+    private long backlogOverflows;
+    private long writeTimeouts;
+    private long framesLost;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    public GattWriteQueue(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, Handler handler) {
+        this.gatt = gatt;
+        this.characteristic = characteristic;
+        this.handler = handler;
+    }
+
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setOnFrameLostListener(OnFrameLostListener listener) {
+        this.frameLostListener = listener;
+    }
+
+    public synchronized void setMtu(int mtu) {
+        maxPayload = Math.max(mtu, DEFAULT_MTU) - ATT_HEADER_SIZE;
+    }
+
+    public synchronized int getMaxPayload() {
+        return maxPayload;
+    }
+
+    // 无响应写入吞吐更高，但需要对端特征值支持
+    public synchronized boolean setWriteWithoutResponse(boolean enabled) {
+        if (enabled && (characteristic.getProperties()
+                & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
+            return false;
+        }
+        characteristic.setWriteType(enabled
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+        return true;
+    }
+
+    // 提交已编码的导航帧，帧内容可能与其他设备的队列共享，不能修改
+    // independent为true时尚未发出的旧帧直接被替换；否则按顺序排队，
+    // 积压超过MAX_BACKLOG_FRAMES或正在发送的帧丢失时清空积压并返回false，此后对端需要一个关键帧才能继续
+    public synchronized boolean offerFrame(byte[] frame, boolean independent) {
+        if (closed) {
+            return false;
+        }
+        sequential = !independent;
+        if (independent) {
+            dataReplaced += pendingFrames.size();
+            pendingFrames.clear();
+        } else if (pendingFrames.size() >= MAX_BACKLOG_FRAMES) {
+            framesDropped += pendingFrames.size() + 1;
+            backlogOverflows++;
+            pendingFrames.clear();
+            return false;
+        }
+        pendingFrames.addLast(frame);
+        // 调用方持有连接管理器的锁，丢帧通过返回值报告，由调用方安排关键帧
+        return !pump();
+    }
+
+    // 提交必须按顺序送达的帧，队列已满时返回false
+    public synchronized boolean enqueue(byte[] frame) {
+        if (closed) {
+            return false;
+        }
+        int chunks = (frame.length + maxPayload - 1) / maxPayload;
+        if (pendingChunks.size() + chunks > MAX_PENDING_CHUNKS) {
+            framesDropped++;
+            return false;
+        }
+        split(frame);
+        if (pump()) {
+            // 调用方可能持有其他锁，在handler上通知
+            handler.post(this::notifyFrameLost);
+        }
+        return true;
+    }
+
+    // 在BluetoothGattCallback.onCharacteristicWrite中调用
+    public void onWriteComplete(int status) {
+        boolean lost;
+        synchronized (this) {
+            lost = completeWrite(status);
+        }
+        if (lost) {
+            notifyFrameLost();
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        pendingChunks.clear();
+        pendingFrames.clear();
+        frameChunksLeft = 0;
+        handler.removeCallbacks(timer);
+    }
+
+    // 确认超时或协议栈忙后重新触发发送
+    private void onTimer() {
+        boolean lost;
+        synchronized (this) {
+            lost = pump();
+        }
+        if (lost) {
+            notifyFrameLost();
+        }
+    }
+
+    private void notifyFrameLost() {
+        OnFrameLostListener l = frameLostListener;
+        if (l != null) {
+            l.onFrameLost(this);
+        }
+    }
+
+    // 返回true表示有增量依赖的帧丢失
+    private boolean completeWrite(int status) {
+        if (!writeInFlight) {
+            return false;
+        }
+        writeInFlight = false;
+
+        long latency = System.nanoTime() - writeStartNanos;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            writesCompleted++;
+        } else {
+            writesFailed++;
+            Log.w(TAG, "写入失败: " + status);
+        }
+        PipelineMetrics m = metrics;
+        if (m != null) {
+            m.record(PipelineMetrics.STAGE_WRITE_ACK, latency);
+            m.increment(status == BluetoothGatt.GATT_SUCCESS
+                    ? PipelineMetrics.COUNT_WRITES_OK : PipelineMetrics.COUNT_WRITES_FAILED);
+        }
+        boolean lost = status != BluetoothGatt.GATT_SUCCESS && dropCurrentFrame();
+        return pump() || lost;
+    }
+
+    // 发送下一个分包并安排定时任务，返回true表示有增量依赖的帧丢失
+    @SuppressLint("MissingPermission")
+    private boolean pump() {
+        if (closed) {
+            return false;
+        }
+        boolean lost = false;
+        if (writeInFlight) {
+            long elapsed = System.nanoTime() - writeStartNanos;
+            if (elapsed < WRITE_TIMEOUT_NANOS) {
+                schedule(WRITE_TIMEOUT_MS - elapsed / 1000_000L);
+                return false;
+            }
+            Log.w(TAG, "写入确认超时");
+            writeInFlight = false;
+            writesFailed++;
+            writeTimeouts++;
+            PipelineMetrics m = metrics;
+            if (m != null) {
+                m.increment(PipelineMetrics.COUNT_WRITES_FAILED);
+            }
+            lost = dropCurrentFrame();
+        }
+
+        // 上一帧的分包全部发出后才拆分下一帧导航数据
+        if (pendingChunks.isEmpty() && !pendingFrames.isEmpty()) {
+            framesSent++;
+            split(pendingFrames.pollFirst());
+            frameChunksLeft = pendingChunks.size();
+        }
+
+        byte[] chunk = pendingChunks.peekFirst();
+        if (chunk == null) {
+            handler.removeCallbacks(timer);
+            return lost;
+        }
+
+        characteristic.setValue(chunk);
+        writeStartNanos = System.nanoTime();
+        if (gatt.writeCharacteristic(characteristic)) {
+            pendingChunks.pollFirst();
+            bytesWritten += chunk.length;
+            writeInFlight = true;
+            frameWriteInFlight = frameChunksLeft > 0;
+            if (frameWriteInFlight) {
+                frameChunksLeft--;
+            }
+            schedule(WRITE_TIMEOUT_MS);
+        } else {
+            // 协议栈忙（例如有读操作在途），保留该分包稍后重试
+            writesRejected++;
+            schedule(RETRY_DELAY_MS);
+        }
+        return lost;
+    }
+
+    private void schedule(long delayMs) {
+        handler.removeCallbacks(timer);
+        handler.postDelayed(timer, delayMs);
+    }
+
+    // 在途的分包没有送达：有增量依赖时该帧剩余的分包和依赖它的积压帧都已无用，全部丢弃
+    private boolean dropCurrentFrame() {
+        if (!frameWriteInFlight || !sequential) {
+            return false;
+        }
+        frameWriteInFlight = false;
+        for (; frameChunksLeft > 0; frameChunksLeft--) {
+            pendingChunks.pollFirst();
+        }
+        framesLost++;
+        framesDropped += pendingFrames.size() + 1;
+        pendingFrames.clear();
+        return true;
+    }
+
+    private void split(byte[] frame) {
+        if (frame.length <= maxPayload) {
+            pendingChunks.addLast(frame);
+            return;
+        }
+        for (int offset = 0; offset < frame.length; offset += maxPayload) {
+            int length = Math.min(maxPayload, frame.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(frame, offset, chunk, 0, length);
+            pendingChunks.addLast(chunk);
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return pendingChunks.size() + pendingFrames.size();
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // 因积压过多而清空队列的次数
+    public synchronized long getBacklogOverflows() {
+        return backlogOverflows;
+    }
+
+    // 因写入超时或失败而没有完整送达的有增量依赖的帧
+    public synchronized long getFramesLost() {
+        return framesLost;
+    }
+
+    public synchronized long getWritesCompleted() {
+        return writesCompleted;
+    }
+
+    public synchronized long getWritesFailed() {
+        return writesFailed;
+    }
+
+    // 被更新数据替换而未发送的导航帧，以及因积压或队列已满被丢弃的帧
+    public synchronized long getDroppedWrites() {
+        return dataReplaced + framesDropped;
+    }
+
+    public synchronized long getAverageLatencyMicros() {
+        long writes = writesCompleted + writesFailed;
+        return writes > 0 ? totalLatencyNanos / writes / 1000 : 0;
+    }
+
+    public synchronized long getMaxLatencyMicros() {
+        return maxLatencyNanos / 1000;
+    }
+
+    public synchronized String getStats() {
+        return "队列深度: " + getQueueDepth() +
+                ", 发送帧: " + framesSent +
+                ", 发送字节: " + bytesWritten +
+                ", 写入成功: " + writesCompleted +
+                ", 写入失败: " + writesFailed +
+                ", 确认超时: " + writeTimeouts +
+                ", 丢失帧: " + framesLost +
+                ", 协议栈忙: " + writesRejected +
+                ", 丢弃: " + getDroppedWrites() +
+                ", 平均延迟: " + getAverageLatencyMicros() + "us" +
+                ", 最大延迟: " + getMaxLatencyMicros() + "us";
+    }
+}
@@ -0,0 +1,199 @@
+package com.amap.navigation_listener;
+
+import java.util.Arrays;
+
+// 多关键词匹配自动机（Aho-Corasick）
+// 构造时一次性编译关键词表，匹配时逐字符推进状态，不产生任何对象分配
+public class KeywordAutomaton {
+    public static final int ROOT = 0;
+    public static final int NO_STATE = -1;
+
+    private static final long EMPTY_KEY = -1L;
+
+    // 构建期使用的子节点链表
+    private int[] firstEdge;
+    private int[] edgeChar;
+    private int[] edgeTarget;
+    private int[] nextSibling;
+    private int edgeCount;
+
+    // 状态属性
+    private int[] fail;
+    private int[] keywordId;
+    private int[] outputLink;
+    private int stateCount;
+
+    // 转移表：以 (状态 << 16 | 字符) 为键的开放寻址哈希表
+    private long[] tableKeys;
+    private int[] tableTargets;
+    private int tableMask;
+
+    private final int[] keywordLengths;
+
+    public KeywordAutomaton(String... keywords) {
+        keywordLengths = new int[keywords.length];
+
+        int capacity = 1;
+        for (String keyword : keywords) {
+            capacity += keyword.length();
+        }
+        firstEdge = new int[capacity];
+        keywordId = new int[capacity];
+        Arrays.fill(firstEdge, -1);
+        Arrays.fill(keywordId, -1);
+        edgeChar = new int[capacity];
+        edgeTarget = new int[capacity];
+        nextSibling = new int[capacity];
+        stateCount = 1;
+
+        for (int id = 0; id < keywords.length; id++) {
+            addKeyword(keywords[id], id);
+        }
+
+        buildTable();
+        buildFailureLinks();
+
+        // 构建完成后释放链表
+        firstEdge = null;
+        edgeChar = null;
+        edgeTarget = null;
+        nextSibling = null;
+    }
+
+    public int getKeywordCount() {
+        return keywordLengths.length;
+    }
+
+    public int getKeywordLength(int id) {
+        return keywordLengths[id];
+    }
+
+    // 仅沿字典树前进，没有对应边时返回NO_STATE，用于最长匹配
+    public int next(int state, char c) {
+        long key = edgeKey(state, c);
+        int slot = slotOf(key);
+        while (tableKeys[slot] != EMPTY_KEY) {
+            if (tableKeys[slot] == key) {
+                return tableTargets[slot];
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return NO_STATE;
+    }
+
+    // 完整的自动机转移，失配时沿失败链回退
+    public int step(int state, char c) {
+        while (true) {
+            int target = next(state, c);
+            if (target != NO_STATE) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    // 在该状态结束的关键词ID，没有则返回-1
+    public int keywordAt(int state) {
+        return keywordId[state];
+    }
+
+    // 失败链上下一个以关键词结尾的状态，没有则返回NO_STATE
+    public int outputLink(int state) {
+        return outputLink[state];
+    }
+
+    // 当前状态或其后缀上的第一个匹配状态
+    public int firstMatch(int state) {
+        return keywordId[state] >= 0 ? state : outputLink[state];
+    }
+
+    private void addKeyword(String keyword, int id) {
+        int state = ROOT;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            int target = findEdge(state, c);
+            if (target == NO_STATE) {
+                target = stateCount++;
+                edgeChar[edgeCount] = c;
+                edgeTarget[edgeCount] = target;
+                nextSibling[edgeCount] = firstEdge[state];
+                firstEdge[state] = edgeCount;
+                edgeCount++;
+            }
+            state = target;
+        }
+        keywordLengths[id] = keyword.length();
+        // 重复的关键词保留最先出现的ID
+        if (keywordId[state] < 0) {
+            keywordId[state] = id;
+        }
+    }
+
+    private int findEdge(int state, char c) {
+        for (int e = firstEdge[state]; e >= 0; e = nextSibling[e]) {
+            if (edgeChar[e] == c) {
+                return edgeTarget[e];
+            }
+        }
+        return NO_STATE;
+    }
+
+    private void buildTable() {
+        int size = Integer.highestOneBit(Math.max(edgeCount, 1) * 2) << 1;
+        tableKeys = new long[size];
+        tableTargets = new int[size];
+        tableMask = size - 1;
+        Arrays.fill(tableKeys, EMPTY_KEY);
+
+        for (int state = 0; state < stateCount; state++) {
+            for (int e = firstEdge[state]; e >= 0; e = nextSibling[e]) {
+                long key = edgeKey(state, (char) edgeChar[e]);
+                int slot = slotOf(key);
+                while (tableKeys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & tableMask;
+                }
+                tableKeys[slot] = key;
+                tableTargets[slot] = edgeTarget[e];
+            }
+        }
+    }
+
+    private void buildFailureLinks() {
+        fail = new int[stateCount];
+        outputLink = new int[stateCount];
+        Arrays.fill(outputLink, NO_STATE);
+
+        // 广度优先，保证处理某状态时其失败状态已经就绪
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int e = firstEdge[ROOT]; e >= 0; e = nextSibling[e]) {
+            fail[edgeTarget[e]] = ROOT;
+            queue[tail++] = edgeTarget[e];
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = firstEdge[state]; e >= 0; e = nextSibling[e]) {
+                int target = edgeTarget[e];
+                char c = (char) edgeChar[e];
+                fail[target] = step(fail[state], c);
+                int failState = fail[target];
+                outputLink[target] = keywordId[failState] >= 0 ? failState : outputLink[failState];
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & tableMask;
+    }
+
+    private static long edgeKey(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+}
@@ -1,22 +1,17 @@
 package com.amap.navigation_listener;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.BluetoothProfile;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.IBinder;
 import android.util.Log;
-import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -30,21 +25,14 @@ import androidx.viewpager2.widget.ViewPager2;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "NavigationListener";
     private static final int REQUEST_PERMISSIONS = 1001;
     private static final int REQUEST_ENABLE_BT = 1002;
-
-    // BLE UUIDs
-    private static final String SERVICE_UUID = "4fafc201-1fb5-459e-8fcc-c5c9c331914b";
-    private static final String CHARACTERISTIC_UUID = "beb5483e-36e1-4688-b7f5-ea07361b26a8";
+    private static final long SCAN_DURATION_MS = 10000;
 
     // UI组件
     private TabLayout tabLayout;
@@ -54,16 +42,43 @@ public class MainActivity extends AppCompatActivity {
 
     // 蓝牙相关
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothGatt bluetoothGatt;
-    private BluetoothDevice connectedDevice;
-    private boolean isConnected = false;
+    private DisplayScanner scanner;
+
+    // 导航数据转发服务，持有显示设备连接；界面关闭后继续运行，绑定前为null
+    private NavigationBridgeService bridge;
+    private boolean isBridgeBound = false;
+
+    private final ServiceConnection bridgeConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            bridge = ((NavigationBridgeService.LocalBinder) service).getService();
+            isBridgeBound = true;
+            bridge.addObserver(bridgeObserver);
+            DisplayConnectionManager manager = bridge.getDisplayManager();
+            updateConnectionStatus(manager.getReadyCount(), manager.getSessionCount());
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            bridge = null;
+            isBridgeBound = false;
+        }
+    };
+
+    private final NavigationBridgeService.Observer bridgeObserver = new NavigationBridgeService.Observer() {
+        @Override
+        public void onNavigationDataChanged(NavigationSnapshot data) {
+        }
+
+        @Override
+        public void onSessionsChanged(int readyCount, int sessionCount) {
+            runOnUiThread(() -> updateConnectionStatus(readyCount, sessionCount));
+        }
+    };
 
     // 页面适配器
     private ViewPagerAdapter pagerAdapter;
 
-    // 导航数据
-    private NavigationData navigationData;
-
     // 需要的权限
     private String[] permissions = {
         Manifest.permission.BLUETOOTH,
@@ -71,7 +86,8 @@ public class MainActivity extends AppCompatActivity {
         Manifest.permission.ACCESS_FINE_LOCATION,
         Manifest.permission.ACCESS_COARSE_LOCATION,
         Manifest.permission.BLUETOOTH_SCAN,
-        Manifest.permission.BLUETOOTH_CONNECT
+        Manifest.permission.BLUETOOTH_CONNECT,
+        Manifest.permission.POST_NOTIFICATIONS
     };
 
     @Override
@@ -103,6 +119,12 @@ public class MainActivity extends AppCompatActivity {
             finish();
             return;
         }
+
+        scanner = new DisplayScanner(bluetoothAdapter, scanListener);
+
+        // 启动转发服务，界面只是它的观察者
+        NavigationBridgeService.start(this);
+        bindService(new Intent(this, NavigationBridgeService.class), bridgeConnection, Context.BIND_AUTO_CREATE);
     }
 
     private void checkPermissions() {
@@ -137,140 +159,104 @@ public class MainActivity extends AppCompatActivity {
                     case 2:
                         tab.setText("数据转换");
                         break;
+                    case 3:
+                        tab.setText("诊断");
+                        break;
                 }
             }
         ).attach();
     }
 
     private void toggleNavigationService() {
-        if (!isConnected) {
+        DisplayConnectionManager displayManager = getDisplayManager();
+        if (displayManager == null) {
+            return;
+        }
+        if (displayManager.getSessionCount() == 0) {
             scanAndConnect();
         } else {
             disconnectDevice();
         }
     }
 
-    @SuppressLint("MissingPermission")
-    private void scanAndConnect() {
+    // 先直接连接之前用过的显示设备，同时扫描新设备，扫描期间连接所有找到的设备直到达到连接上限
+    public void scanAndConnect() {
+        DisplayConnectionManager displayManager = getDisplayManager();
+        if (displayManager == null) {
+            return;
+        }
         if (!bluetoothAdapter.isEnabled()) {
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             startActivityForResult(enableBtIntent, REQUEST_ENABLE_BT);
             return;
         }
+        if (scanner.isScanning()) {
+            return;
+        }
 
-        tvStatus.setText("正在扫描设备...");
-
-        // 扫描设备
-        bluetoothAdapter.startLeScan(leScanCallback);
-
-        // 10秒后停止扫描
-        new Handler().postDelayed(() -> {
-            bluetoothAdapter.stopLeScan(leScanCallback);
-            if (!isConnected) {
-                tvStatus.setText("未找到设备");
-            }
-        }, 10000);
-    }
-
-    private BluetoothAdapter.LeScanCallback leScanCallback = new BluetoothAdapter.LeScanCallback() {
-        @Override
-        public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            runOnUiThread(() -> {
-                String deviceName = device.getName();
-                if (deviceName != null && deviceName.contains("ESP32_Navigation")) {
-                    bluetoothAdapter.stopLeScan(this);
-                    connectToDevice(device);
-                }
-            });
+        int known = displayManager.connectKnownDisplays(bluetoothAdapter);
+        if (known > 0) {
+            Log.i(TAG, "直接连接已知设备: " + known);
+        }
+        if (displayManager.getSessionCount() >= DisplayConnectionManager.MAX_DISPLAYS) {
+            return;
         }
-    };
 
-    @SuppressLint("MissingPermission")
-    private void connectToDevice(BluetoothDevice device) {
-        tvStatus.setText("正在连接设备...");
-        connectedDevice = device;
-        bluetoothGatt = device.connectGatt(this, false, gattCallback);
+        tvStatus.setText("正在扫描设备...");
+        if (!scanner.start(DisplayScanner.MODE_LOW_LATENCY, SCAN_DURATION_MS)) {
+            tvStatus.setText("无法开始扫描");
+        }
     }
 
-    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+    private final DisplayScanner.Listener scanListener = new DisplayScanner.Listener() {
         @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (newState == BluetoothProfile.STATE_CONNECTED) {
-                Log.i(TAG, "已连接到GATT服务器");
-                isConnected = true;
-                runOnUiThread(() -> {
-                    tvStatus.setText("已连接: " + connectedDevice.getName());
-                    btnStartService.setText("断开连接");
-                });
-                gatt.discoverServices();
-            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                Log.i(TAG, "已断开GATT服务器连接");
-                isConnected = false;
-                runOnUiThread(() -> {
-                    tvStatus.setText("未连接");
-                    btnStartService.setText("连接设备");
-                });
+        public void onDisplayFound(BluetoothDevice device, int rssi) {
+            DisplayConnectionManager displayManager = getDisplayManager();
+            if (displayManager == null || displayManager.isConnected(device.getAddress())) {
+                return;
             }
-        }
-
-        @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                BluetoothGattService service = gatt.getService(UUID.fromString(SERVICE_UUID));
-                if (service != null) {
-                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(
-                        UUID.fromString(CHARACTERISTIC_UUID));
-                    if (characteristic != null) {
-                        gatt.setCharacteristicNotification(characteristic, true);
-                    }
-                }
+            connectToDevice(device);
+            if (displayManager.getSessionCount() >= DisplayConnectionManager.MAX_DISPLAYS) {
+                scanner.stop();
             }
         }
 
         @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.i(TAG, "数据发送成功");
+        public void onScanStopped(int foundCount) {
+            DisplayConnectionManager displayManager = getDisplayManager();
+            if (displayManager == null || displayManager.getSessionCount() == 0) {
+                tvStatus.setText("未找到设备");
             }
         }
     };
 
-    @SuppressLint("MissingPermission")
-    private void disconnectDevice() {
-        if (bluetoothGatt != null) {
-            bluetoothGatt.disconnect();
-            bluetoothGatt.close();
-            bluetoothGatt = null;
-            isConnected = false;
+    public void connectToDevice(BluetoothDevice device) {
+        DisplayConnectionManager displayManager = getDisplayManager();
+        if (displayManager != null && !displayManager.connect(device)) {
+            Toast.makeText(this, "最多同时连接" + DisplayConnectionManager.MAX_DISPLAYS + "台显示设备",
+                    Toast.LENGTH_SHORT).show();
         }
     }
 
-    // 发送导航数据到ESP32
-    public void sendNavigationData(NavigationData data) {
-        if (isConnected && bluetoothGatt != null) {
-            try {
-                JSONObject json = new JSONObject();
-                json.put("roadName", data.getRoadName());
-                json.put("action", data.getAction());
-                json.put("distance", data.getDistance());
-                json.put("remainingTime", data.getRemainingTime());
-                json.put("speed", data.getSpeed());
-                json.put("isActive", data.isActive());
-
-                String jsonStr = json.toString() + "\n";
-
-                BluetoothGattService service = bluetoothGatt.getService(UUID.fromString(SERVICE_UUID));
-                if (service != null) {
-                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(
-                        UUID.fromString(CHARACTERISTIC_UUID));
-                    if (characteristic != null) {
-                        characteristic.setValue(jsonStr.getBytes());
-                        bluetoothGatt.writeCharacteristic(characteristic);
-                    }
-                }
-            } catch (JSONException e) {
-                Log.e(TAG, "JSON转换错误", e);
-            }
+    // 断开所有显示设备，转发服务继续运行
+    public void disconnectDevice() {
+        scanner.stop();
+        if (bridge != null) {
+            bridge.getDisplayManager().disconnectAll();
+            Log.i(TAG, "转发统计: " + bridge.getStats());
+        }
+    }
+
+    private void updateConnectionStatus(int readyCount, int sessionCount) {
+        if (readyCount > 0) {
+            tvStatus.setText("已连接" + readyCount + "台显示设备");
+            btnStartService.setText("断开连接");
+        } else if (sessionCount > 0) {
+            tvStatus.setText("正在连接设备...");
+            btnStartService.setText("断开连接");
+        } else {
+            tvStatus.setText("未连接");
+            btnStartService.setText("连接设备");
         }
     }
 
@@ -302,20 +288,38 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        disconnectDevice();
+        // 只停止扫描并解除绑定，显示设备连接由转发服务保持
+        if (scanner != null) {
+            scanner.stop();
+        }
+        if (isBridgeBound) {
+            bridge.removeObserver(bridgeObserver);
+            unbindService(bridgeConnection);
+            isBridgeBound = false;
+            bridge = null;
+        }
     }
 
     // Getter方法
     public boolean isConnected() {
-        return isConnected;
+        DisplayConnectionManager displayManager = getDisplayManager();
+        return displayManager != null && displayManager.getReadyCount() > 0;
+    }
+
+    // 无响应写入吞吐更高，对所有连接立即生效
+    public void setWriteWithoutResponse(boolean enabled) {
+        DisplayConnectionManager displayManager = getDisplayManager();
+        if (displayManager != null) {
+            displayManager.setWriteWithoutResponse(enabled);
+        }
     }
 
-    public NavigationData getNavigationData() {
-        return navigationData;
+    // 转发服务绑定前返回null
+    public NavigationBridgeService getBridge() {
+        return bridge;
     }
 
-    public void setNavigationData(NavigationData data) {
-        this.navigationData = data;
-        sendNavigationData(data);
+    public DisplayConnectionManager getDisplayManager() {
+        return bridge != null ? bridge.getDisplayManager() : null;
     }
-}
\ No newline at end of file
+}
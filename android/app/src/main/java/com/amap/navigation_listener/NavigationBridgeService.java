@@ -0,0 +1,283 @@
+package com.amap.navigation_listener;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// 导航数据转发服务
+// 以前台服务运行，持有显示设备连接、发送调度和行程记录，在自己的转发线程上把
+// 无障碍服务解析出的导航数据送到显示设备。屏幕关闭或高德地图在前台时转发不受影响，
+// 界面只是可选的观察者，绑定后读取状态、发起扫描和连接
+public class NavigationBridgeService extends Service {
+    private static final String TAG = "NavigationBridgeService";
+
+    private static final String CHANNEL_ID = "navigation_bridge";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String ACTION_STOP = "com.amap.navigation_listener.action.STOP_BRIDGE";
+
+    // 行程记录在转发线程上打开和关闭；服务很快重建时，新实例等旧实例关闭存储后再打开同一目录
+    private static final Object TRIP_STORE_LOCK = new Object();
+
+    public interface Observer {
+        // 以下回调都在转发线程上调用
+        void onNavigationDataChanged(NavigationSnapshot data);
+
+        void onSessionsChanged(int readyCount, int sessionCount);
+    }
+
+    public class LocalBinder extends Binder {
+        public NavigationBridgeService getService() {
+            return NavigationBridgeService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    private final PipelineMetrics metrics = PipelineMetrics.getDefault();
+
+    // 以下状态只在转发线程上访问
+    private HandlerThread workerThread;
+    private Handler workerHandler;
+    private final Runnable sendRunnable = this::pumpSendScheduler;
+    private boolean hasReadyDisplays;
+    private int readyCount;
+    private int sessionCount;
+
+    private DisplayConnectionManager displayManager;
+    // 按驾驶情况调节发送频率，在转发线程上驱动
+    private final AdaptiveSendScheduler sendScheduler = new AdaptiveSendScheduler();
+    // 行程记录，在后台线程上批量写入；打开之前为null
+    private volatile NavigationHistoryWriter historyWriter;
+    private volatile NavigationSnapshot navigationData = NavigationSnapshot.EMPTY;
+
+    // 统计
+    private volatile long received;
+    private volatile long sent;
+
+    // 启动服务并进入前台，已在运行时不会重复创建
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, NavigationBridgeService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        createNotificationChannel();
+        startForeground(NOTIFICATION_ID, buildNotification());
+
+        // 转发线程优先于普通后台线程，避免被其他应用的后台任务拖慢
+        workerThread = new HandlerThread("NavigationBridge", Process.THREAD_PRIORITY_FOREGROUND);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+
+        displayManager = new DisplayConnectionManager(this, metrics, workerThread.getLooper());
+        displayManager.setOnSessionsChangedListener(this::onSessionsChanged);
+
+        File tripDirectory = new File(getFilesDir(), "trips");
+        workerHandler.post(() -> {
+            synchronized (TRIP_STORE_LOCK) {
+                try {
+                    historyWriter = new NavigationHistoryWriter(TripLogStore.open(tripDirectory));
+                } catch (IOException e) {
+                    Log.e(TAG, "打开行程记录失败", e);
+                }
+            }
+        });
+
+        NavigationListenerService.setOnNavigationDataListener(this::onNavigationDataReceived);
+        Log.i(TAG, "导航数据转发服务已启动");
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (intent == null) {
+            // 被系统回收后重新创建，直接连接之前用过的显示设备
+            BluetoothManager bluetoothManager = (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
+            BluetoothAdapter adapter = bluetoothManager != null ? bluetoothManager.getAdapter() : null;
+            if (adapter != null && adapter.isEnabled()) {
+                Log.i(TAG, "重新连接已知设备: " + displayManager.connectKnownDisplays(adapter));
+            }
+        }
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        NavigationListenerService.setOnNavigationDataListener(null);
+        workerHandler.removeCallbacksAndMessages(null);
+        displayManager.disconnectAll();
+        Log.i(TAG, "转发统计: " + getStats());
+        Log.i(TAG, "发送调度统计: " + sendScheduler.getStats());
+
+        // 关闭时要等待剩余数据写盘，放到转发线程上执行，quitSafely会在退出前处理完
+        workerHandler.post(() -> {
+            synchronized (TRIP_STORE_LOCK) {
+                NavigationHistoryWriter writer = historyWriter;
+                historyWriter = null;
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        });
+        workerThread.quitSafely();
+    }
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public DisplayConnectionManager getDisplayManager() {
+        return displayManager;
+    }
+
+    public AdaptiveSendScheduler getSendScheduler() {
+        return sendScheduler;
+    }
+
+    public NavigationHistoryWriter getHistoryWriter() {
+        return historyWriter;
+    }
+
+    public NavigationSnapshot getNavigationData() {
+        return navigationData;
+    }
+
+    // 可在任意线程调用，实际发送时机由调度器决定
+    public void setNavigationData(NavigationSnapshot data) {
+        navigationData = data;
+        sendScheduler.submit(data);
+        workerHandler.post(sendRunnable);
+    }
+
+    public String getStats() {
+        return "收到: " + received +
+                ", 发送: " + sent +
+                ", " + displayManager.getSummary();
+    }
+
+    // 在解析线程上调用
+    private void onNavigationDataReceived(NavigationSnapshot data) {
+        received++;
+        NavigationHistoryWriter writer = historyWriter;
+        if (writer != null) {
+            writer.record(System.currentTimeMillis(), data);
+        }
+        setNavigationData(data);
+        for (Observer observer : observers) {
+            workerHandler.post(() -> observer.onNavigationDataChanged(data));
+        }
+    }
+
+    // 在蓝牙协议栈的线程上调用，转到转发线程处理
+    private void onSessionsChanged(int ready, int count) {
+        workerHandler.post(() -> {
+            // 第一台设备就绪时立即发送当前数据，之后加入的设备由连接管理器补发关键帧
+            if (ready > 0 && !hasReadyDisplays) {
+                sendScheduler.reset();
+                sendScheduler.submit(navigationData);
+                workerHandler.post(sendRunnable);
+            }
+            hasReadyDisplays = ready > 0;
+            if (ready != readyCount || count != sessionCount) {
+                readyCount = ready;
+                sessionCount = count;
+                NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+                manager.notify(NOTIFICATION_ID, buildNotification());
+            }
+            for (Observer observer : observers) {
+                observer.onSessionsChanged(ready, count);
+            }
+        });
+    }
+
+    private void pumpSendScheduler() {
+        workerHandler.removeCallbacks(sendRunnable);
+        if (!hasReadyDisplays) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        NavigationSnapshot data = sendScheduler.poll(now);
+        if (data != null) {
+            displayManager.send(data);
+            sent++;
+        }
+
+        long deadline = sendScheduler.nextDeadline();
+        if (deadline != AdaptiveSendScheduler.NO_DEADLINE) {
+            workerHandler.postDelayed(sendRunnable, Math.max(deadline - now, 0));
+        }
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "导航数据转发",
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setDescription("把高德地图的导航数据转发到显示设备");
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.createNotificationChannel(channel);
+        }
+    }
+
+    private Notification buildNotification() {
+        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), flags);
+        PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, NavigationBridgeService.class).setAction(ACTION_STOP), flags);
+
+        String text;
+        if (readyCount > 0) {
+            text = "已连接" + readyCount + "台显示设备";
+        } else if (sessionCount > 0) {
+            text = "正在连接设备...";
+        } else {
+            text = "未连接显示设备";
+        }
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_data_bluetooth)
+                .setContentTitle("导航数据转发")
+                .setContentText(text)
+                .setContentIntent(contentIntent)
+                .addAction(0, "停止", stopIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+}
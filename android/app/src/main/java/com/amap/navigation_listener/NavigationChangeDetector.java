@@ -0,0 +1,84 @@
+package com.amap.navigation_listener;
+
+// 导航数据变化检测
+// 与上一次上报的数据逐字段比较，忽略低于阈值的数值抖动，只有真正的变化才通知下游
+public class NavigationChangeDetector {
+    public static final int DEFAULT_DISTANCE_THRESHOLD_METERS = 5;
+    public static final int DEFAULT_SPEED_THRESHOLD_KMH = 2;
+    public static final int DEFAULT_TIME_THRESHOLD_SECONDS = 1;
+
+    // 变化量小于阈值时视为抖动
+    private volatile int distanceThresholdMeters = DEFAULT_DISTANCE_THRESHOLD_METERS;
+    private volatile int speedThresholdKmh = DEFAULT_SPEED_THRESHOLD_KMH;
+    private volatile int timeThresholdSeconds = DEFAULT_TIME_THRESHOLD_SECONDS;
+
+    // 上一次上报的数据，阈值基于它计算，缓慢漂移累积到阈值后同样会上报
+    private final NavigationData lastReported = new NavigationData();
+    private boolean hasReported;
+
+    // 统计
+    private long checks;
+    private long changes;
+
+    public void setDistanceThresholdMeters(int meters) {
+        distanceThresholdMeters = Math.max(meters, 0);
+    }
+
+    public void setSpeedThresholdKmh(int kmh) {
+        speedThresholdKmh = Math.max(kmh, 0);
+    }
+
+    public void setTimeThresholdSeconds(int seconds) {
+        timeThresholdSeconds = Math.max(seconds, 0);
+    }
+
+    // 返回有意义变化的字段掩码，非0时把data记为新的基准
+    public int update(NavigationData data) {
+        checks++;
+        int mask = hasReported ? significantChanges(data) : NavigationData.ALL_FIELDS;
+        if (mask != 0) {
+            lastReported.copyFrom(data);
+            hasReported = true;
+            changes++;
+        }
+        return mask;
+    }
+
+    // 忘记上一次上报的数据，下一次update必然上报
+    public void reset() {
+        hasReported = false;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public long getChanges() {
+        return changes;
+    }
+
+    private int significantChanges(NavigationData data) {
+        int mask = data.diff(lastReported);
+        if ((mask & NavigationData.FIELD_DISTANCE) != 0
+                && !exceeds(lastReported.getDistance(), data.getDistance(), distanceThresholdMeters)) {
+            mask &= ~NavigationData.FIELD_DISTANCE;
+        }
+        if ((mask & NavigationData.FIELD_SPEED) != 0
+                && !exceeds(lastReported.getSpeed(), data.getSpeed(), speedThresholdKmh)) {
+            mask &= ~NavigationData.FIELD_SPEED;
+        }
+        if ((mask & NavigationData.FIELD_REMAINING_TIME) != 0
+                && !exceeds(lastReported.getRemainingTime(), data.getRemainingTime(), timeThresholdSeconds)) {
+            mask &= ~NavigationData.FIELD_REMAINING_TIME;
+        }
+        return mask;
+    }
+
+    // 变为0或从0变化（到达、停车）总是上报
+    private static boolean exceeds(int previous, int current, int threshold) {
+        if (previous == 0 || current == 0) {
+            return true;
+        }
+        return Math.abs(current - previous) >= threshold;
+    }
+}
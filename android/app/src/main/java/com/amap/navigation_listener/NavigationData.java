@@ -1,6 +1,17 @@
 package com.amap.navigation_listener;
 
+import java.util.Objects;
+
 public class NavigationData {
+    // 字段位掩码，用于增量传输和变化检测
+    public static final int FIELD_ROAD_NAME = 1;
+    public static final int FIELD_ACTION = 1 << 1;
+    public static final int FIELD_DISTANCE = 1 << 2;
+    public static final int FIELD_REMAINING_TIME = 1 << 3;
+    public static final int FIELD_SPEED = 1 << 4;
+    public static final int FIELD_ACTIVE = 1 << 5;
+    public static final int ALL_FIELDS = (1 << 6) - 1;
+
     private String roadName;
     private String action;
     private int distance;
@@ -74,6 +85,55 @@ public class NavigationData {
         isActive = active;
     }
 
+    // 返回两份数据之间取值不同的字段掩码
+    public int diff(NavigationData other) {
+        int mask = 0;
+        if (!Objects.equals(roadName, other.roadName)) {
+            mask |= FIELD_ROAD_NAME;
+        }
+        if (!Objects.equals(action, other.action)) {
+            mask |= FIELD_ACTION;
+        }
+        if (distance != other.distance) {
+            mask |= FIELD_DISTANCE;
+        }
+        if (remainingTime != other.remainingTime) {
+            mask |= FIELD_REMAINING_TIME;
+        }
+        if (speed != other.speed) {
+            mask |= FIELD_SPEED;
+        }
+        if (isActive != other.isActive) {
+            mask |= FIELD_ACTIVE;
+        }
+        return mask;
+    }
+
+    public void copyFrom(NavigationData other) {
+        roadName = other.roadName;
+        action = other.action;
+        distance = other.distance;
+        remainingTime = other.remainingTime;
+        speed = other.speed;
+        isActive = other.isActive;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NavigationData)) {
+            return false;
+        }
+        return diff((NavigationData) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(roadName, action, distance, remainingTime, speed, isActive);
+    }
+
     @Override
     public String toString() {
         return "NavigationData{" +
@@ -0,0 +1,29 @@
+package com.amap.navigation_listener;
+
+// 把导航数据描述为自然语言，只描述presentFields中出现的字段
+// 单条转换和日志批量转换共用
+public final class NavigationDescriptionFormatter {
+    private NavigationDescriptionFormatter() {
+    }
+
+    public static void append(StringBuilder sb, NavigationData data, int presentFields) {
+        if ((presentFields & NavigationData.FIELD_ROAD_NAME) != 0) {
+            sb.append("当前在").append(data.getRoadName()).append("上行驶");
+        }
+        if ((presentFields & NavigationData.FIELD_ACTION) != 0) {
+            sb.append("，").append(data.getAction());
+        }
+        if ((presentFields & NavigationData.FIELD_DISTANCE) != 0) {
+            sb.append("，距离").append(data.getDistance()).append("米");
+        }
+        if ((presentFields & NavigationData.FIELD_REMAINING_TIME) != 0) {
+            sb.append("，预计").append(TimeFormatter.formatCompact(data.getRemainingTime()));
+        }
+        if ((presentFields & NavigationData.FIELD_SPEED) != 0) {
+            sb.append("，当前车速").append(data.getSpeed()).append("公里每小时");
+        }
+        if ((presentFields & NavigationData.FIELD_ACTIVE) != 0 && !data.isActive()) {
+            sb.append("【导航未开始】");
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.amap.navigation_listener;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 无障碍事件合并调度器
+// 主线程只记录哪些子树变脏，节点读取和解析在独立的解析线程上进行，每帧最多解析一次
+public class NavigationEventScheduler {
+    public static final long DEFAULT_FRAME_INTERVAL_MS = 100;
+
+    // 一帧内变化的节点过多时，直接全量遍历更划算
+    private static final int MAX_DIRTY_SOURCES = 8;
+
+    public interface FrameProcessor {
+        // 在解析线程上调用，frame在回调返回后被复用
+        void processFrame(Frame frame);
+    }
+
+    // 一帧内累积的变化
+    public static class Frame {
+        boolean fullRefresh;
+        int windowId = -1;
+        final List<AccessibilityNodeInfo> sources = new ArrayList<>();
+        // 与sources按下标对应，sources的长度不超过MAX_DIRTY_SOURCES
+        final boolean[] textOnly = new boolean[MAX_DIRTY_SOURCES];
+        int eventCount;
+        long firstEventNanos;
+
+        public boolean isFullRefresh() {
+            return fullRefresh;
+        }
+
+        public int getWindowId() {
+            return windowId;
+        }
+
+        public int getSourceCount() {
+            return sources.size();
+        }
+
+        public AccessibilityNodeInfo getSource(int i) {
+            return sources.get(i);
+        }
+
+        public boolean isTextOnly(int i) {
+            return textOnly[i];
+        }
+
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        // 帧内第一个事件到达的时间（System.nanoTime）
+        public long getFirstEventNanos() {
+            return firstEventNanos;
+        }
+
+        void clear() {
+            for (AccessibilityNodeInfo source : sources) {
+                source.recycle();
+            }
+            sources.clear();
+            fullRefresh = false;
+            windowId = -1;
+            eventCount = 0;
+        }
+    }
+
+    private final FrameProcessor processor;
+    private final HandlerThread parserThread;
+    private final Handler parserHandler;
+    private volatile long frameIntervalMs;
+
+    private final Object lock = new Object();
+    // 双缓冲：主线程写pending，解析线程处理processing
+    private Frame pending = new Frame();
+    private Frame processing = new Frame();
+    private boolean frameScheduled;
+    private long lastFrameTime;
+    private boolean released;
+
+    // 统计
+    private long eventsReceived;
+    private long eventsCoalesced;
+    private long framesProcessed;
+    private long fullRefreshEscalations;
+
+    private final Runnable frameRunnable = this::runFrame;
+
+    public NavigationEventScheduler(FrameProcessor processor, long frameIntervalMs) {
+        this.processor = processor;
+        this.frameIntervalMs = frameIntervalMs;
+        parserThread = new HandlerThread("NavigationParser", Process.THREAD_PRIORITY_DEFAULT);
+        parserThread.start();
+        parserHandler = new Handler(parserThread.getLooper());
+    }
+
+    public void setFrameIntervalMs(long frameIntervalMs) {
+        this.frameIntervalMs = frameIntervalMs;
+    }
+
+    // 在主线程上调用，事件对象在返回后会被系统回收，这里只保留节点副本
+    public void onEvent(AccessibilityEvent event) {
+        boolean fullRefresh = event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+        AccessibilityNodeInfo source = fullRefresh ? null : event.getSource();
+
+        synchronized (lock) {
+            if (released) {
+                if (source != null) {
+                    source.recycle();
+                }
+                return;
+            }
+
+            eventsReceived++;
+            if (pending.eventCount > 0) {
+                eventsCoalesced++;
+            } else {
+                pending.firstEventNanos = System.nanoTime();
+            }
+            pending.eventCount++;
+
+            if (pending.windowId != -1 && pending.windowId != event.getWindowId()) {
+                fullRefresh = true;
+            }
+            pending.windowId = event.getWindowId();
+
+            int index = source == null ? -1 : pending.sources.indexOf(source);
+            if (source == null || pending.fullRefresh || fullRefresh) {
+                markFullRefresh();
+            } else if (index >= 0) {
+                // 同一节点的多次变化只需重读一次，取更大的重读范围
+                if (!NodeTextCache.isTextOnlyChange(event)) {
+                    pending.textOnly[index] = false;
+                }
+                source.recycle();
+                source = null;
+            } else if (pending.sources.size() >= MAX_DIRTY_SOURCES) {
+                fullRefreshEscalations++;
+                markFullRefresh();
+            } else {
+                pending.textOnly[pending.sources.size()] = NodeTextCache.isTextOnlyChange(event);
+                pending.sources.add(source);
+                source = null;
+            }
+
+            if (source != null) {
+                source.recycle();
+            }
+
+            if (!frameScheduled) {
+                frameScheduled = true;
+                long delay = lastFrameTime + frameIntervalMs - SystemClock.uptimeMillis();
+                parserHandler.postDelayed(frameRunnable, Math.max(0, delay));
+            }
+        }
+    }
+
+    private void markFullRefresh() {
+        pending.fullRefresh = true;
+        for (AccessibilityNodeInfo dirty : pending.sources) {
+            dirty.recycle();
+        }
+        pending.sources.clear();
+    }
+
+    private void runFrame() {
+        Frame frame;
+        synchronized (lock) {
+            if (released) {
+                return;
+            }
+            frame = pending;
+            pending = processing;
+            processing = frame;
+            frameScheduled = false;
+            lastFrameTime = SystemClock.uptimeMillis();
+            framesProcessed++;
+        }
+
+        try {
+            processor.processFrame(frame);
+        } finally {
+            frame.clear();
+        }
+    }
+
+    // 在解析线程上执行，用于访问只属于解析线程的状态
+    public void post(Runnable task) {
+        parserHandler.post(task);
+    }
+
+    // 已提交的任务执行完后退出解析线程
+    public void release() {
+        synchronized (lock) {
+            released = true;
+            parserHandler.removeCallbacks(frameRunnable);
+            pending.clear();
+        }
+        parserThread.quitSafely();
+    }
+
+    public long getEventsReceived() {
+        synchronized (lock) {
+            return eventsReceived;
+        }
+    }
+
+    public long getEventsCoalesced() {
+        synchronized (lock) {
+            return eventsCoalesced;
+        }
+    }
+
+    public long getFramesProcessed() {
+        synchronized (lock) {
+            return framesProcessed;
+        }
+    }
+
+    public long getFullRefreshEscalations() {
+        synchronized (lock) {
+            return fullRefreshEscalations;
+        }
+    }
+
+    public String getStats() {
+        synchronized (lock) {
+            return "事件: " + eventsReceived +
+                    ", 合并: " + eventsCoalesced +
+                    ", 解析帧: " + framesProcessed +
+                    ", 退化为全量: " + fullRefreshEscalations;
+        }
+    }
+}
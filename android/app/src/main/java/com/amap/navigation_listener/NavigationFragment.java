@@ -2,6 +2,7 @@ package com.amap.navigation_listener;
 
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
+import android.app.Activity;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
@@ -40,45 +41,39 @@ public class NavigationFragment extends Fragment {
     private Button btnCacheData;
 
     // 数据
-    private NavigationData navigationData;
-    private MainActivity mainActivity;
+    private NavigationSnapshot navigationData = NavigationSnapshot.EMPTY;
 
-    // 导航监听服务
-    private NavigationListenerService listenerService;
+    // 导航数据转发服务，页面可见时绑定并观察数据变化；行程记录和发送都在服务中进行
+    private NavigationBridgeService bridge;
     private boolean isServiceBound = false;
 
+    private final NavigationBridgeService.Observer bridgeObserver = new NavigationBridgeService.Observer() {
+        @Override
+        public void onNavigationDataChanged(NavigationSnapshot data) {
+            updateNavigationDisplay(data);
+        }
+
+        @Override
+        public void onSessionsChanged(int readyCount, int sessionCount) {
+        }
+    };
+
     private ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
-            NavigationListenerService.LocalBinder binder = (NavigationListenerService.LocalBinder) service;
-            listenerService = binder.getService();
+            bridge = ((NavigationBridgeService.LocalBinder) service).getService();
             isServiceBound = true;
-            listenerService.setOnNavigationDataListener(new NavigationListenerService.OnNavigationDataListener() {
-                @Override
-                public void onNavigationDataReceived(NavigationData data) {
-                    updateNavigationDisplay(data);
-                    // 发送到ESP32
-                    if (mainActivity != null) {
-                        mainActivity.setNavigationData(data);
-                    }
-                }
-            });
+            bridge.addObserver(bridgeObserver);
+            updateNavigationDisplay(bridge.getNavigationData());
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
-            listenerService = null;
+            bridge = null;
             isServiceBound = false;
         }
     };
 
-    @Override
-    public void onCreate(@Nullable Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        mainActivity = (MainActivity) getActivity();
-        navigationData = new NavigationData();
-    }
-
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
@@ -98,18 +93,21 @@ public class NavigationFragment extends Fragment {
             Toast.makeText(getContext(), "请先安装高德地图", Toast.LENGTH_LONG).show();
         }
 
-        // 绑定导航监听服务
+        // 绑定导航数据转发服务
         bindNavigationService();
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        // 解绑服务
-        if (isServiceBound) {
-            getActivity().unbindService(serviceConnection);
-            isServiceBound = false;
-        }
+        // 解绑服务，转发不受影响
+        unbindNavigationService();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        unbindNavigationService();
     }
 
     private void initViews(View view) {
@@ -131,10 +129,23 @@ public class NavigationFragment extends Fragment {
     }
 
     private void bindNavigationService() {
-        Intent intent = new Intent(getActivity(), NavigationListenerService.class);
+        Intent intent = new Intent(getActivity(), NavigationBridgeService.class);
         getActivity().bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
     }
 
+    private void unbindNavigationService() {
+        if (!isServiceBound) {
+            return;
+        }
+        bridge.removeObserver(bridgeObserver);
+        Activity activity = getActivity();
+        if (activity != null) {
+            activity.unbindService(serviceConnection);
+        }
+        isServiceBound = false;
+        bridge = null;
+    }
+
     private boolean isAmapInstalled() {
         // 检查是否安装了高德地图
         List<AccessibilityServiceInfo> services = getActivity().getSystemService(AccessibilityService.class)
@@ -148,15 +159,23 @@ public class NavigationFragment extends Fragment {
         return false;
     }
 
-    private void updateNavigationDisplay(NavigationData data) {
+    // 可在转发线程上调用，页面已分离时只记录数据
+    private void updateNavigationDisplay(NavigationSnapshot data) {
         navigationData = data;
 
-        getActivity().runOnUiThread(() -> {
+        Activity activity = getActivity();
+        if (activity == null) {
+            return;
+        }
+        activity.runOnUiThread(() -> {
+            if (!isAdded()) {
+                return;
+            }
             if (data.isActive()) {
                 tvRoadName.setText("当前道路: " + data.getRoadName());
                 tvAction.setText("下一步: " + data.getAction());
                 tvDistance.setText("距离: " + data.getDistance() + " 米");
-                tvRemainingTime.setText("剩余时间: " + formatTime(data.getRemainingTime()));
+                tvRemainingTime.setText("剩余时间: " + TimeFormatter.formatSpaced(data.getRemainingTime()));
                 tvSpeed.setText("当前速度: " + data.getSpeed() + " km/h");
                 tvStatus.setText("导航状态: 进行中");
                 tvStatus.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
@@ -172,22 +191,8 @@ public class NavigationFragment extends Fragment {
         });
     }
 
-    private String formatTime(int seconds) {
-        if (seconds < 60) {
-            return seconds + " 秒";
-        } else {
-            int minutes = seconds / 60;
-            int remainingSeconds = seconds % 60;
-            if (remainingSeconds == 0) {
-                return minutes + " 分钟";
-            } else {
-                return minutes + " 分 " + remainingSeconds + " 秒";
-            }
-        }
-    }
-
     private void clearNavigationData() {
-        navigationData = new NavigationData();
+        navigationData = NavigationSnapshot.EMPTY;
         updateNavigationDisplay(navigationData);
         Toast.makeText(getContext(), "数据已清空", Toast.LENGTH_SHORT).show();
     }
@@ -217,29 +222,19 @@ public class NavigationFragment extends Fragment {
         }
     }
 
+    // 把转发服务已记录的行程数据写入并同步到磁盘
     private void cacheNavigationData() {
-        // 保存到SharedPreferences
-        android.content.SharedPreferences prefs = getActivity()
-            .getSharedPreferences("NavigationCache", Context.MODE_PRIVATE);
-        android.content.SharedPreferences.Editor editor = prefs.edit();
-
-        try {
-            JSONObject json = new JSONObject();
-            json.put("roadName", navigationData.getRoadName());
-            json.put("action", navigationData.getAction());
-            json.put("distance", navigationData.getDistance());
-            json.put("remainingTime", navigationData.getRemainingTime());
-            json.put("speed", navigationData.getSpeed());
-            json.put("isActive", navigationData.isActive());
-            json.put("timestamp", System.currentTimeMillis());
-
-            editor.putString("cachedData", json.toString());
-            editor.apply();
-
-            Toast.makeText(getContext(), "数据已缓存", Toast.LENGTH_SHORT).show();
-        } catch (JSONException e) {
-            Log.e(TAG, "缓存数据失败", e);
+        NavigationHistoryWriter writer = bridge != null ? bridge.getHistoryWriter() : null;
+        if (writer == null) {
             Toast.makeText(getContext(), "缓存数据失败", Toast.LENGTH_SHORT).show();
+            return;
         }
+        writer.flush(storedRecords -> {
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> Toast.makeText(getContext(),
+                    "数据已缓存，共" + storedRecords + "段", Toast.LENGTH_SHORT).show());
+        });
     }
-}
\ No newline at end of file
+}
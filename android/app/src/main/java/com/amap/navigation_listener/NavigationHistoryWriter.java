@@ -0,0 +1,166 @@
+package com.amap.navigation_listener;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// 导航历史批量写入器
+// 调用线程只把数据放入内存批次，写盘在后台线程上进行；批次达到一定条数或定时器到期时刷新。
+// 写入器本身不做压缩，只把原始数据按批交给TripLogStore；连续数据由存储合并为一条记录并保存逐条增量，
+// 读取时能精确还原每一条数据
+public class NavigationHistoryWriter {
+    private static final String TAG = "NavigationHistoryWriter";
+
+    public static final int DEFAULT_BATCH_RECORDS = 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+
+    public interface FlushCallback {
+        void onFlushed(long storedRecords);
+    }
+
+    private static final class Sample {
+        final long timestamp;
+        final NavigationSnapshot data;
+
+        Sample(long timestamp, NavigationSnapshot data) {
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+    }
+
+    private final TripLogStore store;
+    private final int batchRecords;
+    private final ScheduledExecutorService executor;
+
+    // 以下状态由this保护
+    private ArrayList<Sample> batch = new ArrayList<>();
+    private boolean flushQueued;
+    private boolean closed;
+
+    // 统计
+    private long recorded;
+    private long written;
+    private long flushes;
+    private long failures;
+
+    public NavigationHistoryWriter(TripLogStore store) {
+        this(store, DEFAULT_BATCH_RECORDS, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public NavigationHistoryWriter(TripLogStore store, int batchRecords, long flushIntervalMs) {
+        this.store = store;
+        this.batchRecords = batchRecords;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "HistoryWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+        executor.scheduleWithFixedDelay(this::writeBatch, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 可在任意线程调用，不做IO
+    public synchronized void record(long timestampMs, NavigationSnapshot data) {
+        if (closed) {
+            return;
+        }
+        recorded++;
+        batch.add(new Sample(timestampMs, data));
+        if (batch.size() >= batchRecords && !flushQueued) {
+            flushQueued = true;
+            executor.execute(this::writeBatch);
+        }
+    }
+
+    // 把所有数据写入存储并同步到磁盘，完成后在写入线程上回调
+    public void flush(FlushCallback callback) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            executor.execute(() -> {
+                writeBatch();
+                try {
+                    store.force();
+                } catch (IOException e) {
+                    Log.e(TAG, "同步行程记录失败", e);
+                }
+                if (callback != null) {
+                    callback.onFlushed(store.getRecordCount());
+                }
+            });
+        }
+    }
+
+    // 写入剩余数据并关闭存储，会等待后台写入完成
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.execute(() -> {
+            writeBatch();
+            try {
+                store.close();
+            } catch (IOException e) {
+                Log.e(TAG, "关闭行程记录失败", e);
+            }
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                Log.w(TAG, "等待行程记录写入超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.i(TAG, "行程记录统计: " + getStats());
+    }
+
+    public TripLogStore getStore() {
+        return store;
+    }
+
+    // 只在写入线程上调用
+    private void writeBatch() {
+        ArrayList<Sample> samples;
+        synchronized (this) {
+            flushQueued = false;
+            if (batch.isEmpty()) {
+                return;
+            }
+            samples = batch;
+            batch = new ArrayList<>(Math.min(samples.size(), batchRecords));
+        }
+
+        int count = 0;
+        try {
+            for (; count < samples.size(); count++) {
+                Sample sample = samples.get(count);
+                store.append(sample.timestamp, sample.data);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "写入行程记录失败", e);
+        }
+        synchronized (this) {
+            written += count;
+            failures += samples.size() - count;
+            flushes++;
+        }
+    }
+
+    public synchronized String getStats() {
+        return "记录: " + recorded +
+                ", 写入: " + written +
+                ", 刷新: " + flushes +
+                ", 失败: " + failures +
+                ", " + store.getStats();
+    }
+}
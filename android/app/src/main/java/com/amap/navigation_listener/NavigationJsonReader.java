@@ -0,0 +1,340 @@
+package com.amap.navigation_listener;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// 逐条读取换行分隔的导航数据JSON（每行一个对象）
+// 手写的拉取式解析器：不构建DOM，只识别NavigationData的字段，其余字段跳过；
+// 内存占用与输入大小无关，超长字符串被截断
+public class NavigationJsonReader {
+    public static final int END_OF_INPUT = -1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_STRING_CHARS = 1024;
+    private static final int EOF = -1;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int peeked = -2;
+    private long lineNumber;
+    private boolean atLineStart = true;
+
+    private final StringBuilder stringBuffer = new StringBuilder(64);
+
+    public NavigationJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    // 最近读取的字符所在的行号，从1开始
+    public long getLineNumber() {
+        return Math.max(lineNumber, 1);
+    }
+
+    // 读取下一条记录填充到data中，返回出现的字段掩码；输入结束时返回END_OF_INPUT
+    // 格式错误时抛出JSONException，调用skipLine后可以继续读取下一行
+    public int next(NavigationData data) throws IOException, JSONException {
+        skipBlankLines();
+        int c = read();
+        if (c == EOF) {
+            return END_OF_INPUT;
+        }
+        if (c != '{') {
+            throw syntaxError("应为'{'");
+        }
+
+        int present = 0;
+        skipWhitespace();
+        if (peek() == '}') {
+            read();
+            return present;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (read() != '"') {
+                throw syntaxError("应为字段名");
+            }
+            String key = readStringContent();
+            skipWhitespace();
+            if (read() != ':') {
+                throw syntaxError("应为':'");
+            }
+            skipWhitespace();
+            present |= readField(key, data);
+
+            skipWhitespace();
+            c = read();
+            if (c == '}') {
+                return present;
+            }
+            if (c != ',') {
+                throw syntaxError("应为','或'}'");
+            }
+        }
+    }
+
+    // 丢弃当前行剩余的内容，出错位置恰好是换行符时不会吞掉下一行
+    public void skipLine() throws IOException {
+        if (atLineStart) {
+            return;
+        }
+        int c;
+        do {
+            c = read();
+        } while (c != EOF && c != '\n');
+    }
+
+    private int readField(String key, NavigationData data) throws IOException, JSONException {
+        switch (key) {
+            case "roadName":
+                if (peek() == '"') {
+                    read();
+                    data.setRoadName(readStringContent());
+                    return NavigationData.FIELD_ROAD_NAME;
+                }
+                break;
+            case "action":
+                if (peek() == '"') {
+                    read();
+                    data.setAction(readStringContent());
+                    return NavigationData.FIELD_ACTION;
+                }
+                break;
+            case "distance":
+                if (isNumberStart(peek())) {
+                    data.setDistance(readInt());
+                    return NavigationData.FIELD_DISTANCE;
+                }
+                break;
+            case "remainingTime":
+                if (isNumberStart(peek())) {
+                    data.setRemainingTime(readInt());
+                    return NavigationData.FIELD_REMAINING_TIME;
+                }
+                break;
+            case "speed":
+                if (isNumberStart(peek())) {
+                    data.setSpeed(readInt());
+                    return NavigationData.FIELD_SPEED;
+                }
+                break;
+            case "isActive":
+                if (peek() == 't' || peek() == 'f') {
+                    data.setActive(readLiteral() == Boolean.TRUE);
+                    return NavigationData.FIELD_ACTIVE;
+                }
+                break;
+            default:
+                break;
+        }
+        // 未知字段或类型不符（如null）时跳过
+        skipValue();
+        return 0;
+    }
+
+    // 数字按整数截断，与JSONObject.getInt一致
+    private int readInt() throws IOException, JSONException {
+        boolean negative = false;
+        if (peek() == '-') {
+            read();
+            negative = true;
+        }
+        long value = 0;
+        int digits = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            if (value < Integer.MAX_VALUE) {
+                value = value * 10 + (read() - '0');
+            } else {
+                read();
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw syntaxError("数字格式错误");
+        }
+        // 小数和指数部分只校验不使用
+        if (peek() == '.') {
+            read();
+            skipDigits();
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            read();
+            if (peek() == '+' || peek() == '-') {
+                read();
+            }
+            skipDigits();
+        }
+        value = Math.min(value, Integer.MAX_VALUE);
+        return (int) (negative ? -value : value);
+    }
+
+    private void skipDigits() throws IOException, JSONException {
+        int digits = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            read();
+            digits++;
+        }
+        if (digits == 0) {
+            throw syntaxError("数字格式错误");
+        }
+    }
+
+    // 读取true/false/null，null返回null
+    private Boolean readLiteral() throws IOException, JSONException {
+        int c = read();
+        String expected = c == 't' ? "rue" : c == 'f' ? "alse" : c == 'n' ? "ull" : null;
+        if (expected == null) {
+            throw syntaxError("未知的值");
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (read() != expected.charAt(i)) {
+                throw syntaxError("未知的值");
+            }
+        }
+        return c == 't' ? Boolean.TRUE : c == 'f' ? Boolean.FALSE : null;
+    }
+
+    // 开头的引号已被读取
+    private String readStringContent() throws IOException, JSONException {
+        stringBuffer.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == EOF || c == '\n') {
+                throw syntaxError("字符串未结束");
+            }
+            if (c == '"') {
+                return stringBuffer.toString();
+            }
+            if (c == '\\') {
+                c = readEscape();
+            }
+            if (stringBuffer.length() < MAX_STRING_CHARS) {
+                stringBuffer.append((char) c);
+            }
+        }
+    }
+
+    private int readEscape() throws IOException, JSONException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("转义序列错误");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return value;
+            default:
+                throw syntaxError("转义序列错误");
+        }
+    }
+
+    // 跳过任意值，嵌套的对象和数组用计数代替递归
+    private void skipValue() throws IOException, JSONException {
+        int depth = 0;
+        do {
+            skipWhitespace();
+            int c = peek();
+            if (c == '{' || c == '[') {
+                read();
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    throw syntaxError("缺少值");
+                }
+                read();
+                depth--;
+            } else if (c == '"') {
+                read();
+                readStringContent();
+            } else if (isNumberStart(c)) {
+                readInt();
+            } else if (c == 't' || c == 'f' || c == 'n') {
+                readLiteral();
+            } else if (c == ',' || c == ':') {
+                if (depth == 0) {
+                    throw syntaxError("缺少值");
+                }
+                read();
+            } else {
+                throw syntaxError(c == EOF ? "输入意外结束" : c == '\n' ? "记录未结束" : "未知的值");
+            }
+        } while (depth > 0);
+    }
+
+    private static boolean isNumberStart(int c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    // 记录之间可以有空行
+    private void skipBlankLines() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            read();
+            c = peek();
+        }
+    }
+
+    // 记录内部不跨行：截断的记录在换行处报错，不会把下一行当作自己的后半部分
+    private void skipWhitespace() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            read();
+            c = peek();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = fill();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (atLineStart && c != EOF) {
+            lineNumber++;
+        }
+        atLineStart = c == '\n';
+        return c;
+    }
+
+    private int fill() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException("第" + getLineNumber() + "行: " + message);
+    }
+}
@@ -2,28 +2,77 @@ package com.amap.navigation_listener;
 
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 public class NavigationListenerService extends AccessibilityService {
     private static final String TAG = "NavigationListenerService";
     private static final String AMAP_PACKAGE = "com.autonavi.minimap";
-
-    private OnNavigationDataListener listener;
-    private NavigationData currentData;
+    // 下载的提取规则保存在应用目录下，存在时优先于内置规则
+    private static final String RULE_PACK_FILE = "extraction_rules.txt";
+
+    // 无障碍服务不能被普通组件绑定，转发服务通过静态监听器接收数据
+    private static volatile OnNavigationDataListener listener;
+    private volatile NavigationSnapshot currentData = NavigationSnapshot.EMPTY;
+
+    // 事件在主线程上合并，节点读取和解析在解析线程上进行
+    private NavigationEventScheduler eventScheduler;
+
+    // 以下状态只在解析线程上访问
+    // 增量模式下只重读变化的子树
+    private final NodeTextCache textCache = new NodeTextCache();
+    private final NodeTextCollector textCollector = new NodeTextCollector();
+    private volatile boolean incrementalMode = true;
+
+    // 提取、变化检测和快照生成
+    private final NavigationParsePipeline pipeline = new NavigationParsePipeline();
+    private final PipelineMetrics metrics = PipelineMetrics.getDefault();
+
+    // 按学到的视图ID直接读取导航控件，失败时才收集整页文本；与流水线共用同一套提取规则
+    private final NavigationNodeLocator nodeLocator = new NavigationNodeLocator(pipeline.getExtractor());
+    private final NavigationData locatedData = new NavigationData();
+    private volatile boolean nodeLocatorEnabled = true;
+
+    // 高德地图升级后重新选择提取规则
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data != null && AMAP_PACKAGE.equals(data.getSchemeSpecificPart())) {
+                reloadRulePacks();
+            }
+        }
+    };
+    private boolean packageReceiverRegistered;
 
     public interface OnNavigationDataListener {
-        void onNavigationDataReceived(NavigationData data);
+        void onNavigationDataReceived(NavigationSnapshot data);
     }
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
         Log.i(TAG, "导航监听服务已连接");
+        pipeline.setMetrics(metrics);
 
         // 配置监听参数
         AccessibilityServiceInfo info = new AccessibilityServiceInfo();
@@ -31,11 +80,25 @@ public class NavigationListenerService extends AccessibilityService {
                          AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED |
                          AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED;
         info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
+        // 按视图ID查找节点需要上报视图ID，与accessibility_service_config.xml保持一致
+        info.flags = AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS |
+                     AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS;
         info.packageNames = new String[]{AMAP_PACKAGE};
         info.notificationTimeout = 100;
         setServiceInfo(info);
 
-        currentData = new NavigationData();
+        if (eventScheduler == null) {
+            eventScheduler = new NavigationEventScheduler(this::processFrame,
+                    NavigationEventScheduler.DEFAULT_FRAME_INTERVAL_MS);
+        }
+
+        if (!packageReceiverRegistered) {
+            IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addDataScheme("package");
+            registerReceiver(packageReceiver, filter);
+            packageReceiverRegistered = true;
+        }
+        reloadRulePacks();
     }
 
     @Override
@@ -44,144 +107,247 @@ public class NavigationListenerService extends AccessibilityService {
             return;
         }
 
-        Log.d(TAG, "收到高德地图事件: " + event.getEventType());
+        long start = System.nanoTime();
+        // 主线程每个事件都会执行到这里，发布版本不拼接日志字符串
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "收到高德地图事件: " + event.getEventType());
+        }
 
-        // 获取根节点
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        if (rootNode == null) {
+        if (eventScheduler != null) {
+            eventScheduler.onEvent(event);
+        }
+        metrics.increment(PipelineMetrics.COUNT_EVENTS);
+        metrics.recordSince(PipelineMetrics.STAGE_EVENT, start);
+    }
+
+    // 解析线程上处理合并后的一帧
+    private void processFrame(NavigationEventScheduler.Frame frame) {
+        long start = System.nanoTime();
+        metrics.increment(PipelineMetrics.COUNT_FRAMES);
+        metrics.record(PipelineMetrics.STAGE_COALESCE, start - frame.getFirstEventNanos());
+
+        if (nodeLocatorEnabled && locateNodes(frame)) {
+            metrics.recordSince(PipelineMetrics.STAGE_COLLECT, start);
+            metrics.increment(PipelineMetrics.COUNT_LOCATOR_HITS);
+            publish(pipeline.process(locatedData));
+            return;
+        }
+
+        CharSequence fullText = incrementalMode ? collectTextIncrementally(frame) : collectTextFully();
+        metrics.recordSince(PipelineMetrics.STAGE_COLLECT, start);
+        if (fullText == null) {
             return;
         }
 
         // 解析导航信息
-        parseNavigationInfo(rootNode);
-        rootNode.recycle();
+        parseNavigationInfo(fullText);
     }
 
-    private void parseNavigationInfo(AccessibilityNodeInfo rootNode) {
-        // 查找包含导航信息的节点
-        String fullText = getAllText(rootNode);
-        Log.d(TAG, "页面文本: " + fullText);
+    // 只读取已学习的导航控件节点
+    private boolean locateNodes(NavigationEventScheduler.Frame frame) {
+        if (frame.isFullRefresh()) {
+            nodeLocator.invalidate();
+        }
+        if (!nodeLocator.beginFrame()) {
+            return false;
+        }
+        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
+        if (rootNode == null) {
+            return false;
+        }
+        boolean located = nodeLocator.locate(rootNode, locatedData);
+        rootNode.recycle();
+        if (located) {
+            // 本帧没有更新增量缓存，下次退回全文扫描时需要全量重建
+            textCache.invalidate();
+        }
+        return located;
+    }
 
-        // 使用正则表达式提取导航信息
-        NavigationData newData = extractNavigationData(fullText);
+    // 窗口切换或缓存失效时全量遍历，其余情况只修补变化节点所在的子树
+    private CharSequence collectTextIncrementally(NavigationEventScheduler.Frame frame) {
+        boolean patched = !frame.isFullRefresh() && frame.getSourceCount() > 0;
+        for (int i = 0; patched && i < frame.getSourceCount(); i++) {
+            patched = textCache.update(frame.getSource(i), frame.getWindowId(), frame.isTextOnly(i));
+        }
 
-        // 如果数据有变化，通知监听器
-        if (!newData.equals(currentData)) {
-            currentData = newData;
-            if (listener != null) {
-                listener.onNavigationDataReceived(currentData);
+        if (!patched) {
+            AccessibilityNodeInfo rootNode = getRootInActiveWindow();
+            if (rootNode == null) {
+                textCache.invalidate();
+                return null;
             }
+            textCache.rebuild(rootNode);
+            rootNode.recycle();
         }
+
+        return textCollector.collect(textCache);
     }
 
-    private String getAllText(AccessibilityNodeInfo node) {
-        if (node == null) {
-            return "";
+    private CharSequence collectTextFully() {
+        // 获取根节点
+        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
+        if (rootNode == null) {
+            return null;
         }
 
-        StringBuilder sb = new StringBuilder();
+        CharSequence fullText = textCollector.collect(rootNode);
+        rootNode.recycle();
+        return fullText;
+    }
 
-        // 获取当前节点的文本
-        CharSequence text = node.getText();
-        if (text != null && text.length() > 0) {
-            sb.append(text.toString()).append(" ");
+    // fullText是收集器缓冲区的视图，只在本次解析期间有效
+    private void parseNavigationInfo(CharSequence fullText) {
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "页面文本: " + fullText);
         }
 
-        // 获取内容描述
-        CharSequence contentDescription = node.getContentDescription();
-        if (contentDescription != null && contentDescription.length() > 0) {
-            sb.append(contentDescription.toString()).append(" ");
-        }
+        // 提取导航信息
+        // 只有超过阈值的变化才通知监听器
+        publish(pipeline.process(fullText));
+    }
 
-        // 递归处理子节点
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                sb.append(getAllText(child));
-                child.recycle();
+    private void publish(NavigationSnapshot snapshot) {
+        if (snapshot != null) {
+            currentData = snapshot;
+            OnNavigationDataListener l = listener;
+            if (l != null) {
+                l.onNavigationDataReceived(snapshot);
             }
         }
-
-        return sb.toString();
     }
 
-    private NavigationData extractNavigationData(String text) {
-        NavigationData data = new NavigationData();
+    @Override
+    public void onInterrupt() {
+        Log.i(TAG, "导航监听服务被中断");
+        invalidateTextCache();
+    }
 
-        // 解析道路名称
-        Pattern roadPattern = Pattern.compile("(沿|在|进入)([\u4e00-\u9fa5\w]+路)");
-        Matcher roadMatcher = roadPattern.matcher(text);
-        if (roadMatcher.find()) {
-            data.setRoadName(roadMatcher.group(2));
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (packageReceiverRegistered) {
+            unregisterReceiver(packageReceiver);
+            packageReceiverRegistered = false;
         }
-
-        // 解析导航动作
-        String[] actions = {"直行", "左转", "右转", "掉头", "靠左", "靠右", "进入环岛", "驶出环岛"};
-        for (String action : actions) {
-            if (text.contains(action)) {
-                data.setAction(action);
-                break;
+        if (eventScheduler != null) {
+            Log.i(TAG, "事件调度统计: " + eventScheduler.getStats());
+            Log.i(TAG, "节点定位统计: " + nodeLocator.getStats());
+            ParseResultCache parseCache = pipeline.getParseCache();
+            if (parseCache != null) {
+                Log.i(TAG, "解析缓存统计: " + parseCache.getStats());
             }
+            invalidateTextCache();
+            eventScheduler.release();
+            eventScheduler = null;
         }
+    }
 
-        // 解析距离
-        Pattern distancePattern = Pattern.compile("(\\d+)米");
-        Matcher distanceMatcher = distancePattern.matcher(text);
-        if (distanceMatcher.find()) {
-            data.setDistance(Integer.parseInt(distanceMatcher.group(1)));
+    private void invalidateTextCache() {
+        if (eventScheduler != null) {
+            eventScheduler.post(() -> {
+                textCache.invalidate();
+                nodeLocator.invalidate();
+                pipeline.reset();
+            });
         }
+    }
+
+    // 在解析线程上回调
+    public static void setOnNavigationDataListener(OnNavigationDataListener listener) {
+        NavigationListenerService.listener = listener;
+    }
+
+    public void setIncrementalMode(boolean enabled) {
+        incrementalMode = enabled;
+        invalidateTextCache();
+    }
 
-        // 解析剩余时间
-        Pattern timePattern = Pattern.compile("(\\d+)分钟");
-        Matcher timeMatcher = timePattern.matcher(text);
-        if (timeMatcher.find()) {
-            data.setRemainingTime(Integer.parseInt(timeMatcher.group(1)) * 60);
+    public void setNodeLocatorEnabled(boolean enabled) {
+        nodeLocatorEnabled = enabled;
+        if (eventScheduler != null) {
+            eventScheduler.post(nodeLocator::invalidate);
         }
+    }
 
-        // 解析速度
-        Pattern speedPattern = Pattern.compile("(\\d+)km/h");
-        Matcher speedMatcher = speedPattern.matcher(text);
-        if (speedMatcher.find()) {
-            data.setSpeed(Integer.parseInt(speedMatcher.group(1)));
+    // 按当前高德地图版本重新选择提取规则，在解析线程上加载和编译，不中断服务
+    public void reloadRulePacks() {
+        if (eventScheduler == null) {
+            return;
         }
+        eventScheduler.post(() -> {
+            String amapVersion = getAmapVersion();
+            ExtractionRulePack pack = ExtractionRulePack.select(loadRulePacks(), amapVersion);
+            if (pack == pipeline.getExtractor().getRulePack()) {
+                return;
+            }
+            Log.i(TAG, "高德地图版本: " + amapVersion + "，使用提取规则: " + pack);
+            pipeline.setRulePack(pack);
+            nodeLocator.invalidate();
+        });
+    }
 
-        // 判断是否处于导航状态
-        data.setActive(text.contains("导航") || text.contains("路线") || !text.isEmpty());
+    // 安装下载的规则文件，校验通过后才替换现有文件并立即生效
+    public void installRulePacks(InputStream in) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                content.append(buffer, 0, n);
+            }
+        }
+        List<ExtractionRulePack> packs = ExtractionRulePack.read(new StringReader(content.toString()));
+        if (packs.isEmpty()) {
+            throw new IOException("规则文件中没有规则包");
+        }
 
-        // 如果没有提取到有效信息，设置为默认值
-        if (data.getRoadName() == null || data.getRoadName().isEmpty()) {
-            data.setRoadName("未识别道路");
+        File target = new File(getFilesDir(), RULE_PACK_FILE);
+        File temp = new File(getFilesDir(), RULE_PACK_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(content.toString().getBytes(StandardCharsets.UTF_8));
         }
-        if (data.getAction() == null || data.getAction().isEmpty()) {
-            data.setAction("继续行驶");
+        if (!temp.renameTo(target)) {
+            throw new IOException("无法保存规则文件");
         }
+        reloadRulePacks();
+    }
 
-        return data;
+    private List<ExtractionRulePack> loadRulePacks() {
+        File file = new File(getFilesDir(), RULE_PACK_FILE);
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                return ExtractionRulePack.read(reader);
+            } catch (IOException e) {
+                Log.e(TAG, "读取下载的提取规则失败，使用内置规则", e);
+            }
+        }
+        return ExtractionRulePack.getBundled();
     }
 
-    @Override
-    public void onInterrupt() {
-        Log.i(TAG, "导航监听服务被中断");
+    private String getAmapVersion() {
+        try {
+            return getPackageManager().getPackageInfo(AMAP_PACKAGE, 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
     }
 
-    public void setOnNavigationDataListener(OnNavigationDataListener listener) {
-        this.listener = listener;
+    public void setFrameIntervalMs(long frameIntervalMs) {
+        if (eventScheduler != null) {
+            eventScheduler.setFrameIntervalMs(frameIntervalMs);
+        }
     }
 
-    public NavigationData getCurrentData() {
-        return currentData;
+    public NavigationEventScheduler getEventScheduler() {
+        return eventScheduler;
     }
 
-    // 辅助类用于比较NavigationData
-    private boolean dataEquals(NavigationData data1, NavigationData data2) {
-        if (data1 == null || data2 == null) {
-            return data1 == data2;
-        }
-        return data1.getRoadName().equals(data2.getRoadName()) &&
-               data1.getAction().equals(data2.getAction()) &&
-               data1.getDistance() == data2.getDistance() &&
-               data1.getRemainingTime() == data2.getRemainingTime() &&
-               data1.getSpeed() == data2.getSpeed() &&
-               data1.isActive() == data2.isActive();
+    public NavigationChangeDetector getChangeDetector() {
+        return pipeline.getChangeDetector();
+    }
+
+    public NavigationSnapshot getCurrentData() {
+        return currentData;
     }
-}
\ No newline at end of file
+}
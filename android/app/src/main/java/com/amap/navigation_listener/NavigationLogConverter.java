@@ -0,0 +1,167 @@
+package com.amap.navigation_listener;
+
+import org.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// 导航日志批量转换
+// 输入为每行一个NavigationData JSON对象的日志，逐行输出自然语言描述，边读边写；
+// 解析失败的行输出错误说明，保证输出行与输入记录一一对应
+public class NavigationLogConverter {
+    // 并行模式下每块的行数，以及同时在途的块数上限（相对线程数）
+    public static final int DEFAULT_CHUNK_LINES = 1024;
+    private static final int IN_FLIGHT_CHUNKS_PER_THREAD = 2;
+
+    // 转换结果统计
+    public static class Result {
+        long records;
+        long errors;
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        void add(Result other) {
+            records += other.records;
+            errors += other.errors;
+        }
+
+        @Override
+        public String toString() {
+            return "记录: " + records + ", 错误: " + errors;
+        }
+    }
+
+    private final int chunkLines;
+
+    public NavigationLogConverter() {
+        this(DEFAULT_CHUNK_LINES);
+    }
+
+    public NavigationLogConverter(int chunkLines) {
+        this.chunkLines = Math.max(chunkLines, 1);
+    }
+
+    // 单线程流式转换，内存占用与输入大小无关
+    public Result convert(Reader in, Writer out) throws IOException {
+        Result result = new Result();
+        convertRange(in, out, 0, result);
+        return result;
+    }
+
+    // 按块并行转换，输出顺序与输入一致；parallelism不大于1时退化为单线程
+    public Result convert(Reader in, Writer out, int parallelism) throws IOException, InterruptedException {
+        if (parallelism <= 1) {
+            return convert(in, out);
+        }
+
+        Result total = new Result();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parallelism * IN_FLIGHT_CHUNKS_PER_THREAD;
+        try {
+            BufferedReader reader = new BufferedReader(in);
+            long firstLine = 0;
+            while (true) {
+                // 按行切块，块内文本交给工作线程解析
+                StringBuilder text = new StringBuilder();
+                int lines = 0;
+                String line;
+                while (lines < chunkLines && (line = reader.readLine()) != null) {
+                    text.append(line).append('\n');
+                    lines++;
+                }
+                if (lines > 0) {
+                    final long chunkFirstLine = firstLine;
+                    inFlight.addLast(executor.submit(() -> convertChunk(text.toString(), chunkFirstLine)));
+                    firstLine += lines;
+                }
+
+                // 在途块已满或输入结束时，按顺序写出最早的块
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || lines == 0)) {
+                    Chunk chunk = await(inFlight.pollFirst());
+                    out.write(chunk.output);
+                    total.add(chunk.result);
+                }
+                if (lines == 0) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<Chunk> future : inFlight) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+        out.flush();
+        return total;
+    }
+
+    private static class Chunk {
+        final String output;
+        final Result result;
+
+        Chunk(String output, Result result) {
+            this.output = output;
+            this.result = result;
+        }
+    }
+
+    private Chunk convertChunk(String text, long firstLine) throws IOException {
+        StringWriter out = new StringWriter(text.length());
+        Result result = new Result();
+        convertRange(new StringReader(text), out, firstLine, result);
+        return new Chunk(out.toString(), result);
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void convertRange(Reader in, Writer out, long lineOffset, Result result) throws IOException {
+        NavigationJsonReader reader = new NavigationJsonReader(in);
+        NavigationData data = new NavigationData();
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            line.setLength(0);
+            try {
+                int present = reader.next(data);
+                if (present == NavigationJsonReader.END_OF_INPUT) {
+                    break;
+                }
+                NavigationDescriptionFormatter.append(line, data, present);
+                result.records++;
+            } catch (JSONException e) {
+                // 并行模式下解析器只看到本块，行号需要加上块的起始行
+                long lineNumber = reader.getLineNumber() + lineOffset;
+                line.append("第").append(lineNumber).append("行: JSON解析错误");
+                reader.skipLine();
+                result.errors++;
+            }
+            out.append(line).append('\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,286 @@
+package com.amap.navigation_listener;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+// 导航控件定位器
+// 全量遍历一次，记下道路、动作、距离、剩余时间和速度分别显示在哪个节点上（视图ID，或没有ID时的子节点下标路径），
+// 之后每帧只读这几个节点，各字段只从自己的节点中提取；任一节点失效时重新学习，仍然失败则由调用方退回全文扫描。
+// 只能在解析线程上使用
+public class NavigationNodeLocator {
+    // 即使一直命中，也每隔这么多帧重新学习一次，以便发现新出现的控件（例如开始行驶后才显示的车速）
+    public static final int RELEARN_INTERVAL = 100;
+
+    private static final int[] FIELDS = {
+            NavigationData.FIELD_ROAD_NAME,
+            NavigationData.FIELD_ACTION,
+            NavigationData.FIELD_DISTANCE,
+            NavigationData.FIELD_REMAINING_TIME,
+            NavigationData.FIELD_SPEED
+    };
+
+    // 一个字段所在的节点
+    private static final class Binding {
+        final int field;
+        final String viewId;
+        // 同一视图ID出现多次时，按前序排在第几个
+        final int viewIdIndex;
+        final int[] path;
+        final CharSequence className;
+        // 该节点只显示这一个字段，优先于混合了多个字段的节点
+        final boolean dedicated;
+
+        Binding(int field, String viewId, int viewIdIndex, int[] path, CharSequence className, boolean dedicated) {
+            this.field = field;
+            this.viewId = viewId;
+            this.viewIdIndex = viewIdIndex;
+            this.path = path;
+            this.className = className;
+            this.dedicated = dedicated;
+        }
+    }
+
+    // 学习时遍历用的栈帧
+    private static final class PathNode {
+        final AccessibilityNodeInfo node;
+        final int[] path;
+
+        PathNode(AccessibilityNodeInfo node, int[] path) {
+            this.node = node;
+            this.path = path;
+        }
+    }
+
+    private final NavigationTextExtractor extractor;
+    private final Binding[] bindings = new Binding[FIELDS.length];
+    private int bindingCount;
+    private int framesSinceLearn = RELEARN_INTERVAL;
+
+    // 复用的缓冲区
+    private final StringBuilder nodeText = new StringBuilder(64);
+    private final NavigationData nodeData = new NavigationData();
+
+    // 统计
+    private long lookups;
+    private long hits;
+    private long learns;
+
+    public NavigationNodeLocator(NavigationTextExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    // 每帧先调用；返回false表示上次学习没有找到任何导航控件且还没到重新学习的时间，本帧不必获取根节点
+    public boolean beginFrame() {
+        framesSinceLearn++;
+        return bindingCount > 0 || framesSinceLearn >= RELEARN_INTERVAL;
+    }
+
+    // 定位成功时把各字段写入data并返回true；root由调用方负责回收
+    public boolean locate(AccessibilityNodeInfo root, NavigationData data) {
+        lookups++;
+        boolean relearnDue = framesSinceLearn >= RELEARN_INTERVAL;
+        if (!relearnDue) {
+            if (bindingCount > 0 && resolveAll(root, data)) {
+                hits++;
+                return true;
+            }
+            if (bindingCount == 0) {
+                return false;
+            }
+        }
+
+        learn(root);
+        if (bindingCount > 0 && resolveAll(root, data)) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    // 窗口切换后之前学到的节点不再适用
+    public void invalidate() {
+        clearBindings();
+        framesSinceLearn = RELEARN_INTERVAL;
+    }
+
+    public int getBindingCount() {
+        return bindingCount;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public String getStats() {
+        return "定位: " + lookups +
+                ", 命中: " + hits +
+                ", 学习: " + learns +
+                ", 已定位字段: " + bindingCount;
+    }
+
+    // 前序遍历整棵树，每个字段取第一个显示它的节点，只显示该字段的节点优先
+    private void learn(AccessibilityNodeInfo root) {
+        learns++;
+        framesSinceLearn = 0;
+        clearBindings();
+
+        HashMap<String, Integer> viewIdCounts = new HashMap<>();
+        ArrayList<PathNode> stack = new ArrayList<>();
+        stack.add(new PathNode(root, new int[0]));
+        while (!stack.isEmpty()) {
+            PathNode entry = stack.remove(stack.size() - 1);
+            AccessibilityNodeInfo node = entry.node;
+
+            String viewId = node.getViewIdResourceName();
+            int viewIdIndex = 0;
+            if (viewId != null) {
+                Integer count = viewIdCounts.get(viewId);
+                viewIdIndex = count != null ? count : 0;
+                viewIdCounts.put(viewId, viewIdIndex + 1);
+            }
+
+            int found = extractNodeFields(node);
+            int fieldCount = Integer.bitCount(found & ~NavigationData.FIELD_ACTIVE);
+            for (int i = 0; i < FIELDS.length; i++) {
+                if ((found & FIELDS[i]) == 0) {
+                    continue;
+                }
+                Binding current = bindings[i];
+                boolean dedicated = fieldCount == 1;
+                if (current == null || (dedicated && !current.dedicated)) {
+                    if (current == null) {
+                        bindingCount++;
+                    }
+                    bindings[i] = new Binding(FIELDS[i], viewId, viewIdIndex, entry.path,
+                            node.getClassName(), dedicated);
+                }
+            }
+
+            // 逆序入栈，保证子节点按原顺序出栈
+            for (int c = node.getChildCount() - 1; c >= 0; c--) {
+                AccessibilityNodeInfo child = node.getChild(c);
+                if (child != null) {
+                    int[] path = new int[entry.path.length + 1];
+                    System.arraycopy(entry.path, 0, path, 0, entry.path.length);
+                    path[entry.path.length] = c;
+                    stack.add(new PathNode(child, path));
+                }
+            }
+
+            if (node != root) {
+                node.recycle();
+            }
+        }
+    }
+
+    // 逐个读取已学习的节点，任一节点找不到或不再显示对应字段时返回false
+    private boolean resolveAll(AccessibilityNodeInfo root, NavigationData data) {
+        // 未定位的字段取默认值
+        extractor.extract("", data);
+        int found = 0;
+        for (Binding binding : bindings) {
+            if (binding == null) {
+                continue;
+            }
+            AccessibilityNodeInfo node = resolve(root, binding);
+            if (node == null) {
+                return false;
+            }
+            int nodeFields = extractNodeFields(node);
+            if (node != root) {
+                node.recycle();
+            }
+            if ((nodeFields & binding.field) == 0) {
+                return false;
+            }
+            copyField(binding.field, nodeData, data);
+            found |= nodeFields;
+        }
+
+        data.setActive((found & NavigationData.FIELD_ACTIVE) != 0
+                || (found & (NavigationData.FIELD_ACTION | NavigationData.FIELD_DISTANCE))
+                == (NavigationData.FIELD_ACTION | NavigationData.FIELD_DISTANCE));
+        return true;
+    }
+
+    private AccessibilityNodeInfo resolve(AccessibilityNodeInfo root, Binding binding) {
+        if (binding.viewId != null) {
+            List<AccessibilityNodeInfo> nodes = root.findAccessibilityNodeInfosByViewId(binding.viewId);
+            AccessibilityNodeInfo found = null;
+            for (int i = 0; i < nodes.size(); i++) {
+                if (i == binding.viewIdIndex) {
+                    found = nodes.get(i);
+                } else {
+                    nodes.get(i).recycle();
+                }
+            }
+            return found;
+        }
+
+        AccessibilityNodeInfo node = root;
+        for (int index : binding.path) {
+            AccessibilityNodeInfo child = index < node.getChildCount() ? node.getChild(index) : null;
+            if (node != root) {
+                node.recycle();
+            }
+            if (child == null) {
+                return null;
+            }
+            node = child;
+        }
+
+        // 没有视图ID时用类名确认路径仍指向同一种控件
+        if (!Objects.equals(String.valueOf(node.getClassName()), String.valueOf(binding.className))) {
+            if (node != root) {
+                node.recycle();
+            }
+            return null;
+        }
+        return node;
+    }
+
+    // 只提取节点自身的文本，结果在nodeData中
+    private int extractNodeFields(AccessibilityNodeInfo node) {
+        nodeText.setLength(0);
+        NodeTextCollector.appendOwnText(node, nodeText);
+        if (nodeText.length() == 0) {
+            return 0;
+        }
+        return extractor.extract(nodeText, nodeData);
+    }
+
+    private static void copyField(int field, NavigationData from, NavigationData to) {
+        switch (field) {
+            case NavigationData.FIELD_ROAD_NAME:
+                to.setRoadName(from.getRoadName());
+                break;
+            case NavigationData.FIELD_ACTION:
+                to.setAction(from.getAction());
+                break;
+            case NavigationData.FIELD_DISTANCE:
+                to.setDistance(from.getDistance());
+                break;
+            case NavigationData.FIELD_REMAINING_TIME:
+                to.setRemainingTime(from.getRemainingTime());
+                break;
+            case NavigationData.FIELD_SPEED:
+                to.setSpeed(from.getSpeed());
+                break;
+        }
+    }
+
+    private void clearBindings() {
+        for (int i = 0; i < bindings.length; i++) {
+            bindings[i] = null;
+        }
+        bindingCount = 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.amap.navigation_listener;
+
+// 页面文本解析流水线：提取（先查解析缓存） → 变化检测 → 生成快照
+// 节点定位成功时可以跳过提取，直接从变化检测开始
+// 不依赖Android，服务和离线回放共用同一套逻辑；只能在单个线程上使用
+public class NavigationParsePipeline {
+    private final NavigationTextExtractor extractor = new NavigationTextExtractor();
+    private final NavigationChangeDetector changeDetector = new NavigationChangeDetector();
+    private final ParseResultCache parseCache;
+
+    // 每次解析复用同一个对象，只有发布出去的快照是不可变的
+    private final NavigationData scratchData = new NavigationData();
+    private final NavigationSnapshot.Builder snapshotBuilder = new NavigationSnapshot.Builder();
+    private int lastChangedFields;
+
+    // 为null时不计时
+    private PipelineMetrics metrics;
+
+    public NavigationParsePipeline() {
+        this(ParseResultCache.DEFAULT_CAPACITY);
+    }
+
+    // cacheCapacity为0时不使用解析缓存
+    public NavigationParsePipeline(int cacheCapacity) {
+        parseCache = cacheCapacity > 0 ? new ParseResultCache(cacheCapacity) : null;
+    }
+
+    // 没有超过阈值的变化时返回null
+    public NavigationSnapshot process(CharSequence text) {
+        PipelineMetrics m = metrics;
+        if (m == null) {
+            extract(text, null);
+        } else {
+            long start = System.nanoTime();
+            extract(text, m);
+            m.recordSince(PipelineMetrics.STAGE_EXTRACT, start);
+        }
+        return detectChange(scratchData, m);
+    }
+
+    // 已经由节点定位得到各字段时跳过文本提取，直接做变化检测
+    public NavigationSnapshot process(NavigationData data) {
+        return detectChange(data, metrics);
+    }
+
+    private NavigationSnapshot detectChange(NavigationData data, PipelineMetrics m) {
+        if (m == null) {
+            lastChangedFields = changeDetector.update(data);
+        } else {
+            long start = System.nanoTime();
+            lastChangedFields = changeDetector.update(data);
+            m.recordSince(PipelineMetrics.STAGE_DETECT, start);
+        }
+        if (lastChangedFields == 0) {
+            return null;
+        }
+        if (m != null) {
+            m.increment(PipelineMetrics.COUNT_CHANGES);
+        }
+        return snapshotBuilder.from(data).build();
+    }
+
+    private void extract(CharSequence text, PipelineMetrics m) {
+        if (parseCache == null) {
+            extractor.extract(text, scratchData);
+            return;
+        }
+        long fingerprint = ParseResultCache.fingerprint(text);
+        if (parseCache.get(fingerprint, text.length(), scratchData)) {
+            if (m != null) {
+                m.increment(PipelineMetrics.COUNT_PARSE_CACHE_HITS);
+            }
+            return;
+        }
+        extractor.extract(text, scratchData);
+        parseCache.put(fingerprint, text.length(), scratchData);
+    }
+
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 最近一次process检测到的变化字段
+    public int getLastChangedFields() {
+        return lastChangedFields;
+    }
+
+    // 页面切换后重新开始，下一帧必然产生快照
+    public void reset() {
+        changeDetector.reset();
+    }
+
+    // 切换提取规则，旧规则的解析结果随之作废
+    public void setRulePack(ExtractionRulePack pack) {
+        extractor.setRulePack(pack);
+        if (parseCache != null) {
+            parseCache.clear();
+        }
+    }
+
+    public NavigationTextExtractor getExtractor() {
+        return extractor;
+    }
+
+    public NavigationChangeDetector getChangeDetector() {
+        return changeDetector;
+    }
+
+    // 未使用解析缓存时返回null
+    public ParseResultCache getParseCache() {
+        return parseCache;
+    }
+}
@@ -0,0 +1,161 @@
+package com.amap.navigation_listener;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+// 蓝牙传输协议
+// 默认发送以换行结尾的JSON；对端声明支持时改用紧凑的二进制帧
+//
+// 二进制帧头（3字节）：
+//   [0] 魔数 0xA5
+//   [1] 帧体长度（不含帧头）
+//   [2] 高4位为协议版本，低4位为帧类型
+//
+// v1 帧体 FRAME_FULL：
+//   标志位(1) | 动作编码(1) | 距离(varint) | 剩余时间(varint) | 速度(varint) | 道路ID(varint)
+//   [道路定义：长度(1) + UTF-8] [自定义动作：长度(1) + UTF-8]
+//
+// v2 帧体 FRAME_FULL（关键帧）/ FRAME_DELTA（增量帧）：
+//   序号(1) | 字段掩码(1) | 标志位(1) | [动作编码(1)] | [距离] | [剩余时间] | [速度] | [道路ID]
+//   [道路定义] [自定义动作]
+//   方括号中的字段只在掩码中对应位置位时出现，关键帧的掩码包含全部字段且总是附带道路定义
+//
+// FRAME_RESYNC（ESP32通过通知发给手机）：最后收到的序号(1)
+//   接收端发现序号不连续、道路ID未知或尚未收到关键帧时发送，手机收到后立即补发关键帧
+//
+// FRAME_CAPABILITIES（由ESP32写入特征值供手机读取）：
+//   最高支持版本(1) | 道路字典容量(1)
+public final class NavigationProtocol {
+    public static final byte MAGIC = (byte) 0xA5;
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+    public static final int LATEST_VERSION = VERSION_2;
+    public static final int HEADER_SIZE = 3;
+    public static final int MAX_BODY_SIZE = 255;
+
+    public static final int FRAME_FULL = 0x1;
+    public static final int FRAME_DELTA = 0x2;
+    public static final int FRAME_RESYNC = 0x3;
+    public static final int FRAME_CAPABILITIES = 0xF;
+
+    // 标志位
+    public static final int FLAG_ACTIVE = 1;
+    public static final int FLAG_ROAD_DEFINITION = 1 << 1;
+    public static final int FLAG_CUSTOM_ACTION = 1 << 2;
+
+    // 字符串字段的最大字节数，与ESP32端的缓冲区保持一致
+    public static final int MAX_STRING_BYTES = 60;
+
+    // 动作编码表，顺序即线上编码，只能在末尾追加；0表示自定义动作
+    public static final int ACTION_CUSTOM = 0;
+    private static final String[] ACTION_CODES = {
+        null, "直行", "左转", "右转", "掉头", "靠左", "靠右", "进入环岛", "驶出环岛", "继续行驶", "等待导航开始"
+    };
+
+    private NavigationProtocol() {
+    }
+
+    public static int encodeAction(String action) {
+        for (int i = 1; i < ACTION_CODES.length; i++) {
+            if (ACTION_CODES[i].equals(action)) {
+                return i;
+            }
+        }
+        return ACTION_CUSTOM;
+    }
+
+    public static String decodeAction(int code) {
+        return code > 0 && code < ACTION_CODES.length ? ACTION_CODES[code] : null;
+    }
+
+    public static int frameType(byte versionAndType) {
+        return versionAndType & 0x0F;
+    }
+
+    public static int frameVersion(byte versionAndType) {
+        return (versionAndType >> 4) & 0x0F;
+    }
+
+    public static byte versionAndType(int version, int type) {
+        return (byte) ((version << 4) | type);
+    }
+
+    // ESP32声明的协议能力
+    public static class Capabilities {
+        private final int version;
+        private final int roadDictionaryCapacity;
+
+        Capabilities(int version, int roadDictionaryCapacity) {
+            this.version = version;
+            this.roadDictionaryCapacity = roadDictionaryCapacity;
+        }
+
+        // 双方都支持的最高版本
+        public int getVersion() {
+            return version;
+        }
+
+        public int getRoadDictionaryCapacity() {
+            return roadDictionaryCapacity;
+        }
+    }
+
+    // 解析ESP32声明的能力，不支持二进制协议时返回null
+    public static Capabilities parseCapabilities(byte[] value) {
+        if (value == null || value.length < HEADER_SIZE + 2 || value[0] != MAGIC
+                || frameType(value[2]) != FRAME_CAPABILITIES) {
+            return null;
+        }
+        int maxVersion = value[HEADER_SIZE] & 0xFF;
+        if (maxVersion < VERSION_1) {
+            return null;
+        }
+        return new Capabilities(Math.min(maxVersion, LATEST_VERSION), value[HEADER_SIZE + 1] & 0xFF);
+    }
+
+    public static boolean isResyncRequest(byte[] value) {
+        return value != null && value.length >= HEADER_SIZE && value[0] == MAGIC
+                && frameType(value[2]) == FRAME_RESYNC;
+    }
+
+    // JSON格式，兼容旧版ESP32程序
+    public static byte[] encodeJson(NavigationSnapshot data) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("roadName", data.getRoadName());
+        json.put("action", data.getAction());
+        json.put("distance", data.getDistance());
+        json.put("remainingTime", data.getRemainingTime());
+        json.put("speed", data.getSpeed());
+        json.put("isActive", data.isActive());
+
+        String jsonStr = json.toString() + "\n";
+        return jsonStr.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static int writeVarint(byte[] buffer, int offset, int value) {
+        int v = Math.max(value, 0);
+        while ((v & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[offset++] = (byte) v;
+        return offset;
+    }
+
+    // 按UTF-8编码并在字符边界处截断
+    public static byte[] encodeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_STRING_BYTES) {
+            return bytes;
+        }
+        int end = MAX_STRING_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        byte[] truncated = new byte[end];
+        System.arraycopy(bytes, 0, truncated, 0, end);
+        return truncated;
+    }
+}
@@ -0,0 +1,186 @@
+package com.amap.navigation_listener;
+
+import java.util.Objects;
+
+// 不可变的导航数据快照
+// 所有字段都是final，发布到UI线程和蓝牙线程时无需加锁或复制；数值字段打包在一个long中
+public final class NavigationSnapshot {
+    // 打包布局（低位在前）：距离24位 | 剩余时间24位 | 速度15位 | 导航状态1位
+    private static final int DISTANCE_SHIFT = 0;
+    private static final int TIME_SHIFT = 24;
+    private static final int SPEED_SHIFT = 48;
+    private static final int ACTIVE_SHIFT = 63;
+
+    public static final int MAX_DISTANCE = (1 << 24) - 1;
+    public static final int MAX_REMAINING_TIME = (1 << 24) - 1;
+    public static final int MAX_SPEED = (1 << 15) - 1;
+
+    public static final NavigationSnapshot EMPTY = new Builder().build();
+
+    private final String roadName;
+    private final String action;
+    private final long packed;
+
+    private NavigationSnapshot(String roadName, String action, long packed) {
+        this.roadName = roadName;
+        this.action = action;
+        this.packed = packed;
+    }
+
+    public static NavigationSnapshot of(NavigationData data) {
+        return new Builder().from(data).build();
+    }
+
+    public String getRoadName() {
+        return roadName;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public int getDistance() {
+        return (int) ((packed >>> DISTANCE_SHIFT) & MAX_DISTANCE);
+    }
+
+    public int getRemainingTime() {
+        return (int) ((packed >>> TIME_SHIFT) & MAX_REMAINING_TIME);
+    }
+
+    public int getSpeed() {
+        return (int) ((packed >>> SPEED_SHIFT) & MAX_SPEED);
+    }
+
+    public boolean isActive() {
+        return packed < 0;
+    }
+
+    // 数值字段的打包表示，可直接用于比较或持久化
+    public long getPackedNumbers() {
+        return packed;
+    }
+
+    // 返回可修改的副本
+    public NavigationData toNavigationData() {
+        return new NavigationData(roadName, action, getDistance(), getRemainingTime(), getSpeed(), isActive());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NavigationSnapshot)) {
+            return false;
+        }
+        NavigationSnapshot other = (NavigationSnapshot) o;
+        return packed == other.packed
+                && Objects.equals(roadName, other.roadName)
+                && Objects.equals(action, other.action);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(roadName, action, packed);
+    }
+
+    @Override
+    public String toString() {
+        return "NavigationSnapshot{" +
+                "roadName='" + roadName + '\'' +
+                ", action='" + action + '\'' +
+                ", distance=" + getDistance() +
+                ", remainingTime=" + getRemainingTime() +
+                ", speed=" + getSpeed() +
+                ", isActive=" + isActive() +
+                '}';
+    }
+
+    // 可复用的构建器，只在单个线程上使用
+    // 内容与上一次构建的结果相同时直接返回上一个快照，不产生新对象
+    public static final class Builder {
+        private String roadName;
+        private String action;
+        private long packed;
+        private NavigationSnapshot last;
+
+        public Builder() {
+            clear();
+        }
+
+        public Builder clear() {
+            roadName = "未开始导航";
+            action = "等待导航开始";
+            packed = 0;
+            return this;
+        }
+
+        public Builder from(NavigationData data) {
+            return setRoadName(data.getRoadName())
+                    .setAction(data.getAction())
+                    .setDistance(data.getDistance())
+                    .setRemainingTime(data.getRemainingTime())
+                    .setSpeed(data.getSpeed())
+                    .setActive(data.isActive());
+        }
+
+        public Builder from(NavigationSnapshot snapshot) {
+            roadName = snapshot.roadName;
+            action = snapshot.action;
+            packed = snapshot.packed;
+            return this;
+        }
+
+        // 直接设置打包后的数值字段，用于从持久化数据恢复
+        public Builder setPackedNumbers(long packed) {
+            this.packed = packed;
+            return this;
+        }
+
+        public Builder setRoadName(String roadName) {
+            this.roadName = roadName;
+            return this;
+        }
+
+        public Builder setAction(String action) {
+            this.action = action;
+            return this;
+        }
+
+        // 超出位宽的数值被截断到最大值，负数按0处理
+        public Builder setDistance(int distance) {
+            packed = put(packed, DISTANCE_SHIFT, MAX_DISTANCE, distance);
+            return this;
+        }
+
+        public Builder setRemainingTime(int remainingTime) {
+            packed = put(packed, TIME_SHIFT, MAX_REMAINING_TIME, remainingTime);
+            return this;
+        }
+
+        public Builder setSpeed(int speed) {
+            packed = put(packed, SPEED_SHIFT, MAX_SPEED, speed);
+            return this;
+        }
+
+        public Builder setActive(boolean active) {
+            packed = put(packed, ACTIVE_SHIFT, 1, active ? 1 : 0);
+            return this;
+        }
+
+        public NavigationSnapshot build() {
+            if (last != null && last.packed == packed
+                    && Objects.equals(last.roadName, roadName)
+                    && Objects.equals(last.action, action)) {
+                return last;
+            }
+            last = new NavigationSnapshot(roadName, action, packed);
+            return last;
+        }
+
+        private static long put(long packed, int shift, int max, int value) {
+            long v = Math.min(Math.max(value, 0), max);
+            return (packed & ~((long) max << shift)) | (v << shift);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.amap.navigation_listener;
+
+import java.util.List;
+
+// 导航文本提取器
+// 规则包中的关键词和单位预先编译进同一个自动机，对页面文本只扫描一遍即可填充NavigationData的全部字段。
+// 规则包可以在运行时切换：新规则编译完成后整体替换，正在进行的提取继续使用旧规则
+public class NavigationTextExtractor {
+    private static final String DEFAULT_ROAD_NAME = "未识别道路";
+    private static final String DEFAULT_ACTION = "继续行驶";
+
+    // 关键词类别
+    private static final byte KIND_ACTION = 0;
+    private static final byte KIND_PREFIX = 1;
+    private static final byte KIND_MARKER = 2;
+    private static final byte KIND_DISTANCE = 3;
+    private static final byte KIND_TIME = 4;
+    private static final byte KIND_SPEED = 5;
+
+    // 编译后的规则，创建后不再修改
+    private static final class Rules {
+        final ExtractionRulePack pack;
+        final KeywordAutomaton automaton;
+        final byte[] kinds;
+        // 动作为优先级，单位为换算倍数
+        final int[] actionRanks;
+        final double[] scales;
+        final String[] actions;
+        final String[] roadSuffixes;
+
+        Rules(ExtractionRulePack pack) {
+            this.pack = pack;
+            actions = pack.getActions().toArray(new String[0]);
+            roadSuffixes = pack.getRoadSuffixes().toArray(new String[0]);
+
+            int count = actions.length + pack.getRoadPrefixes().size() + pack.getActiveMarkers().size()
+                    + pack.getDistanceUnits().size() + pack.getTimeUnits().size() + pack.getSpeedUnits().size();
+            String[] keywords = new String[count];
+            kinds = new byte[count];
+            actionRanks = new int[count];
+            scales = new double[count];
+
+            int id = 0;
+            for (int i = 0; i < actions.length; i++, id++) {
+                keywords[id] = actions[i];
+                kinds[id] = KIND_ACTION;
+                actionRanks[id] = i;
+            }
+            id = addKeywords(keywords, id, pack.getRoadPrefixes(), null, KIND_PREFIX);
+            id = addKeywords(keywords, id, pack.getActiveMarkers(), null, KIND_MARKER);
+            id = addKeywords(keywords, id, pack.getDistanceUnits(), pack.getDistanceScales(), KIND_DISTANCE);
+            id = addKeywords(keywords, id, pack.getTimeUnits(), pack.getTimeScales(), KIND_TIME);
+            addKeywords(keywords, id, pack.getSpeedUnits(), pack.getSpeedScales(), KIND_SPEED);
+            automaton = new KeywordAutomaton(keywords);
+        }
+
+        private int addKeywords(String[] keywords, int id, List<String> words, List<Double> wordScales, byte kind) {
+            for (int i = 0; i < words.size(); i++, id++) {
+                keywords[id] = words.get(i);
+                kinds[id] = kind;
+                scales[id] = wordScales != null ? wordScales.get(i) : 0;
+            }
+            return id;
+        }
+    }
+
+    private volatile Rules rules;
+
+    public NavigationTextExtractor() {
+        this(ExtractionRulePack.getDefault());
+    }
+
+    public NavigationTextExtractor(ExtractionRulePack pack) {
+        rules = new Rules(pack);
+    }
+
+    // 编译新规则后原子替换，可在任意线程调用
+    public void setRulePack(ExtractionRulePack pack) {
+        rules = new Rules(pack);
+    }
+
+    public ExtractionRulePack getRulePack() {
+        return rules.pack;
+    }
+
+    public NavigationData extract(CharSequence text) {
+        NavigationData data = new NavigationData();
+        extract(text, data);
+        return data;
+    }
+
+    // 将提取结果写入data，返回文本中实际找到的字段（NavigationData.FIELD_*），未找到的字段填默认值
+    // 提取器本身无状态，可在多个线程间共享
+    public int extract(CharSequence text, NavigationData data) {
+        Rules r = rules;
+        KeywordAutomaton automaton = r.automaton;
+        int length = text.length();
+
+        int actionRank = Integer.MAX_VALUE;
+        int actionId = -1;
+        int roadStart = -1;
+        int roadEnd = -1;
+        int roadScanLimit = 0;
+        boolean markerFound = false;
+
+        // 每类单位记录最近一次生效的位置，以便被更长的单位（如“公里/小时”之于“公里”）覆盖时撤销
+        long distance = -1;
+        long distanceBefore = -1;
+        int distanceUnitStart = -1;
+        int distanceUnitEnd = -1;
+        long time = -1;
+        long timeBefore = -1;
+        int timeUnitStart = -1;
+        int timeUnitEnd = -1;
+        int timeUnitEndBefore = -1;
+        long speed = -1;
+        long speedBefore = -1;
+        int speedUnitStart = -1;
+        int speedUnitEnd = -1;
+
+        int state = KeywordAutomaton.ROOT;
+        for (int i = 0; i < length; i++) {
+            state = automaton.step(state, text.charAt(i));
+            for (int s = automaton.firstMatch(state); s != KeywordAutomaton.NO_STATE; s = automaton.outputLink(s)) {
+                int id = automaton.keywordAt(s);
+                int matchStart = i - automaton.getKeywordLength(id) + 1;
+                int matchEnd = i + 1;
+
+                switch (r.kinds[id]) {
+                    case KIND_ACTION:
+                        if (r.actionRanks[id] < actionRank) {
+                            actionRank = r.actionRanks[id];
+                            actionId = id;
+                        }
+                        continue;
+                    case KIND_PREFIX:
+                        // 前一个前缀后面的字符段没有道路结尾时，段内其余前缀同样不会匹配
+                        if (roadStart < 0 && matchStart >= roadScanLimit) {
+                            int runEnd = scanRoadRun(text, matchEnd);
+                            int end = lastRoadSuffixEnd(text, matchEnd + 1, runEnd, r.roadSuffixes);
+                            if (end >= 0) {
+                                roadStart = matchEnd;
+                                roadEnd = end;
+                            }
+                            roadScanLimit = runEnd;
+                        }
+                        continue;
+                    case KIND_MARKER:
+                        markerFound = true;
+                        continue;
+                    default:
+                        break;
+                }
+
+                // 同一位置开始的更长单位覆盖较短的单位
+                if (distanceUnitStart == matchStart && distanceUnitEnd < matchEnd) {
+                    distance = distanceBefore;
+                    distanceUnitStart = -1;
+                }
+                if (timeUnitStart == matchStart && timeUnitEnd < matchEnd) {
+                    time = timeBefore;
+                    timeUnitEnd = timeUnitEndBefore;
+                    timeUnitStart = -1;
+                }
+                if (speedUnitStart == matchStart && speedUnitEnd < matchEnd) {
+                    speed = speedBefore;
+                    speedUnitStart = -1;
+                }
+
+                int numberStart = numberStart(text, matchStart);
+                if (numberStart < 0) {
+                    continue;
+                }
+                long value = parseScaled(text, numberStart, matchStart, r.scales[id]);
+
+                switch (r.kinds[id]) {
+                    case KIND_DISTANCE:
+                        if (distance < 0) {
+                            distanceBefore = distance;
+                            distance = value;
+                            distanceUnitStart = matchStart;
+                            distanceUnitEnd = matchEnd;
+                        }
+                        break;
+                    case KIND_TIME:
+                        // 紧挨着（最多隔着空格）的多个时间单位累加，如“1小时20分钟”
+                        if (time < 0 || onlySpacesBetween(text, timeUnitEnd, numberStart)) {
+                            timeBefore = time;
+                            timeUnitEndBefore = timeUnitEnd;
+                            time = Math.max(time, 0) + value;
+                            timeUnitStart = matchStart;
+                            timeUnitEnd = matchEnd;
+                        }
+                        break;
+                    case KIND_SPEED:
+                        if (speed < 0) {
+                            speedBefore = speed;
+                            speed = value;
+                            speedUnitStart = matchStart;
+                            speedUnitEnd = matchEnd;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        data.setRoadName(roadStart >= 0
+                ? text.subSequence(roadStart, roadEnd).toString()
+                : DEFAULT_ROAD_NAME);
+        data.setAction(actionId >= 0 ? r.actions[actionRank] : DEFAULT_ACTION);
+        data.setDistance(toInt(distance));
+        data.setRemainingTime(toInt(time));
+        data.setSpeed(toInt(speed));
+        // 有导航标记，或同时出现动作和距离（转向提示）时才认为正在导航，而不是页面上有任何文字
+        boolean active = markerFound || (actionId >= 0 && distance >= 0);
+        data.setActive(active);
+
+        int found = 0;
+        if (roadStart >= 0) {
+            found |= NavigationData.FIELD_ROAD_NAME;
+        }
+        if (actionId >= 0) {
+            found |= NavigationData.FIELD_ACTION;
+        }
+        if (distance >= 0) {
+            found |= NavigationData.FIELD_DISTANCE;
+        }
+        if (time >= 0) {
+            found |= NavigationData.FIELD_REMAINING_TIME;
+        }
+        if (speed >= 0) {
+            found |= NavigationData.FIELD_SPEED;
+        }
+        if (active) {
+            found |= NavigationData.FIELD_ACTIVE;
+        }
+        return found;
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(Math.max(value, 0), Integer.MAX_VALUE);
+    }
+
+    // 道路名称字符段：汉字、字母、数字和下划线
+    private static int scanRoadRun(CharSequence text, int start) {
+        int i = start;
+        while (i < text.length() && isRoadChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // 段内最后一个道路结尾的结束位置，结尾前面至少要有一个字符；没有时返回-1
+    private static int lastRoadSuffixEnd(CharSequence text, int from, int runEnd, String[] suffixes) {
+        for (int end = runEnd; end > from; end--) {
+            for (String suffix : suffixes) {
+                int start = end - suffix.length();
+                if (start >= from && regionMatches(text, start, suffix)) {
+                    return end;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean onlySpacesBetween(CharSequence text, int from, int to) {
+        if (from < 0 || from > to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRoadChar(char c) {
+        return (c >= '一' && c <= '龥')
+                || (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '_';
+    }
+
+    // 单位前紧邻的数字（可带一位小数点）的起始位置，没有数字时返回-1
+    private static int numberStart(CharSequence text, int unitStart) {
+        int start = unitStart;
+        boolean dotSeen = false;
+        while (start > 0) {
+            char c = text.charAt(start - 1);
+            if (isDigit(c)) {
+                start--;
+            } else if (c == '.' && !dotSeen && start < unitStart && start > 1 && isDigit(text.charAt(start - 2))) {
+                dotSeen = true;
+                start--;
+            } else {
+                break;
+            }
+        }
+        return start < unitStart ? start : -1;
+    }
+
+    // 解析[start, end)内的数字并乘以单位倍数，四舍五入到整数，溢出时截断
+    private static long parseScaled(CharSequence text, int start, int end, double scale) {
+        long integer = 0;
+        long fraction = 0;
+        long fractionScale = 1;
+        boolean inFraction = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                inFraction = true;
+            } else if (inFraction) {
+                if (fractionScale < 1_000_000_000L) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionScale *= 10;
+                }
+            } else {
+                integer = Math.min(integer * 10 + (c - '0'), Integer.MAX_VALUE);
+            }
+        }
+        double value = (integer + (double) fraction / fractionScale) * scale;
+        return value >= Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.round(value);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,179 @@
+package com.amap.navigation_listener;
+
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 无障碍节点文本缓存
+// 全量遍历一次后按节点缓存文本，后续内容变化事件只重读事件源所在的子树
+public class NodeTextCache {
+    // AccessibilityNodeInfo的equals/hashCode基于窗口ID和节点ID，可直接作为键
+    private final Map<AccessibilityNodeInfo, CachedNode> index = new HashMap<>();
+    private CachedNode root;
+    private int windowId = -1;
+
+    // 遍历用的显式栈，跨调用复用
+    private final ArrayList<CachedNode> pending = new ArrayList<>();
+
+    private static class CachedNode {
+        AccessibilityNodeInfo node;
+        String ownText;
+        final List<CachedNode> children = new ArrayList<>();
+    }
+
+    public boolean isValid() {
+        return root != null;
+    }
+
+    public int getWindowId() {
+        return windowId;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // 全量重建缓存，rootNode由调用方负责回收
+    public void rebuild(AccessibilityNodeInfo rootNode) {
+        invalidate();
+        if (rootNode == null) {
+            return;
+        }
+        root = readSubtree(AccessibilityNodeInfo.obtain(rootNode));
+        windowId = rootNode.getWindowId();
+    }
+
+    // 根据变化的节点增量更新缓存，返回false表示无法定位变化的子树，需要全量重建
+    // source由调用方负责回收，缓存只保留自己的副本
+    public boolean update(AccessibilityNodeInfo source, int sourceWindowId, boolean textOnly) {
+        if (root == null || sourceWindowId != windowId) {
+            return false;
+        }
+
+        CachedNode cached = index.get(source);
+        if (cached != null) {
+            // 只有文本变化时不必重读子节点
+            if (textOnly) {
+                replaceNode(cached, source);
+                cached.ownText = readOwnText(cached.node);
+            } else {
+                refreshSubtree(cached, source);
+            }
+            return true;
+        }
+
+        // 新出现的节点，重读其父节点的子树
+        AccessibilityNodeInfo parent = source.getParent();
+        if (parent == null) {
+            return false;
+        }
+        try {
+            CachedNode cachedParent = index.get(parent);
+            if (cachedParent == null) {
+                return false;
+            }
+            refreshSubtree(cachedParent, parent);
+            return true;
+        } finally {
+            parent.recycle();
+        }
+    }
+
+    // 按前序把缓存的文本追加到sb
+    public void appendText(StringBuilder sb) {
+        if (root == null) {
+            return;
+        }
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            CachedNode cached = pending.remove(pending.size() - 1);
+            sb.append(cached.ownText);
+            for (int i = cached.children.size() - 1; i >= 0; i--) {
+                pending.add(cached.children.get(i));
+            }
+        }
+    }
+
+    public void invalidate() {
+        for (CachedNode cached : index.values()) {
+            cached.node.recycle();
+        }
+        index.clear();
+        root = null;
+        windowId = -1;
+    }
+
+    public static boolean isTextOnlyChange(AccessibilityEvent event) {
+        return event.getEventType() == AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+                || event.getContentChangeTypes() == AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT;
+    }
+
+    private void refreshSubtree(CachedNode cached, AccessibilityNodeInfo freshNode) {
+        for (CachedNode child : cached.children) {
+            evict(child);
+        }
+        cached.children.clear();
+        replaceNode(cached, freshNode);
+        cached.ownText = readOwnText(cached.node);
+        readChildren(cached);
+    }
+
+    // 节点信息是快照，需要用新取到的节点替换缓存中的旧副本
+    private void replaceNode(CachedNode cached, AccessibilityNodeInfo freshNode) {
+        index.remove(cached.node);
+        cached.node.recycle();
+        cached.node = AccessibilityNodeInfo.obtain(freshNode);
+        index.put(cached.node, cached);
+    }
+
+    private CachedNode readSubtree(AccessibilityNodeInfo node) {
+        CachedNode cached = newCachedNode(node);
+        readChildren(cached);
+        return cached;
+    }
+
+    private CachedNode newCachedNode(AccessibilityNodeInfo node) {
+        CachedNode cached = new CachedNode();
+        cached.node = node;
+        cached.ownText = readOwnText(node);
+        index.put(node, cached);
+        return cached;
+    }
+
+    // 读取parent下的整棵子树
+    private void readChildren(CachedNode parent) {
+        pending.add(parent);
+        while (!pending.isEmpty()) {
+            CachedNode cached = pending.remove(pending.size() - 1);
+            AccessibilityNodeInfo node = cached.node;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child != null) {
+                    CachedNode cachedChild = newCachedNode(child);
+                    cached.children.add(cachedChild);
+                    pending.add(cachedChild);
+                }
+            }
+        }
+    }
+
+    private void evict(CachedNode subtree) {
+        pending.add(subtree);
+        while (!pending.isEmpty()) {
+            CachedNode cached = pending.remove(pending.size() - 1);
+            pending.addAll(cached.children);
+            index.remove(cached.node);
+            cached.node.recycle();
+        }
+    }
+
+    private static String readOwnText(AccessibilityNodeInfo node) {
+        StringBuilder sb = new StringBuilder();
+        NodeTextCollector.appendOwnText(node, sb);
+        return sb.toString();
+    }
+}
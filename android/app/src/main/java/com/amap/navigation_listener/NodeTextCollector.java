@@ -0,0 +1,73 @@
+package com.amap.navigation_listener;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+
+// 节点文本收集器
+// 用显式栈代替递归，所有文本直接追加到同一个复用的缓冲区，避免逐层拼接字符串
+public class NodeTextCollector {
+    private static final char TEXT_SEPARATOR = ' ';
+    private static final int INITIAL_CAPACITY = 1024;
+    // 偶发的超大页面过后释放缓冲区，避免长期占用内存
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+    private final ArrayList<AccessibilityNodeInfo> nodeStack = new ArrayList<>();
+
+    // 前序遍历整棵树，返回的文本视图在下一次收集前有效；rootNode由调用方负责回收
+    public CharSequence collect(AccessibilityNodeInfo rootNode) {
+        resetBuffer();
+        if (rootNode == null) {
+            return buffer;
+        }
+
+        nodeStack.add(rootNode);
+        while (!nodeStack.isEmpty()) {
+            AccessibilityNodeInfo node = nodeStack.remove(nodeStack.size() - 1);
+            appendOwnText(node, buffer);
+
+            // 逆序入栈，保证子节点按原顺序出栈
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child != null) {
+                    nodeStack.add(child);
+                }
+            }
+
+            if (node != rootNode) {
+                node.recycle();
+            }
+        }
+        return buffer;
+    }
+
+    // 从增量缓存中拼接整页文本
+    public CharSequence collect(NodeTextCache cache) {
+        resetBuffer();
+        cache.appendText(buffer);
+        return buffer;
+    }
+
+    static void appendOwnText(AccessibilityNodeInfo node, StringBuilder sb) {
+        // 获取当前节点的文本
+        CharSequence text = node.getText();
+        if (text != null && text.length() > 0) {
+            sb.append(text).append(TEXT_SEPARATOR);
+        }
+
+        // 获取内容描述
+        CharSequence contentDescription = node.getContentDescription();
+        if (contentDescription != null && contentDescription.length() > 0) {
+            sb.append(contentDescription).append(TEXT_SEPARATOR);
+        }
+    }
+
+    private void resetBuffer() {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.amap.navigation_listener;
+
+import java.util.Arrays;
+
+// 页面文本解析结果缓存
+// 高德地图经常重复发出内容相同的事件，以文本的64位指纹为键缓存提取结果，命中时跳过关键词匹配和数值解析。
+// 固定容量的LRU，条目和链表都是预分配的数组，查询和写入不产生新对象；只能在单个线程上使用
+public class ParseResultCache {
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long[] keys;
+    private final int[] lengths;
+    private final NavigationData[] values;
+
+    // 哈希桶，链表通过chainNext串起同一桶内的条目
+    private final int[] buckets;
+    private final int[] chainNext;
+    private final int bucketMask;
+
+    // LRU双向链表，head为最近使用
+    private final int[] prev;
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    // 统计
+    private long lookups;
+    private long hits;
+
+    public ParseResultCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParseResultCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+        keys = new long[capacity];
+        lengths = new int[capacity];
+        values = new NavigationData[capacity];
+        for (int i = 0; i < capacity; i++) {
+            values[i] = new NavigationData();
+        }
+        chainNext = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+
+        int bucketCount = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        buckets = new int[bucketCount];
+        bucketMask = bucketCount - 1;
+        Arrays.fill(buckets, NONE);
+    }
+
+    // 64位文本指纹：每4个字符组成一个long混入，最后做一次雪崩混合
+    public static long fingerprint(CharSequence text) {
+        int length = text.length();
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long block = text.charAt(i)
+                    | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32
+                    | (long) text.charAt(i + 3) << 48;
+            h = Long.rotateLeft(h ^ block * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < length; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // 命中时把缓存的结果复制到data并返回true
+    public boolean get(long fingerprint, int length, NavigationData data) {
+        lookups++;
+        int entry = find(fingerprint, length);
+        if (entry == NONE) {
+            return false;
+        }
+        hits++;
+        moveToHead(entry);
+        data.copyFrom(values[entry]);
+        return true;
+    }
+
+    // 保存提取结果的副本，缓存已满时淘汰最久未使用的条目
+    public void put(long fingerprint, int length, NavigationData data) {
+        int entry = find(fingerprint, length);
+        if (entry == NONE) {
+            if (size < capacity) {
+                entry = size++;
+            } else {
+                entry = tail;
+                unlink(entry);
+                removeFromBucket(entry);
+            }
+            keys[entry] = fingerprint;
+            lengths[entry] = length;
+            int bucket = bucketOf(fingerprint);
+            chainNext[entry] = buckets[bucket];
+            buckets[bucket] = entry;
+            linkAtHead(entry);
+        } else {
+            moveToHead(entry);
+        }
+        values[entry].copyFrom(data);
+    }
+
+    public void clear() {
+        Arrays.fill(buckets, NONE);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    public String getStats() {
+        return "查询: " + lookups +
+                ", 命中: " + hits +
+                String.format(", 命中率: %.1f%%", getHitRate() * 100) +
+                ", 条目: " + size + "/" + capacity;
+    }
+
+    private int bucketOf(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & bucketMask;
+    }
+
+    private int find(long fingerprint, int length) {
+        for (int e = buckets[bucketOf(fingerprint)]; e != NONE; e = chainNext[e]) {
+            if (keys[e] == fingerprint && lengths[e] == length) {
+                return e;
+            }
+        }
+        return NONE;
+    }
+
+    private void removeFromBucket(int entry) {
+        int bucket = bucketOf(keys[entry]);
+        if (buckets[bucket] == entry) {
+            buckets[bucket] = chainNext[entry];
+            return;
+        }
+        for (int e = buckets[bucket]; e != NONE; e = chainNext[e]) {
+            if (chainNext[e] == entry) {
+                chainNext[e] = chainNext[entry];
+                return;
+            }
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkAtHead(entry);
+        }
+    }
+
+    private void linkAtHead(int entry) {
+        prev[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            prev[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int p = prev[entry];
+        int n = next[entry];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.amap.navigation_listener;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 导航数据流水线指标
+// 从无障碍事件到ESP32写入确认，每个阶段一个延迟直方图，另有一组计数器；
+// 记录全部是无锁的原子操作，可在主线程、解析线程和蓝牙回调线程上直接调用
+public class PipelineMetrics {
+    // 阶段
+    public static final int STAGE_EVENT = 0;          // onAccessibilityEvent处理耗时
+    public static final int STAGE_COALESCE = 1;       // 帧内第一个事件到开始解析的等待时间
+    public static final int STAGE_COLLECT = 2;        // 页面文本收集
+    public static final int STAGE_EXTRACT = 3;        // 导航信息提取
+    public static final int STAGE_DETECT = 4;         // 变化检测
+    public static final int STAGE_ENCODE = 5;         // 帧编码（JSON或二进制）
+    public static final int STAGE_WRITE_ACK = 6;      // 发起写入到onCharacteristicWrite
+    public static final int STAGE_COUNT = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "事件接收", "事件合并", "文本收集", "信息提取", "变化检测", "帧编码", "写入确认"
+    };
+
+    // 计数器
+    public static final int COUNT_EVENTS = 0;
+    public static final int COUNT_FRAMES = 1;
+    public static final int COUNT_CHANGES = 2;
+    public static final int COUNT_FRAMES_ENCODED = 3;
+    public static final int COUNT_BYTES_ENCODED = 4;
+    public static final int COUNT_WRITES_OK = 5;
+    public static final int COUNT_WRITES_FAILED = 6;
+    public static final int COUNT_PARSE_CACHE_HITS = 7;
+    public static final int COUNT_LOCATOR_HITS = 8;
+    public static final int COUNTER_COUNT = 9;
+
+    private static final String[] COUNTER_NAMES = {
+            "事件", "解析帧", "数据变化", "编码帧", "编码字节", "写入成功", "写入失败", "解析缓存命中", "节点定位命中"
+    };
+
+    private static volatile PipelineMetrics defaultInstance;
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_COUNT];
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_COUNT);
+    private volatile long resetTimeMs = System.currentTimeMillis();
+
+    public PipelineMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    // 进程内共享的实例，服务、界面和蓝牙回调都记录到这里
+    public static PipelineMetrics getDefault() {
+        PipelineMetrics metrics = defaultInstance;
+        if (metrics == null) {
+            synchronized (PipelineMetrics.class) {
+                metrics = defaultInstance;
+                if (metrics == null) {
+                    metrics = new PipelineMetrics();
+                    defaultInstance = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    public void record(int stage, long nanos) {
+        stages[stage].record(nanos);
+    }
+
+    public void recordSince(int stage, long startNanos) {
+        stages[stage].recordSince(startNanos);
+    }
+
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    public void add(int counter, long delta) {
+        counters.addAndGet(counter, delta);
+    }
+
+    public long getCounter(int counter) {
+        return counters.get(counter);
+    }
+
+    public LatencyHistogram getStage(int stage) {
+        return stages[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public void reset() {
+        for (LatencyHistogram stage : stages) {
+            stage.reset();
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            counters.set(i, 0);
+        }
+        resetTimeMs = System.currentTimeMillis();
+    }
+
+    // 可读的文本报告，延迟单位为微秒；同时用于界面显示和导出
+    public String dump() {
+        StringBuilder sb = new StringBuilder(1024);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        long now = System.currentTimeMillis();
+        sb.append("统计开始: ").append(format.format(new Date(resetTimeMs)))
+                .append("，时长: ").append((now - resetTimeMs) / 1000).append("秒\n\n");
+
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            sb.append(COUNTER_NAMES[i]).append(": ").append(counters.get(i)).append('\n');
+        }
+
+        sb.append("\n阶段\t次数\t平均\tp50\tp90\tp99\t最大 (us)\n");
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram h = stages[i];
+            sb.append(STAGE_NAMES[i])
+                    .append('\t').append(h.getCount())
+                    .append('\t').append(h.getMeanNanos() / 1000)
+                    .append('\t').append(h.getPercentileNanos(50) / 1000)
+                    .append('\t').append(h.getPercentileNanos(90) / 1000)
+                    .append('\t').append(h.getPercentileNanos(99) / 1000)
+                    .append('\t').append(h.getMaxNanos() / 1000)
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.amap.navigation_listener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// 专业术语转通俗中文
+// 术语表编译为字典树，转换时从左到右只扫描一遍，同一位置取最长匹配，替换结果不再参与匹配；
+// 结果与术语表顺序无关，耗时只取决于文本长度和最长术语长度，与术语数量无关
+public final class TechnicalTermConverter {
+    private static final String DEFAULT_DICTIONARY = "/technical_terms.txt";
+    private static final char SEPARATOR = '=';
+
+    private final KeywordAutomaton automaton;
+    private final String[] replacements;
+
+    // 内置术语表在第一次使用时加载
+    private static final class DefaultHolder {
+        static final TechnicalTermConverter INSTANCE = loadDefault();
+    }
+
+    public TechnicalTermConverter(String[] terms, String[] replacements) {
+        if (terms.length != replacements.length) {
+            throw new IllegalArgumentException("术语与替换数量不一致");
+        }
+        this.automaton = new KeywordAutomaton(terms);
+        this.replacements = replacements.clone();
+    }
+
+    public static TechnicalTermConverter getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public static String convert(String technicalText) {
+        return getDefault().replace(technicalText);
+    }
+
+    // 每行"术语=通俗说法"，空行和以#开头的行被忽略；重复的术语以先出现的为准
+    public static TechnicalTermConverter read(Reader in) throws IOException {
+        List<String> terms = new ArrayList<>();
+        List<String> replacements = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf(SEPARATOR);
+            if (separator <= 0) {
+                throw new IOException("第" + lineNumber + "行格式错误: " + line);
+            }
+            terms.add(line.substring(0, separator));
+            replacements.add(line.substring(separator + 1));
+        }
+        return new TechnicalTermConverter(terms.toArray(new String[0]), replacements.toArray(new String[0]));
+    }
+
+    public String replace(String text) {
+        StringBuilder out = null;
+        int copied = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            // 沿字典树前进，记录最长的完整术语
+            int matchId = -1;
+            int matchEnd = i;
+            int state = KeywordAutomaton.ROOT;
+            for (int j = i; j < length; j++) {
+                state = automaton.next(state, text.charAt(j));
+                if (state == KeywordAutomaton.NO_STATE) {
+                    break;
+                }
+                int id = automaton.keywordAt(state);
+                if (id >= 0) {
+                    matchId = id;
+                    matchEnd = j + 1;
+                }
+            }
+
+            if (matchId < 0) {
+                i++;
+                continue;
+            }
+
+            // 没有任何匹配时直接返回原字符串
+            if (out == null) {
+                out = new StringBuilder(length + 16);
+            }
+            out.append(text, copied, i).append(replacements[matchId]);
+            copied = matchEnd;
+            i = matchEnd;
+        }
+
+        if (out == null) {
+            return text;
+        }
+        return out.append(text, copied, length).toString();
+    }
+
+    public int getTermCount() {
+        return automaton.getKeywordCount();
+    }
+
+    private static TechnicalTermConverter loadDefault() {
+        InputStream in = TechnicalTermConverter.class.getResourceAsStream(DEFAULT_DICTIONARY);
+        if (in == null) {
+            throw new IllegalStateException("缺少术语表: " + DEFAULT_DICTIONARY);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return read(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
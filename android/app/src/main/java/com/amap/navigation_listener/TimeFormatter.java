@@ -0,0 +1,33 @@
+package com.amap.navigation_listener;
+
+// 剩余时间格式化，不依赖Android，可在JVM上直接测试和压测
+public final class TimeFormatter {
+    private TimeFormatter() {
+    }
+
+    // 导航页面使用的格式，例如"3 分 20 秒"
+    public static String formatSpaced(int seconds) {
+        if (seconds < 60) {
+            return seconds + " 秒";
+        }
+        int minutes = seconds / 60;
+        int remainingSeconds = seconds % 60;
+        if (remainingSeconds == 0) {
+            return minutes + " 分钟";
+        }
+        return minutes + " 分 " + remainingSeconds + " 秒";
+    }
+
+    // 自然语言描述使用的格式，例如"3分钟20秒"
+    public static String formatCompact(int seconds) {
+        if (seconds < 60) {
+            return seconds + "秒";
+        }
+        int minutes = seconds / 60;
+        int remainingSeconds = seconds % 60;
+        if (remainingSeconds == 0) {
+            return minutes + "分钟";
+        }
+        return minutes + "分钟" + remainingSeconds + "秒";
+    }
+}
@@ -0,0 +1,618 @@
+package com.amap.navigation_listener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 行程记录存储
+// 只追加的内存映射文件，每条记录定长，写入只是一次内存拷贝；文件按分段轮转，超过上限时删除最早的分段。
+// 道路名称和动作存入分段自己的字符串表，记录中只保存ID，字符串表随分段一起删除。记录按时间递增写入，
+// 按时间查询时先按分段的起始时间定位，再在分段内二分查找
+//
+// 分段文件头（16字节）：魔数(4) | 版本(2) | 记录大小(2) | 创建时间(8)
+// 记录（64字节）：起始时间戳(8) | 首条的打包数值字段(8) | 道路ID(4) | 动作ID(4) | 条数(3)和增量长度(1) | 增量区(36)
+//   道路、动作和导航状态相同的连续数据写入同一条记录，首条之后的每条数据在增量区追加与前一条的差值：
+//   时间(varint) | 距离、剩余时间、速度(zigzag varint)，读取时逐条精确还原；增量区写满后另起一条记录
+// 时间戳为0表示该位置尚未写入。新记录的时间戳最后写入，追加到已有记录时先写增量再更新条数，
+// 中途崩溃时不会读到写了一半的数据
+public class TripLogStore implements Closeable {
+    private static final int MAGIC = 0x4E544C47;
+    public static final int FORMAT_VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 64;
+
+    // 记录内的偏移
+    private static final int PACKED_OFFSET = 8;
+    private static final int ROAD_OFFSET = 16;
+    private static final int ACTION_OFFSET = 20;
+    private static final int STATE_OFFSET = 24;
+    private static final int DELTA_OFFSET = 28;
+    private static final int DELTA_CAPACITY = RECORD_SIZE - DELTA_OFFSET;
+    // 一条增量最长：时间5字节，距离和剩余时间各4字节，速度3字节
+    private static final int MAX_DELTA_SIZE = 16;
+    private static final int MAX_RECORD_SAMPLES = (1 << 24) - 1;
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 16;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String STRING_TABLE_SUFFIX = ".str";
+
+    public interface RecordVisitor {
+        // 返回false停止遍历
+        boolean onRecord(long timestampMs, NavigationSnapshot data);
+    }
+
+    // 一个分段文件
+    private static class Segment {
+        final File file;
+        final File stringFile;
+        final long sequence;
+        final int capacity;
+        long firstTimestamp;
+        long lastTimestamp;
+        int count;
+        // 已写满或不再写入的分段的字符串表不会再变化，第一次读取后缓存
+        List<String> stringTable;
+
+        Segment(File file, long sequence, int capacity) {
+            this.file = file;
+            this.stringFile = new File(file.getParentFile(), file.getName().replace(SEGMENT_SUFFIX, STRING_TABLE_SUFFIX));
+            this.sequence = sequence;
+            this.capacity = capacity;
+        }
+
+        static long timestampAt(ByteBuffer buffer, int index) {
+            return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE);
+        }
+
+        // 该记录最后一条数据的时间
+        static long endTimestampAt(ByteBuffer buffer, int index) {
+            int offset = HEADER_SIZE + index * RECORD_SIZE;
+            DeltaReader reader = new DeltaReader(buffer, offset);
+            long timestamp = buffer.getLong(offset);
+            for (int i = 1; i < reader.count; i++) {
+                timestamp += reader.readVarint();
+                reader.readVarint();
+                reader.readVarint();
+                reader.readVarint();
+            }
+            return timestamp;
+        }
+    }
+
+    // 顺序读取一条记录的增量区
+    private static final class DeltaReader {
+        final ByteBuffer buffer;
+        final int count;
+        final int end;
+        int pos;
+
+        DeltaReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            int state = buffer.getInt(offset + STATE_OFFSET);
+            count = state >>> 8;
+            pos = offset + DELTA_OFFSET;
+            end = pos + Math.min(state & 0xFF, DELTA_CAPACITY);
+        }
+
+        // 增量区被截断时返回0
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; pos < end && shift < 64; shift += 7) {
+                int b = buffer.get(pos++);
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            return value;
+        }
+
+        int readZigzag() {
+            long value = readVarint();
+            return (int) ((value >>> 1) ^ -(value & 1));
+        }
+    }
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private RandomAccessFile activeFile;
+    private MappedByteBuffer activeBuffer;
+
+    // 正在写入的分段的字符串表
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private FileOutputStream stringFileOut;
+    private DataOutputStream stringOut;
+    private boolean stringsUnsynced;
+
+    // 正在追加的记录，openIndex为-1时下一条数据另起一条记录
+    private int openIndex = -1;
+    private String openRoad;
+    private String openAction;
+    private boolean openActive;
+    private int openCount;
+    private int openDeltaLength;
+    private long openLastTimestamp;
+    private NavigationSnapshot openLast;
+    private final byte[] delta = new byte[MAX_DELTA_SIZE];
+
+    private long lastTimestamp;
+    private boolean closed;
+
+    // 统计，打开以来追加的数据条数和新建的记录数
+    private long appended;
+    private long recordsCreated;
+
+    private TripLogStore(File directory, int recordsPerSegment, int maxSegments) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+    }
+
+    public static TripLogStore open(File directory) throws IOException {
+        return open(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public static TripLogStore open(File directory, int recordsPerSegment, int maxSegments) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        TripLogStore store = new TripLogStore(directory, Math.max(recordsPerSegment, 1), Math.max(maxSegments, 1));
+        store.loadSegments();
+        return store;
+    }
+
+    // 追加一条数据；时间戳回退（例如系统时间被调整）时按上一条数据的时间写入，保证时间有序。
+    // 与上一条的道路、动作和导航状态相同时追加到同一条记录的增量区
+    public synchronized void append(long timestampMs, NavigationSnapshot data) throws IOException {
+        if (closed) {
+            throw new IOException("存储已关闭");
+        }
+        long timestamp = Math.max(Math.max(timestampMs, lastTimestamp), 1);
+        String road = data.getRoadName() != null ? data.getRoadName() : "";
+        String action = data.getAction() != null ? data.getAction() : "";
+        appended++;
+
+        if (openIndex >= 0 && data.isActive() == openActive && road.equals(openRoad) && action.equals(openAction)
+                && openCount < MAX_RECORD_SAMPLES && timestamp - openLastTimestamp <= Integer.MAX_VALUE) {
+            int length = encodeDelta(timestamp - openLastTimestamp, openLast, data);
+            if (openDeltaLength + length <= DELTA_CAPACITY) {
+                int offset = HEADER_SIZE + openIndex * RECORD_SIZE;
+                for (int i = 0; i < length; i++) {
+                    activeBuffer.put(offset + DELTA_OFFSET + openDeltaLength + i, delta[i]);
+                }
+                openDeltaLength += length;
+                openCount++;
+                // 条数和增量长度在同一个int中，一次写入后新数据才可见
+                activeBuffer.putInt(offset + STATE_OFFSET, (openCount << 8) | openDeltaLength);
+                openLastTimestamp = timestamp;
+                openLast = data;
+                active.lastTimestamp = timestamp;
+                lastTimestamp = timestamp;
+                return;
+            }
+        }
+
+        if (active == null || active.count >= active.capacity) {
+            rotate(timestamp);
+        }
+        int offset = HEADER_SIZE + active.count * RECORD_SIZE;
+        activeBuffer.putLong(offset + PACKED_OFFSET, data.getPackedNumbers());
+        activeBuffer.putInt(offset + ROAD_OFFSET, stringId(road));
+        activeBuffer.putInt(offset + ACTION_OFFSET, stringId(action));
+        activeBuffer.putInt(offset + STATE_OFFSET, 1 << 8);
+        activeBuffer.putLong(offset, timestamp);
+
+        openIndex = active.count;
+        openRoad = road;
+        openAction = action;
+        openActive = data.isActive();
+        openCount = 1;
+        openDeltaLength = 0;
+        openLastTimestamp = timestamp;
+        openLast = data;
+        recordsCreated++;
+
+        if (active.count == 0) {
+            active.firstTimestamp = timestamp;
+        }
+        active.lastTimestamp = timestamp;
+        active.count++;
+        lastTimestamp = timestamp;
+    }
+
+    // 把与前一条数据的差值编码到delta中，返回长度
+    private int encodeDelta(long elapsed, NavigationSnapshot previous, NavigationSnapshot data) {
+        int length = writeVarint(delta, 0, elapsed);
+        length = writeVarint(delta, length, zigzag(data.getDistance() - previous.getDistance()));
+        length = writeVarint(delta, length, zigzag(data.getRemainingTime() - previous.getRemainingTime()));
+        return writeVarint(delta, length, zigzag(data.getSpeed() - previous.getSpeed()));
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    // 按时间顺序遍历[fromMs, toMs)内的记录，返回遍历的条数
+    public synchronized int read(long fromMs, long toMs, RecordVisitor visitor) throws IOException {
+        if (closed) {
+            throw new IOException("存储已关闭");
+        }
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder();
+        int visited = 0;
+        for (Segment segment : segments) {
+            if (segment.count == 0 || segment.lastTimestamp < fromMs || segment.firstTimestamp >= toMs) {
+                continue;
+            }
+
+            ByteBuffer buffer = segment == active ? activeBuffer.duplicate() : mapReadOnly(segment);
+            List<String> table = segment == active ? strings : sealedStrings(segment);
+            int index = lowerBound(segment, buffer, fromMs);
+            // 前一条记录中的数据可能跨越起始时间
+            if (index > 0 && Segment.endTimestampAt(buffer, index - 1) >= fromMs) {
+                index--;
+            }
+            for (; index < segment.count; index++) {
+                int offset = HEADER_SIZE + index * RECORD_SIZE;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp >= toMs) {
+                    return visited;
+                }
+                NavigationSnapshot data = builder.setPackedNumbers(buffer.getLong(offset + PACKED_OFFSET))
+                        .setRoadName(stringAt(table, buffer.getInt(offset + ROAD_OFFSET)))
+                        .setAction(stringAt(table, buffer.getInt(offset + ACTION_OFFSET)))
+                        .build();
+                int distance = data.getDistance();
+                int remainingTime = data.getRemainingTime();
+                int speed = data.getSpeed();
+                DeltaReader reader = new DeltaReader(buffer, offset);
+                for (int i = 0; i < reader.count; i++) {
+                    if (i > 0) {
+                        timestamp += reader.readVarint();
+                        distance += reader.readZigzag();
+                        remainingTime += reader.readZigzag();
+                        speed += reader.readZigzag();
+                        data = builder.setDistance(distance).setRemainingTime(remainingTime).setSpeed(speed).build();
+                    }
+                    if (timestamp >= toMs) {
+                        return visited;
+                    }
+                    if (timestamp < fromMs) {
+                        continue;
+                    }
+                    visited++;
+                    if (!visitor.onRecord(timestamp, data)) {
+                        return visited;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    // 存储的物理记录数，合并在一条记录中的连续数据只算一条
+    public synchronized long getRecordCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    // 最早和最晚的记录时间，没有记录时返回0
+    public synchronized long getFirstTimestamp() {
+        for (Segment segment : segments) {
+            if (segment.count > 0) {
+                return segment.firstTimestamp;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized String getStats() {
+        return "分段: " + segments.size() +
+                ", 记录: " + getRecordCount() +
+                ", 本次写入: " + appended + "条/" + recordsCreated + "段" +
+                String.format(", 压缩比: %.1f", recordsCreated > 0 ? (double) appended / recordsCreated : 0.0);
+    }
+
+    // 把已写入的数据同步到磁盘，字符串表先于引用它的记录
+    public synchronized void force() throws IOException {
+        syncStrings();
+        if (activeBuffer != null) {
+            activeBuffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            force();
+        } finally {
+            closeActive();
+        }
+    }
+
+    private void rotate(long timestamp) throws IOException {
+        closeActive();
+
+        long sequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).sequence + 1;
+        File file = new File(directory, String.format("%s%012d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(file, sequence, recordsPerSegment);
+        segment.firstTimestamp = timestamp;
+        segment.lastTimestamp = timestamp;
+
+        activeFile = new RandomAccessFile(file, "rw");
+        activeBuffer = activeFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE);
+        activeBuffer.putInt(0, MAGIC);
+        activeBuffer.putShort(4, (short) FORMAT_VERSION);
+        activeBuffer.putShort(6, (short) RECORD_SIZE);
+        activeBuffer.putLong(8, timestamp);
+        active = segment;
+        segments.add(segment);
+        openStrings(segment);
+
+        // 超过上限时删除最早的分段和它的字符串表
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.remove(0);
+            delete(oldest.file);
+            delete(oldest.stringFile);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private void closeActive() throws IOException {
+        syncStrings();
+        if (active != null) {
+            // 分段不再写入，当前字符串表留作它的读取缓存
+            active.stringTable = new ArrayList<>(strings);
+        }
+        if (activeFile != null) {
+            activeBuffer.force();
+            activeFile.close();
+            activeFile = null;
+            activeBuffer = null;
+            active = null;
+        }
+        openIndex = -1;
+        if (stringOut != null) {
+            stringOut.close();
+            stringOut = null;
+            stringFileOut = null;
+        }
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            Segment segment = readSegment(file);
+            if (segment != null) {
+                segments.add(segment);
+                lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp);
+            } else {
+                // 无法读取的分段直接删除，避免新分段复用它的序号时读到旧数据
+                delete(file);
+                delete(new File(directory, file.getName().replace(SEGMENT_SUFFIX, STRING_TABLE_SUFFIX)));
+            }
+        }
+
+        // 最后一个分段未写满时继续写入，新数据另起一条记录
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.count < last.capacity) {
+                activeFile = new RandomAccessFile(last.file, "rw");
+                activeBuffer = activeFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_SIZE + (long) last.capacity * RECORD_SIZE);
+                active = last;
+                openStrings(last);
+            }
+        }
+    }
+
+    // 读取分段的元数据，文件头无效或格式不同时返回null
+    private Segment readSegment(File file) throws IOException {
+        String name = file.getName();
+        long sequence;
+        try {
+            sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != FORMAT_VERSION || buffer.getShort(6) != RECORD_SIZE) {
+                return null;
+            }
+
+            Segment segment = new Segment(file, sequence, (int) ((raf.length() - HEADER_SIZE) / RECORD_SIZE));
+            // 已写入的记录连续排列在前面，二分查找第一个空位
+            int lo = 0;
+            int hi = segment.capacity;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Segment.timestampAt(buffer, mid) != 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            segment.count = lo;
+            if (lo > 0) {
+                segment.firstTimestamp = Segment.timestampAt(buffer, 0);
+                segment.lastTimestamp = Segment.endTimestampAt(buffer, lo - 1);
+            }
+            return segment;
+        }
+    }
+
+    private static ByteBuffer mapReadOnly(Segment segment) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+    }
+
+    // 第一条时间戳不小于timestamp的记录
+    private static int lowerBound(Segment segment, ByteBuffer buffer, long timestamp) {
+        int lo = 0;
+        int hi = segment.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Segment.timestampAt(buffer, mid) < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int stringId(String value) throws IOException {
+        String key = value != null ? value : "";
+        Integer id = stringIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        // 新字符串先写入字符串表并同步到磁盘，再写引用它的记录；
+        // 映射的记录页可能随时被系统写回，不能等到force时才同步字符串表
+        stringOut.writeUTF(key);
+        stringsUnsynced = true;
+        syncStrings();
+        int newId = strings.size();
+        strings.add(key);
+        stringIds.put(key, newId);
+        return newId;
+    }
+
+    private static String stringAt(List<String> table, int id) {
+        return id >= 0 && id < table.size() ? table.get(id) : "";
+    }
+
+    // 加载分段的字符串表并继续追加
+    private void openStrings(Segment segment) throws IOException {
+        strings.clear();
+        stringIds.clear();
+        for (String value : readStrings(segment.stringFile, true)) {
+            stringIds.put(value, strings.size());
+            strings.add(value);
+        }
+        stringFileOut = new FileOutputStream(segment.stringFile, true);
+        stringOut = new DataOutputStream(new BufferedOutputStream(stringFileOut));
+    }
+
+    private void syncStrings() throws IOException {
+        if (stringsUnsynced && stringOut != null) {
+            stringOut.flush();
+            stringFileOut.getFD().sync();
+            stringsUnsynced = false;
+        }
+    }
+
+    // 不再写入的分段的字符串表
+    private static List<String> sealedStrings(Segment segment) throws IOException {
+        if (segment.stringTable == null) {
+            segment.stringTable = readStrings(segment.stringFile, false);
+        }
+        return segment.stringTable;
+    }
+
+    // truncate为true时截掉崩溃时写了一半的条目
+    private static List<String> readStrings(File file, boolean truncate) throws IOException {
+        List<String> table = new ArrayList<>();
+        if (!file.exists()) {
+            return table;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                String value = in.readUTF();
+                validLength += 2 + utfLength(value);
+                table.add(value);
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            // 读到末尾或末尾有未写完的条目
+        }
+        if (truncate && validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return table;
+    }
+
+    // writeUTF使用的修改版UTF-8编码长度
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
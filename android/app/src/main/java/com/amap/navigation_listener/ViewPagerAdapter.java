@@ -21,6 +21,8 @@ public class ViewPagerAdapter extends FragmentStateAdapter {
                 return new BluetoothFragment();
             case 2:
                 return new DataConverterFragment();
+            case 3:
+                return new DiagnosticsFragment();
             default:
                 return new NavigationFragment();
         }
@@ -28,6 +30,6 @@ public class ViewPagerAdapter extends FragmentStateAdapter {
 
     @Override
     public int getItemCount() {
-        return 3; // 三个页面
+        return 4; // 四个页面
     }
 }
\ No newline at end of file
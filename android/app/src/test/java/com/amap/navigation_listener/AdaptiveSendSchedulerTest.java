@@ -0,0 +1,112 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AdaptiveSendSchedulerTest {
+
+    private static NavigationSnapshot data(String road, String action, int distance, int speed) {
+        return new NavigationSnapshot.Builder()
+                .setRoadName(road)
+                .setAction(action)
+                .setDistance(distance)
+                .setRemainingTime(600)
+                .setSpeed(speed)
+                .setActive(true)
+                .build();
+    }
+
+    @Test
+    public void intervalFollowsDistanceAndSpeed() {
+        // 临近转向
+        assertEquals(AdaptiveSendScheduler.FAST_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(data("学院路", "左转", 300, 20)));
+        // 高速接近：1000米、120km/h，30秒内到达
+        assertEquals(AdaptiveSendScheduler.FAST_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(data("京藏高速公路", "靠右", 1000, 120)));
+        // 长直路巡航：3000米、60km/h，180秒后到达
+        assertEquals(AdaptiveSendScheduler.CRUISE_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(data("京藏高速公路", "直行", 3000, 60)));
+        // 停车时视为无限远
+        assertEquals(AdaptiveSendScheduler.CRUISE_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(data("辅路", "直行", 2400, 0)));
+        assertEquals(AdaptiveSendScheduler.NORMAL_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(data("辅路", "直行", 800, 40)));
+        assertEquals(AdaptiveSendScheduler.CRUISE_INTERVAL_MS,
+                AdaptiveSendScheduler.intervalFor(NavigationSnapshot.EMPTY));
+    }
+
+    @Test
+    public void firstSubmitSendsImmediately() {
+        AdaptiveSendScheduler scheduler = new AdaptiveSendScheduler();
+        assertEquals(AdaptiveSendScheduler.NO_DEADLINE, scheduler.nextDeadline());
+        assertNull(scheduler.poll(1000));
+
+        NavigationSnapshot first = data("辅路", "直行", 800, 40);
+        scheduler.submit(first);
+        assertEquals(0, scheduler.nextDeadline());
+        assertSame(first, scheduler.poll(1000));
+        assertNull(scheduler.poll(1000));
+    }
+
+    @Test
+    public void numericChangesWaitForInterval() {
+        AdaptiveSendScheduler scheduler = new AdaptiveSendScheduler();
+        scheduler.submit(data("辅路", "直行", 800, 40));
+        scheduler.poll(1000);
+
+        NavigationSnapshot next = data("辅路", "直行", 790, 40);
+        scheduler.submit(next);
+        assertEquals(1000 + AdaptiveSendScheduler.NORMAL_INTERVAL_MS, scheduler.nextDeadline());
+        assertNull(scheduler.poll(1500));
+
+        // 未发出的数据被更新的数据替换
+        NavigationSnapshot latest = data("辅路", "直行", 780, 40);
+        scheduler.submit(latest);
+        assertSame(latest, scheduler.poll(2000));
+    }
+
+    @Test
+    public void urgentChangesSendImmediately() {
+        AdaptiveSendScheduler scheduler = new AdaptiveSendScheduler();
+        scheduler.submit(data("辅路", "直行", 3000, 60));
+        scheduler.poll(1000);
+
+        NavigationSnapshot turn = data("辅路", "左转", 3000, 60);
+        scheduler.submit(turn);
+        assertEquals(1000, scheduler.nextDeadline());
+        assertSame(turn, scheduler.poll(1001));
+    }
+
+    @Test
+    public void resendsHeartbeatWithoutChanges() {
+        AdaptiveSendScheduler scheduler = new AdaptiveSendScheduler();
+        NavigationSnapshot data = data("辅路", "直行", 800, 40);
+        scheduler.submit(data);
+        scheduler.poll(1000);
+
+        // 重复提交相同数据不会提前发送
+        scheduler.submit(data("辅路", "直行", 800, 40));
+        assertEquals(1000 + AdaptiveSendScheduler.HEARTBEAT_INTERVAL_MS, scheduler.nextDeadline());
+        assertNull(scheduler.poll(5999));
+        assertEquals(data, scheduler.poll(6000));
+        assertEquals(6000 + AdaptiveSendScheduler.HEARTBEAT_INTERVAL_MS, scheduler.nextDeadline());
+        assertEquals(data, scheduler.poll(11000));
+        assertEquals("提交: 2, 发送: 3, 心跳: 1", scheduler.getStats());
+    }
+
+    @Test
+    public void resetResendsLastData() {
+        AdaptiveSendScheduler scheduler = new AdaptiveSendScheduler();
+        NavigationSnapshot data = data("辅路", "直行", 800, 40);
+        scheduler.submit(data);
+        scheduler.poll(1000);
+
+        scheduler.reset();
+        assertEquals(0, scheduler.nextDeadline());
+        assertSame(data, scheduler.poll(1100));
+    }
+}
@@ -0,0 +1,352 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryFrameEncoderTest {
+    private static final String[] ROADS = {"中关村北路", "北四环西路辅路", "北四环西路", "学院路", "京藏高速公路"};
+    private static final String[] ACTIONS = {"直行", "左转", "右转", "靠左", "进入环岛", "前方拥堵绕行"};
+
+    // 按ESP32端的解析逻辑实现的接收端，用于往返测试
+    private static final class Display {
+        final Map<Integer, String> roads = new HashMap<>();
+        boolean synced;
+        int expectedSequence;
+        String roadName;
+        String action;
+        int distance;
+        int remainingTime;
+        int speed;
+        boolean active;
+
+        // 返回false表示需要请求重新同步
+        boolean receive(byte[] frame) {
+            assertEquals(NavigationProtocol.MAGIC, frame[0]);
+            assertEquals(frame.length - NavigationProtocol.HEADER_SIZE, frame[1] & 0xFF);
+            int version = NavigationProtocol.frameVersion(frame[2]);
+            int type = NavigationProtocol.frameType(frame[2]);
+            Reader in = new Reader(frame, NavigationProtocol.HEADER_SIZE);
+            boolean ok = version == NavigationProtocol.VERSION_1 ? receiveV1(in) : receiveV2(in, type);
+            if (ok) {
+                assertEquals("帧体没有读完", frame.length, in.offset);
+            }
+            return ok;
+        }
+
+        private boolean receiveV1(Reader in) {
+            int flags = in.readByte();
+            int actionCode = in.readByte();
+            distance = in.readVarint();
+            remainingTime = in.readVarint();
+            speed = in.readVarint();
+            int roadId = in.readVarint();
+            active = (flags & NavigationProtocol.FLAG_ACTIVE) != 0;
+            if ((flags & NavigationProtocol.FLAG_ROAD_DEFINITION) != 0) {
+                roads.put(roadId, in.readString());
+            }
+            action = (flags & NavigationProtocol.FLAG_CUSTOM_ACTION) != 0
+                    ? in.readString() : NavigationProtocol.decodeAction(actionCode);
+            return resolveRoad(roadId);
+        }
+
+        private boolean receiveV2(Reader in, int type) {
+            int sequence = in.readByte();
+            if (type == NavigationProtocol.FRAME_FULL) {
+                synced = true;
+            } else if (!synced || sequence != expectedSequence) {
+                synced = false;
+                return false;
+            }
+            expectedSequence = (sequence + 1) & 0xFF;
+
+            int mask = in.readByte();
+            int flags = in.readByte();
+            if (type == NavigationProtocol.FRAME_FULL) {
+                assertEquals(NavigationData.ALL_FIELDS, mask);
+            }
+            int actionCode = (mask & NavigationData.FIELD_ACTION) != 0 ? in.readByte() : -1;
+            if ((mask & NavigationData.FIELD_DISTANCE) != 0) {
+                distance = in.readVarint();
+            }
+            if ((mask & NavigationData.FIELD_REMAINING_TIME) != 0) {
+                remainingTime = in.readVarint();
+            }
+            if ((mask & NavigationData.FIELD_SPEED) != 0) {
+                speed = in.readVarint();
+            }
+            int roadId = (mask & NavigationData.FIELD_ROAD_NAME) != 0 ? in.readVarint() : -1;
+            if ((flags & NavigationProtocol.FLAG_ROAD_DEFINITION) != 0) {
+                roads.put(roadId, in.readString());
+            }
+            if (actionCode >= 0) {
+                action = (flags & NavigationProtocol.FLAG_CUSTOM_ACTION) != 0
+                        ? in.readString() : NavigationProtocol.decodeAction(actionCode);
+            }
+            active = (flags & NavigationProtocol.FLAG_ACTIVE) != 0;
+            if (roadId >= 0 && !resolveRoad(roadId)) {
+                synced = false;
+                return false;
+            }
+            return true;
+        }
+
+        private boolean resolveRoad(int roadId) {
+            if (roadId == 0) {
+                roadName = "";
+                return true;
+            }
+            roadName = roads.get(roadId);
+            return roadName != null;
+        }
+
+        NavigationSnapshot snapshot() {
+            return new NavigationSnapshot.Builder()
+                    .setRoadName(roadName)
+                    .setAction(action)
+                    .setDistance(distance)
+                    .setRemainingTime(remainingTime)
+                    .setSpeed(speed)
+                    .setActive(active)
+                    .build();
+        }
+    }
+
+    private static final class Reader {
+        final byte[] data;
+        int offset;
+
+        Reader(byte[] data, int offset) {
+            this.data = data;
+            this.offset = offset;
+        }
+
+        int readByte() {
+            return data[offset++] & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        String readString() {
+            int length = readByte();
+            String value = new String(data, offset, length, StandardCharsets.UTF_8);
+            offset += length;
+            return value;
+        }
+    }
+
+    // 模拟一段行程：道路、动作和数值按不同的节奏变化
+    private static NavigationSnapshot trip(int i) {
+        return new NavigationSnapshot.Builder()
+                .setRoadName(ROADS[(i / 7) % ROADS.length])
+                .setAction(ACTIONS[(i / 5) % ACTIONS.length])
+                .setDistance(Math.max(3000 - i * 37, 0))
+                .setRemainingTime(1800 - i / 3)
+                .setSpeed(40 + (i * 13) % 90)
+                .setActive(i % 40 != 39)
+                .build();
+    }
+
+    private static byte[] varint(int value) {
+        byte[] buffer = new byte[5];
+        int end = NavigationProtocol.writeVarint(buffer, 0, value);
+        byte[] bytes = new byte[end];
+        System.arraycopy(buffer, 0, bytes, 0, end);
+        return bytes;
+    }
+
+    @Test
+    public void varintBoundaries() {
+        assertArrayEquals(new byte[]{0}, varint(0));
+        assertArrayEquals(new byte[]{0x7F}, varint(127));
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x01}, varint(128));
+        assertArrayEquals(new byte[]{(byte) 0xFF, 0x7F}, varint(16383));
+        assertArrayEquals(new byte[]{(byte) 0x80, (byte) 0x80, 0x01}, varint(16384));
+        // 负数按0发送
+        assertArrayEquals(new byte[]{0}, varint(-5));
+
+        for (int value : new int[]{1, 300, 65535, NavigationSnapshot.MAX_DISTANCE, Integer.MAX_VALUE}) {
+            assertEquals(value, new Reader(varint(value), 0).readVarint());
+        }
+    }
+
+    @Test
+    public void roundTripsV1() {
+        // 字典容量小于道路数，覆盖槽位复用
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_1, 2);
+        Display display = new Display();
+        for (int i = 0; i < 200; i++) {
+            NavigationSnapshot data = trip(i);
+            byte[] frame = encoder.encode(data, i * 200L);
+            assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(frame[2]));
+            assertTrue("第" + i + "帧道路未定义", display.receive(frame));
+            assertEquals(data, display.snapshot());
+        }
+    }
+
+    @Test
+    public void roundTripsV2() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 2);
+        Display display = new Display();
+        for (int i = 0; i < 500; i++) {
+            NavigationSnapshot data = trip(i);
+            assertTrue("第" + i + "帧需要重新同步", display.receive(encoder.encode(data, i * 100L)));
+            assertEquals(data, display.snapshot());
+        }
+        assertTrue(encoder.getDeltaCount() > encoder.getKeyframeCount());
+    }
+
+    @Test
+    public void unchangedDataSendsEmptyDelta() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 8);
+        byte[] keyframe = encoder.encode(trip(0), 0);
+        assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(keyframe[2]));
+
+        byte[] delta = encoder.encode(trip(0), 100);
+        assertEquals(NavigationProtocol.FRAME_DELTA, NavigationProtocol.frameType(delta[2]));
+        // 只有序号、掩码和标志位
+        assertEquals(NavigationProtocol.HEADER_SIZE + 3, delta.length);
+        assertEquals(0, delta[NavigationProtocol.HEADER_SIZE + 1]);
+    }
+
+    @Test
+    public void insertsPeriodicKeyframes() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 8);
+        encoder.encode(trip(0), 0);
+        // 关键帧之后连续发送KEYFRAME_INTERVAL_FRAMES个增量帧
+        for (int i = 1; i <= BinaryFrameEncoder.KEYFRAME_INTERVAL_FRAMES; i++) {
+            byte[] frame = encoder.encode(trip(i), i);
+            assertEquals(NavigationProtocol.FRAME_DELTA, NavigationProtocol.frameType(frame[2]));
+        }
+        long now = BinaryFrameEncoder.KEYFRAME_INTERVAL_FRAMES + 1;
+        byte[] frame = encoder.encode(trip(0), now);
+        assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(frame[2]));
+
+        frame = encoder.encode(trip(1), now + BinaryFrameEncoder.KEYFRAME_INTERVAL_MS - 1);
+        assertEquals(NavigationProtocol.FRAME_DELTA, NavigationProtocol.frameType(frame[2]));
+        frame = encoder.encode(trip(2), now + BinaryFrameEncoder.KEYFRAME_INTERVAL_MS);
+        assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(frame[2]));
+    }
+
+    @Test
+    public void lostFrameTriggersResyncAndKeyframeRecovers() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 8);
+        Display display = new Display();
+        assertTrue(display.receive(encoder.encode(trip(0), 0)));
+        encoder.encode(trip(1), 100);
+        assertFalse(display.receive(encoder.encode(trip(2), 200)));
+
+        encoder.requestKeyframe();
+        byte[] frame = encoder.encode(trip(3), 300);
+        assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(frame[2]));
+        assertTrue(display.receive(frame));
+        assertEquals(trip(3), display.snapshot());
+    }
+
+    @Test
+    public void resetDictionaryRedefinesRoadsForJoiningDisplay() {
+        for (int version : new int[]{NavigationProtocol.VERSION_1, NavigationProtocol.VERSION_2}) {
+            BinaryFrameEncoder encoder = new BinaryFrameEncoder(version, 8);
+            Display first = new Display();
+            for (int i = 0; i < 30; i++) {
+                assertTrue(first.receive(encoder.encode(trip(i), i * 100L)));
+            }
+
+            // 新设备加入编码组，之前的道路定义都没有收到
+            Display joined = new Display();
+            encoder.resetDictionary();
+            for (int i = 30; i < 100; i++) {
+                byte[] frame = encoder.encode(trip(i), i * 100L);
+                assertTrue("v" + version + "第" + i + "帧", first.receive(frame));
+                assertTrue("v" + version + "第" + i + "帧", joined.receive(frame));
+                assertEquals(trip(i), joined.snapshot());
+            }
+        }
+    }
+
+    @Test
+    public void resetStartsNewSession() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 8);
+        for (int i = 0; i < 10; i++) {
+            encoder.encode(trip(i), i);
+        }
+        encoder.reset();
+        byte[] frame = encoder.encode(trip(10), 10);
+        assertEquals(NavigationProtocol.FRAME_FULL, NavigationProtocol.frameType(frame[2]));
+        assertEquals(0, frame[NavigationProtocol.HEADER_SIZE]);
+
+        Display display = new Display();
+        assertTrue(display.receive(frame));
+        assertEquals(trip(10), display.snapshot());
+    }
+
+    @Test
+    public void customActionIsSentAsString() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_2, 8);
+        Display display = new Display();
+        NavigationSnapshot data = new NavigationSnapshot.Builder().from(trip(0)).setAction("沿匝道行驶").build();
+        byte[] frame = encoder.encode(data, 0);
+        assertTrue((frame[NavigationProtocol.HEADER_SIZE + 2] & NavigationProtocol.FLAG_CUSTOM_ACTION) != 0);
+        assertTrue(display.receive(frame));
+        assertEquals("沿匝道行驶", display.action);
+    }
+
+    @Test
+    public void emptyRoadUsesNoDictionarySlot() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(NavigationProtocol.VERSION_1, 8);
+        Display display = new Display();
+        byte[] frame = encoder.encode(new NavigationSnapshot.Builder().from(trip(0)).setRoadName("").build(), 0);
+        assertEquals(0, frame[NavigationProtocol.HEADER_SIZE] & NavigationProtocol.FLAG_ROAD_DEFINITION);
+        assertTrue(display.receive(frame));
+        assertEquals("", display.roadName);
+    }
+
+    @Test
+    public void longStringsAreTruncatedOnCharacterBoundary() {
+        StringBuilder road = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            road.append('路');
+        }
+        byte[] bytes = NavigationProtocol.encodeString(road.toString());
+        // 每个汉字3字节，60字节正好20个字
+        assertEquals(NavigationProtocol.MAX_STRING_BYTES, bytes.length);
+        assertEquals(road.substring(0, 20), new String(bytes, StandardCharsets.UTF_8));
+
+        bytes = NavigationProtocol.encodeString("a" + road);
+        assertEquals(58, bytes.length);
+        assertEquals("a" + road.substring(0, 19), new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void parsesCapabilities() {
+        byte[] value = {NavigationProtocol.MAGIC, 2,
+                NavigationProtocol.versionAndType(NavigationProtocol.VERSION_1, NavigationProtocol.FRAME_CAPABILITIES), 9, 16};
+        NavigationProtocol.Capabilities capabilities = NavigationProtocol.parseCapabilities(value);
+        assertNotNull(capabilities);
+        // 对端版本更高时使用双方都支持的最高版本
+        assertEquals(NavigationProtocol.LATEST_VERSION, capabilities.getVersion());
+        assertEquals(16, capabilities.getRoadDictionaryCapacity());
+
+        value[3] = 0;
+        assertNull(NavigationProtocol.parseCapabilities(value));
+        assertNull(NavigationProtocol.parseCapabilities(new byte[]{'{', '}'}));
+    }
+}
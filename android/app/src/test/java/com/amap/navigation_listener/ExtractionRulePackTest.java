@@ -0,0 +1,110 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExtractionRulePackTest {
+
+    private static String pack(String name, String amapVersions) {
+        return "[pack]\nname=" + name + "\nversion=1\namapVersions=" + amapVersions + "\n"
+                + "[actions]\n直行\n[roadPrefixes]\n沿\n[roadSuffixes]\n路\n"
+                + "[distanceUnits]\n米=1\n[timeUnits]\n分钟=60\n[speedUnits]\nkm/h=1\n";
+    }
+
+    private static List<ExtractionRulePack> read(String... packs) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String pack : packs) {
+            text.append(pack);
+        }
+        return ExtractionRulePack.read(new StringReader(text.toString()));
+    }
+
+    @Test
+    public void versionRanges() throws IOException {
+        ExtractionRulePack pack = read(pack("旧版", "10.0-11.9, 12.1, 13.0-")).get(0);
+        assertEquals(Arrays.asList("10.0-11.9", "12.1", "13.0-"), pack.getAmapVersions());
+
+        assertFalse(pack.supportsVersion("9.9.9"));
+        assertTrue(pack.supportsVersion("10.0"));
+        assertTrue(pack.supportsVersion("10.5.3"));
+        // 上限按前缀比较，11.9包含11.9.x
+        assertTrue(pack.supportsVersion("11.9.20"));
+        assertFalse(pack.supportsVersion("11.10"));
+        assertFalse(pack.supportsVersion("12.0.9"));
+        assertTrue(pack.supportsVersion("12.1"));
+        assertTrue(pack.supportsVersion("12.1.0"));
+        assertFalse(pack.supportsVersion("12.2"));
+        // 只有下限
+        assertTrue(pack.supportsVersion("13.0"));
+        assertTrue(pack.supportsVersion("20.1.0.1234"));
+    }
+
+    @Test
+    public void versionPartsCompareNumerically() {
+        assertTrue(ExtractionRulePack.compareVersions("10.10", "10.9", false) > 0);
+        assertEquals(0, ExtractionRulePack.compareVersions("12.0", "12", false));
+        assertEquals(0, ExtractionRulePack.compareVersions("12.3.1", "12", true));
+        // 非数字后缀被忽略
+        assertEquals(0, ExtractionRulePack.compareVersions("12.3.1-beta", "12.3.1", false));
+    }
+
+    @Test
+    public void selectsFirstMatchingPack() throws IOException {
+        List<ExtractionRulePack> packs = read(pack("新版", "12.0-"), pack("通用", "*"), pack("旧版", "10.0-11.9"));
+        assertEquals("新版", ExtractionRulePack.select(packs, "12.5").getName());
+        assertEquals("旧版", ExtractionRulePack.select(packs, "11.2").getName());
+    }
+
+    @Test
+    public void fallsBackToWildcardPack() throws IOException {
+        List<ExtractionRulePack> packs = read(pack("新版", "12.0-"), pack("通用", "*"), pack("旧版", "10.0-11.9"));
+        // 没有匹配的版本或版本未知时使用声明了*的规则包，而不是列表中的第一个
+        assertEquals("通用", ExtractionRulePack.select(packs, "9.0").getName());
+        assertEquals("通用", ExtractionRulePack.select(packs, null).getName());
+        // *不参与版本匹配，排在前面也不会挡住具体版本的规则包
+        packs = read(pack("通用", "*"), pack("新版", "12.0-"));
+        assertEquals("新版", ExtractionRulePack.select(packs, "12.0").getName());
+    }
+
+    @Test
+    public void fallsBackToFirstPackWithoutWildcard() throws IOException {
+        List<ExtractionRulePack> packs = read(pack("新版", "12.0-"), pack("旧版", "10.0-11.9"));
+        assertEquals("新版", ExtractionRulePack.select(packs, "9.0").getName());
+    }
+
+    @Test
+    public void rejectsMalformedRules() {
+        String[] invalid = {
+                "直行\n",
+                pack("通用", "*") + "[unknown]\nx\n",
+                pack("通用", "*") + "[distanceUnits]\n公里=abc\n",
+                pack("通用", "*") + "[distanceUnits]\n公里=0\n",
+                "[pack]\nname=空\n[actions]\n直行\n",
+        };
+        for (String text : invalid) {
+            try {
+                ExtractionRulePack.read(new StringReader(text));
+                fail(text);
+            } catch (IOException expected) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void bundledDefaultIsWildcardPack() {
+        ExtractionRulePack pack = ExtractionRulePack.getDefault();
+        assertTrue(pack.getAmapVersions().contains("*"));
+        assertEquals("直行", pack.getActions().get(0));
+        assertEquals(1000.0, pack.getDistanceScales().get(pack.getDistanceUnits().indexOf("公里")), 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeywordAutomatonTest {
+
+    // 用自动机扫描文本，返回所有匹配的“结束位置:关键词ID”
+    private static List<String> scan(KeywordAutomaton automaton, String text) {
+        List<String> matches = new ArrayList<>();
+        int state = KeywordAutomaton.ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = automaton.step(state, text.charAt(i));
+            for (int s = automaton.firstMatch(state); s != KeywordAutomaton.NO_STATE; s = automaton.outputLink(s)) {
+                matches.add(i + ":" + automaton.keywordAt(s));
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    // 逐个关键词用indexOf查找，作为对照
+    private static List<String> naiveScan(String[] keywords, String text) {
+        List<String> matches = new ArrayList<>();
+        for (int id = 0; id < keywords.length; id++) {
+            for (int at = text.indexOf(keywords[id]); at >= 0; at = text.indexOf(keywords[id], at + 1)) {
+                matches.add((at + keywords[id].length() - 1) + ":" + id);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    @Test
+    public void findsOverlappingMatches() {
+        String[] keywords = {"he", "she", "his", "hers"};
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        String text = "ushers and his hershey";
+        assertEquals(naiveScan(keywords, text), scan(automaton, text));
+    }
+
+    @Test
+    public void matchesNaiveSearchOnChineseKeywords() {
+        String[] keywords = {"公里", "公里/小时", "千米", "米", "分钟", "分", "小时", "进入", "进入环岛", "环岛", "km", "km/h"};
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        String text = "导航 1.5公里 进入环岛 驶出环岛 剩余 1小时20分钟 60公里/小时 800米 42km/h kmkm";
+        assertEquals(naiveScan(keywords, text), scan(automaton, text));
+    }
+
+    @Test
+    public void nextFollowsTrieOnly() {
+        KeywordAutomaton automaton = new KeywordAutomaton("公里", "公里/小时");
+        int state = automaton.next(KeywordAutomaton.ROOT, '公');
+        state = automaton.next(state, '里');
+        assertEquals(0, automaton.keywordAt(state));
+        assertEquals(-1, automaton.keywordAt(automaton.next(state, '/')));
+        assertEquals(KeywordAutomaton.NO_STATE, automaton.next(state, '米'));
+        assertEquals(KeywordAutomaton.NO_STATE, automaton.next(KeywordAutomaton.ROOT, '里'));
+    }
+
+    @Test
+    public void stepFallsBackToRoot() {
+        KeywordAutomaton automaton = new KeywordAutomaton("左转", "右转");
+        assertEquals(KeywordAutomaton.ROOT, automaton.step(KeywordAutomaton.ROOT, '直'));
+        int state = automaton.step(KeywordAutomaton.ROOT, '左');
+        assertEquals(KeywordAutomaton.ROOT, automaton.step(state, '行'));
+    }
+
+    @Test
+    public void duplicateKeywordKeepsFirstId() {
+        KeywordAutomaton automaton = new KeywordAutomaton("直行", "左转", "直行");
+        assertEquals(3, automaton.getKeywordCount());
+        assertEquals(2, automaton.getKeywordLength(2));
+        assertEquals(Arrays.asList("1:0"), scan(automaton, "直行"));
+    }
+
+    @Test
+    public void emptyKeywordListNeverMatches() {
+        KeywordAutomaton automaton = new KeywordAutomaton();
+        assertEquals(0, automaton.getKeywordCount());
+        assertEquals(Collections.emptyList(), scan(automaton, "导航 300米 左转"));
+    }
+}
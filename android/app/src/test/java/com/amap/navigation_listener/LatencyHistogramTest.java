@@ -0,0 +1,74 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    private static final int BUCKET_COUNT = LatencyHistogram.indexOf(Long.MAX_VALUE) + 1;
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.upperBoundOf(value));
+        }
+        assertEquals(32, LatencyHistogram.indexOf(32));
+        assertEquals(63, LatencyHistogram.indexOf(63));
+        assertEquals(64, LatencyHistogram.indexOf(64));
+        assertEquals(64, LatencyHistogram.indexOf(65));
+        assertEquals(65, LatencyHistogram.upperBoundOf(64));
+    }
+
+    @Test
+    public void bucketsAreContiguousAndOrdered() {
+        // 每个桶的上界加1正好落在下一个桶
+        for (int i = 0; i + 1 < BUCKET_COUNT; i++) {
+            long upper = LatencyHistogram.upperBoundOf(i);
+            assertEquals(i, LatencyHistogram.indexOf(upper));
+            assertEquals(i + 1, LatencyHistogram.indexOf(upper + 1));
+        }
+    }
+
+    @Test
+    public void relativeErrorIsBounded() {
+        for (long value = 33; value < (1L << 40); value = value * 3 / 2 + 7) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(value));
+            assertTrue(upper >= value);
+            assertTrue(value + " -> " + upper, (upper - value) * 32 <= value);
+        }
+    }
+
+    @Test
+    public void hugeValuesGoToLastBucket() {
+        assertEquals(BUCKET_COUNT - 1, LatencyHistogram.indexOf(1L << 40));
+        assertEquals(BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500000, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(0));
+        long p50 = histogram.getPercentileNanos(50);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 33 / 32);
+        long p99 = histogram.getPercentileNanos(99);
+        assertTrue(p99 >= 990000 && p99 <= 990000 * 33 / 32);
+        // 不超过实际最大值
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+}
@@ -0,0 +1,85 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class NavigationChangeDetectorTest {
+
+    private static NavigationData data(int distance, int remainingTime, int speed) {
+        return new NavigationData("学院路", "直行", distance, remainingTime, speed, true);
+    }
+
+    @Test
+    public void firstUpdateReportsAllFields() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        assertEquals(NavigationData.ALL_FIELDS, detector.update(data(300, 60, 28)));
+        assertEquals(0, detector.update(data(300, 60, 28)));
+        assertEquals(2, detector.getChecks());
+        assertEquals(1, detector.getChanges());
+    }
+
+    @Test
+    public void ignoresChangesBelowThresholds() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.update(data(300, 60, 28));
+        // 距离差4米、速度差1km/h都低于默认阈值
+        assertEquals(0, detector.update(data(296, 60, 29)));
+        assertEquals(NavigationData.FIELD_DISTANCE, detector.update(data(295, 60, 29)));
+        // 上报后以新数据为基准
+        assertEquals(NavigationData.FIELD_SPEED, detector.update(data(295, 60, 31)));
+        assertEquals(NavigationData.FIELD_REMAINING_TIME, detector.update(data(295, 59, 31)));
+    }
+
+    @Test
+    public void slowDriftAccumulatesAgainstLastReport() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.update(data(300, 60, 28));
+        // 每次只变2米，但相对上一次上报的数据累积到阈值后上报
+        assertEquals(0, detector.update(data(298, 60, 28)));
+        assertEquals(0, detector.update(data(296, 60, 28)));
+        assertEquals(NavigationData.FIELD_DISTANCE, detector.update(data(294, 60, 28)));
+        assertEquals(0, detector.update(data(292, 60, 28)));
+    }
+
+    @Test
+    public void changesToAndFromZeroAlwaysReported() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.update(data(3, 60, 1));
+        // 到达动作点、停车
+        assertEquals(NavigationData.FIELD_DISTANCE | NavigationData.FIELD_SPEED, detector.update(data(0, 60, 0)));
+        // 重新起步
+        assertEquals(NavigationData.FIELD_SPEED, detector.update(data(0, 60, 1)));
+    }
+
+    @Test
+    public void textFieldsIgnoreThresholds() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.update(data(300, 60, 28));
+        NavigationData turn = data(300, 60, 28);
+        turn.setAction("左转");
+        assertEquals(NavigationData.FIELD_ACTION, detector.update(turn));
+        turn.setActive(false);
+        assertEquals(NavigationData.FIELD_ACTIVE, detector.update(turn));
+    }
+
+    @Test
+    public void thresholdsAreConfigurable() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.setDistanceThresholdMeters(50);
+        detector.setSpeedThresholdKmh(-3);
+        detector.update(data(300, 60, 28));
+        assertEquals(0, detector.update(data(260, 60, 28)));
+        assertEquals(NavigationData.FIELD_DISTANCE, detector.update(data(250, 60, 28)));
+        // 负数阈值按0处理，任何变化都上报
+        assertEquals(NavigationData.FIELD_SPEED, detector.update(data(250, 60, 29)));
+    }
+
+    @Test
+    public void resetReportsNextUpdate() {
+        NavigationChangeDetector detector = new NavigationChangeDetector();
+        detector.update(data(300, 60, 28));
+        detector.reset();
+        assertEquals(NavigationData.ALL_FIELDS, detector.update(data(300, 60, 28)));
+    }
+}
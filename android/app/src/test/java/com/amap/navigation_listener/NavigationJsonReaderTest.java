@@ -0,0 +1,203 @@
+package com.amap.navigation_listener;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NavigationJsonReaderTest {
+
+    private static NavigationJsonReader reader(String text) {
+        return new NavigationJsonReader(new StringReader(text));
+    }
+
+    // 读取一条记录，期望解析失败并返回错误信息
+    private static String expectError(NavigationJsonReader reader, NavigationData data) throws IOException {
+        try {
+            reader.next(data);
+            fail("应当解析失败");
+            return null;
+        } catch (JSONException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void readsAllFields() throws Exception {
+        NavigationJsonReader reader = reader("{\"roadName\":\"中关村北路\",\"action\":\"左转\",\"distance\":300,"
+                + "\"remainingTime\":720,\"speed\":42,\"isActive\":true}\n");
+        NavigationData data = new NavigationData();
+        assertEquals(NavigationData.ALL_FIELDS, reader.next(data));
+        assertEquals(new NavigationData("中关村北路", "左转", 300, 720, 42, true), data);
+        assertEquals(NavigationJsonReader.END_OF_INPUT, reader.next(data));
+    }
+
+    @Test
+    public void reportsOnlyPresentFields() throws Exception {
+        NavigationJsonReader reader = reader("{\"speed\": 36, \"isActive\": false}\n{}\n");
+        NavigationData data = new NavigationData();
+        assertEquals(NavigationData.FIELD_SPEED | NavigationData.FIELD_ACTIVE, reader.next(data));
+        assertEquals(36, data.getSpeed());
+        assertFalse(data.isActive());
+        assertEquals(0, reader.next(data));
+    }
+
+    @Test
+    public void skipsUnknownFieldsAndMismatchedTypes() throws Exception {
+        NavigationJsonReader reader = reader("{\"extra\":{\"a\":[1,2,{\"b\":null}],\"c\":\"}\"},"
+                + "\"roadName\":null,\"distance\":\"300\",\"speed\":-1.5e2,\"flag\":true,\"action\":\"直行\"}");
+        NavigationData data = new NavigationData();
+        assertEquals(NavigationData.FIELD_SPEED | NavigationData.FIELD_ACTION, reader.next(data));
+        // 数字按整数截断，指数部分只校验
+        assertEquals(-1, data.getSpeed());
+        assertEquals("直行", data.getAction());
+    }
+
+    @Test
+    public void decodesEscapes() throws Exception {
+        NavigationJsonReader reader = reader("{\"roadName\":\"\\u4e2d\\\"关\\\\村\\/\\t路\"}");
+        NavigationData data = new NavigationData();
+        reader.next(data);
+        assertEquals("中\"关\\村/\t路", data.getRoadName());
+    }
+
+    @Test
+    public void truncatesLongStrings() throws Exception {
+        StringBuilder json = new StringBuilder("{\"roadName\":\"");
+        for (int i = 0; i < 5000; i++) {
+            json.append('路');
+        }
+        json.append("\",\"speed\":10}");
+        NavigationData data = new NavigationData();
+        assertEquals(NavigationData.FIELD_ROAD_NAME | NavigationData.FIELD_SPEED, reader(json.toString()).next(data));
+        assertEquals(1024, data.getRoadName().length());
+        assertEquals(10, data.getSpeed());
+    }
+
+    @Test
+    public void clampsLargeNumbers() throws Exception {
+        NavigationData data = new NavigationData();
+        reader("{\"distance\":123456789012345}").next(data);
+        assertEquals(Integer.MAX_VALUE, data.getDistance());
+    }
+
+    @Test
+    public void recoversFromMalformedLines() throws Exception {
+        NavigationJsonReader reader = reader("{\"speed\":1}\n"
+                + "{\"speed\":2,,}\n"
+                + "not json\n"
+                + "{\"speed\":3}\n");
+        NavigationData data = new NavigationData();
+        assertEquals(NavigationData.FIELD_SPEED, reader.next(data));
+        assertEquals(1, data.getSpeed());
+
+        assertEquals("第2行: 应为字段名", expectError(reader, data));
+        reader.skipLine();
+        assertTrue(expectError(reader, data).startsWith("第3行: "));
+        reader.skipLine();
+
+        assertEquals(NavigationData.FIELD_SPEED, reader.next(data));
+        assertEquals(3, data.getSpeed());
+        assertEquals(4, reader.getLineNumber());
+        assertEquals(NavigationJsonReader.END_OF_INPUT, reader.next(data));
+    }
+
+    @Test
+    public void errorAtLineEndKeepsNextLine() throws Exception {
+        // 字符串在行尾未结束时，出错位置就是换行符，skipLine不能再吞掉下一行
+        NavigationJsonReader reader = reader("{\"roadName\":\"学院路\n{\"speed\":28}\n");
+        NavigationData data = new NavigationData();
+        assertEquals("第1行: 字符串未结束", expectError(reader, data));
+        reader.skipLine();
+        assertEquals(NavigationData.FIELD_SPEED, reader.next(data));
+        assertEquals(28, data.getSpeed());
+    }
+
+    @Test
+    public void truncatedLineDoesNotSwallowNextLine() throws Exception {
+        String log = "{\"roadName\":\"A路\",\"distance\":\n"
+                + "{\"roadName\":\"B路\",\"action\":\"直行\",\"distance\":300}\n"
+                + "{\"roadName\":\"C路\",\n"
+                + "{\"roadName\":\"D路\",\"action\":\"左转\",\"distance\":100}\n";
+        NavigationJsonReader reader = reader(log);
+        NavigationData data = new NavigationData();
+        assertEquals("第1行: 记录未结束", expectError(reader, data));
+        reader.skipLine();
+        reader.next(data);
+        assertEquals("B路", data.getRoadName());
+        assertEquals("第3行: 应为字段名", expectError(reader, data));
+        reader.skipLine();
+        reader.next(data);
+        assertEquals("D路", data.getRoadName());
+        assertEquals(NavigationJsonReader.END_OF_INPUT, reader.next(data));
+
+        // 转换结果与输入逐行对应
+        StringWriter out = new StringWriter();
+        NavigationLogConverter.Result result = new NavigationLogConverter().convert(new StringReader(log), out);
+        assertEquals(2, result.getRecords());
+        assertEquals(2, result.getErrors());
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("第1行: JSON解析错误", lines[0]);
+        assertTrue(lines[1], lines[1].contains("B路"));
+        assertEquals("第3行: JSON解析错误", lines[2]);
+        assertTrue(lines[3], lines[3].contains("D路"));
+    }
+
+    @Test
+    public void blankLinesBetweenRecordsAreSkipped() throws Exception {
+        NavigationJsonReader reader = reader("\n{\"speed\":1}\r\n\n  {\"speed\":2}\n");
+        NavigationData data = new NavigationData();
+        reader.next(data);
+        assertEquals(1, data.getSpeed());
+        reader.next(data);
+        assertEquals(2, data.getSpeed());
+        assertEquals(4, reader.getLineNumber());
+    }
+
+    @Test
+    public void truncatedInputFails() throws Exception {
+        NavigationJsonReader reader = reader("{\"speed\":");
+        assertEquals("第1行: 输入意外结束", expectError(reader, new NavigationData()));
+        reader.skipLine();
+        assertEquals(NavigationJsonReader.END_OF_INPUT, reader.next(new NavigationData()));
+    }
+
+    @Test
+    public void parallelConversionMatchesSequential() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            if (i % 17 == 5) {
+                log.append("{\"speed\":}\n");
+            } else {
+                log.append("{\"roadName\":\"辅路\",\"action\":\"直行\",\"distance\":").append(i * 10)
+                        .append(",\"remainingTime\":").append(600 - i).append(",\"speed\":40,\"isActive\":true}\n");
+            }
+        }
+
+        StringWriter sequential = new StringWriter();
+        NavigationLogConverter.Result expected = new NavigationLogConverter()
+                .convert(new StringReader(log.toString()), sequential);
+        assertEquals(94, expected.getRecords());
+        assertEquals(6, expected.getErrors());
+
+        // 块比错误间隔小，检查分块后的行号换算
+        StringWriter parallel = new StringWriter();
+        NavigationLogConverter.Result actual = new NavigationLogConverter(7)
+                .convert(new StringReader(log.toString()), parallel, 4);
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(sequential.toString(), parallel.toString());
+
+        String[] lines = parallel.toString().split("\n");
+        assertEquals(100, lines.length);
+        assertEquals("第6行: JSON解析错误", lines[5]);
+        assertEquals("第91行: JSON解析错误", lines[90]);
+    }
+}
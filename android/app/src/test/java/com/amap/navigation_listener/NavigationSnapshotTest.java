@@ -0,0 +1,92 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NavigationSnapshotTest {
+
+    @Test
+    public void packsNumbersWithoutInterference() {
+        NavigationSnapshot snapshot = new NavigationSnapshot.Builder()
+                .setRoadName("学院路")
+                .setAction("左转")
+                .setDistance(NavigationSnapshot.MAX_DISTANCE)
+                .setRemainingTime(1)
+                .setSpeed(NavigationSnapshot.MAX_SPEED)
+                .setActive(true)
+                .build();
+        assertEquals("学院路", snapshot.getRoadName());
+        assertEquals("左转", snapshot.getAction());
+        assertEquals(NavigationSnapshot.MAX_DISTANCE, snapshot.getDistance());
+        assertEquals(1, snapshot.getRemainingTime());
+        assertEquals(NavigationSnapshot.MAX_SPEED, snapshot.getSpeed());
+        assertTrue(snapshot.isActive());
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() {
+        NavigationSnapshot snapshot = new NavigationSnapshot.Builder()
+                .setDistance(Integer.MAX_VALUE)
+                .setRemainingTime(-5)
+                .setSpeed(1 << 20)
+                .build();
+        assertEquals(NavigationSnapshot.MAX_DISTANCE, snapshot.getDistance());
+        assertEquals(0, snapshot.getRemainingTime());
+        assertEquals(NavigationSnapshot.MAX_SPEED, snapshot.getSpeed());
+        assertFalse(snapshot.isActive());
+    }
+
+    @Test
+    public void overwritingFieldClearsPreviousBits() {
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setDistance(NavigationSnapshot.MAX_DISTANCE)
+                .setRemainingTime(NavigationSnapshot.MAX_REMAINING_TIME)
+                .setActive(true);
+        NavigationSnapshot snapshot = builder.setDistance(300).setActive(false).build();
+        assertEquals(300, snapshot.getDistance());
+        assertEquals(NavigationSnapshot.MAX_REMAINING_TIME, snapshot.getRemainingTime());
+        assertFalse(snapshot.isActive());
+    }
+
+    @Test
+    public void builderReusesUnchangedSnapshot() {
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder();
+        NavigationSnapshot first = builder.setRoadName("学院路").setDistance(300).build();
+        // 内容没有变化时不产生新对象
+        assertSame(first, builder.setRoadName(new String("学院路")).setDistance(300).build());
+
+        NavigationSnapshot second = builder.setDistance(290).build();
+        assertNotSame(first, second);
+        assertEquals(300, first.getDistance());
+        assertEquals(290, second.getDistance());
+    }
+
+    @Test
+    public void roundTripsThroughNavigationData() {
+        NavigationData data = new NavigationData("中关村北路", "右转", 120, 600, 35, true);
+        NavigationSnapshot snapshot = NavigationSnapshot.of(data);
+        assertEquals(snapshot, NavigationSnapshot.of(snapshot.toNavigationData()));
+        assertEquals(snapshot, new NavigationSnapshot.Builder().from(snapshot).build());
+
+        // 修改副本不影响快照
+        NavigationData copy = snapshot.toNavigationData();
+        copy.setDistance(10);
+        assertEquals(120, snapshot.getDistance());
+        assertNotEquals(snapshot, NavigationSnapshot.of(copy));
+    }
+
+    @Test
+    public void clearRestoresIdleState() {
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setRoadName("学院路").setDistance(300).setActive(true);
+        builder.build();
+        assertEquals(NavigationSnapshot.EMPTY, builder.clear().build());
+        assertFalse(NavigationSnapshot.EMPTY.isActive());
+    }
+}
@@ -0,0 +1,160 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NavigationTextExtractorTest {
+    // 与基准测试共用的录制语料，见app/build.gradle中的test资源目录
+    private static final String CORPUS = "/amap_screens.txt";
+
+    // 语料逐行的期望结果：道路|动作|距离|剩余时间|速度|是否导航
+    private static final String[] CORPUS_EXPECTED = {
+            "中关村北路|左转|300|720|42|true",
+            "中关村北路|左转|250|720|45|true",
+            "中关村北路|左转|180|660|38|true",
+            "中关村北路|左转|90|660|25|true",
+            "中关村北路|左转|20|660|18|true",
+            "中关村北路|直行|1200|600|36|true",
+            "中关村北路|直行|800|540|52|true",
+            "中关村北路|直行|500|480|58|true",
+            "北四环西路辅路|右转|150|480|31|true",
+            "北四环西路辅路|靠左|400|420|40|true",
+            "北四环西路|靠左|200|420|46|true",
+            "北四环西路|直行|2000|300|78|true",
+            "北四环西路|直行|1500|240|81|true",
+            "北四环西路|直行|900|180|76|true",
+            "学院路|进入环岛|100|120|22|true",
+            "学院路|驶出环岛|50|120|19|true",
+            "学院路|掉头|120|60|15|true",
+            "学院路|直行|300|60|28|true",
+            "未识别道路|继续行驶|50|0|8|true",
+            "未识别道路|继续行驶|15600|1680|0|true",
+            "未识别道路|继续行驶|38000|2700|0|true",
+            "未识别道路|继续行驶|0|0|0|false",
+            "未识别道路|继续行驶|0|0|0|false",
+            "京藏高速公路|直行|12000|2100|104|true",
+            "京藏高速公路|直行|10000|1980|108|true",
+            "京藏高速公路|直行|8000|1860|112|true",
+            "京藏高速公路|直行|39000|1920|95|true",
+            "未识别道路|靠右|1800|1800|99|true",
+            "未识别道路|靠右|600|1740|85|true",
+            "主路|右转|400|1680|52|true",
+            "辅路|直行|2400|1560|47|true",
+            "辅路|直行|2100|1620|12|true",
+            "辅路|直行|1900|1620|0|true",
+            "回龙观西路|右转|120|1200|33|true",
+            "回龙观西路|直行|3500|1080|60|true",
+            "文华路|左转|800|600|44|true",
+            "文华路|直行|150|540|37|true",
+    };
+
+    private final NavigationTextExtractor extractor = new NavigationTextExtractor();
+
+    private static List<String> loadCorpus() throws IOException {
+        InputStream in = NavigationTextExtractorTest.class.getResourceAsStream(CORPUS);
+        assertNotNull("缺少语料文件: " + CORPUS, in);
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    // 与NodeTextCollector一样，每段文本后跟一个空格
+                    lines.add(line + " ");
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String describe(NavigationData data) {
+        return data.getRoadName() + "|" + data.getAction() + "|" + data.getDistance() + "|"
+                + data.getRemainingTime() + "|" + data.getSpeed() + "|" + data.isActive();
+    }
+
+    @Test
+    public void extractsRecordedCorpus() throws IOException {
+        List<String> lines = loadCorpus();
+        assertEquals(CORPUS_EXPECTED.length, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(lines.get(i), CORPUS_EXPECTED[i], describe(extractor.extract(lines.get(i))));
+        }
+    }
+
+    @Test
+    public void reusedDataMatchesFreshExtraction() throws IOException {
+        // 解析线程复用同一个NavigationData，上一帧的字段不能残留
+        NavigationData reused = new NavigationData();
+        for (String line : loadCorpus()) {
+            extractor.extract(line, reused);
+            assertEquals(line, extractor.extract(line), reused);
+        }
+    }
+
+    @Test
+    public void reportsFoundFields() {
+        NavigationData data = new NavigationData();
+        int found = extractor.extract("导航 300米 左转 进入中关村北路 剩余 12分钟 5.2公里 42km/h 退出 ", data);
+        assertEquals(NavigationData.ALL_FIELDS, found);
+
+        found = extractor.extract("路线 推荐 方案一 28分钟 15.6公里 开始导航 ", data);
+        assertEquals(NavigationData.FIELD_DISTANCE | NavigationData.FIELD_REMAINING_TIME
+                | NavigationData.FIELD_ACTIVE, found);
+
+        found = extractor.extract("搜索 附近 加油站 停车场 ", data);
+        assertEquals(0, found);
+        assertFalse(data.isActive());
+    }
+
+    @Test
+    public void actionAndDistanceWithoutMarkerIsActive() {
+        NavigationData data = extractor.extract("300米 左转 ");
+        assertTrue(data.isActive());
+        assertFalse(extractor.extract("左转 ").isActive());
+    }
+
+    @Test
+    public void highestPriorityActionWins() {
+        // 动作按规则包中的顺序排优先级，与在文本中出现的先后无关
+        assertEquals("直行", extractor.extract("导航 左转 直行 300米 ").getAction());
+    }
+
+    @Test
+    public void adjacentTimeUnitsAccumulate() {
+        assertEquals(4800, extractor.extract("导航 剩余 1小时20分钟 ").getRemainingTime());
+        assertEquals(4800, extractor.extract("导航 剩余 1小时 20分钟 ").getRemainingTime());
+        // 隔着其他文字的时间不再累加
+        assertEquals(3600, extractor.extract("导航 剩余 1小时 预计通过 7分钟 ").getRemainingTime());
+    }
+
+    @Test
+    public void longerUnitOverridesPrefix() {
+        // “公里/小时”不能被先匹配到的“公里”当成距离
+        NavigationData data = extractor.extract("导航 60公里/小时 800米 ");
+        assertEquals(60, data.getSpeed());
+        assertEquals(800, data.getDistance());
+    }
+
+    @Test
+    public void roadNameEndsAtLastSuffix() {
+        assertEquals("京藏高速公路", extractor.extract("导航 沿京藏高速公路 直行 ").getRoadName());
+        assertEquals("北四环西路辅路", extractor.extract("导航 进入北四环西路辅路 ").getRoadName());
+    }
+
+    @Test
+    public void decimalDistanceIsScaled() {
+        assertEquals(1200, extractor.extract("导航 直行 1.2公里 ").getDistance());
+        assertEquals(1500, extractor.extract("导航 直行 1.5km ").getDistance());
+    }
+}
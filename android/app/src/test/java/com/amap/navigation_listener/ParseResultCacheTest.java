@@ -0,0 +1,116 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParseResultCacheTest {
+
+    private static NavigationData data(int distance) {
+        return new NavigationData("学院路", "直行", distance, 60, 28, true);
+    }
+
+    @Test
+    public void fingerprintDependsOnContent() {
+        String text = "导航 300米 左转 进入中关村北路 剩余 12分钟 ";
+        assertEquals(ParseResultCache.fingerprint(text), ParseResultCache.fingerprint(new StringBuilder(text)));
+        assertNotEquals(ParseResultCache.fingerprint(text), ParseResultCache.fingerprint(text.replace('3', '2')));
+        // 尾部不足4个字符的部分同样参与计算
+        assertNotEquals(ParseResultCache.fingerprint("导航 300米 "), ParseResultCache.fingerprint("导航 300米  "));
+        assertNotEquals(ParseResultCache.fingerprint("abcde"), ParseResultCache.fingerprint("abcdf"));
+    }
+
+    @Test
+    public void returnsCopyOfCachedResult() {
+        ParseResultCache cache = new ParseResultCache(4);
+        NavigationData stored = data(300);
+        cache.put(1, 10, stored);
+        // 缓存保存副本，调用方之后修改不影响缓存
+        stored.setDistance(0);
+
+        NavigationData result = new NavigationData();
+        assertTrue(cache.get(1, 10, result));
+        assertEquals(data(300), result);
+        // 指纹相同但长度不同视为未命中
+        assertFalse(cache.get(1, 11, result));
+        assertEquals("查询: 2, 命中: 1, 命中率: 50.0%, 条目: 1/4", cache.getStats());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ParseResultCache cache = new ParseResultCache(3);
+        NavigationData result = new NavigationData();
+        cache.put(1, 1, data(1));
+        cache.put(2, 1, data(2));
+        cache.put(3, 1, data(3));
+        assertTrue(cache.get(1, 1, result));
+
+        cache.put(4, 1, data(4));
+        assertEquals(3, cache.size());
+        assertFalse(cache.get(2, 1, result));
+        assertTrue(cache.get(1, 1, result));
+        assertTrue(cache.get(3, 1, result));
+        assertTrue(cache.get(4, 1, result));
+        assertEquals(4, result.getDistance());
+    }
+
+    @Test
+    public void updatingExistingKeyKeepsSize() {
+        ParseResultCache cache = new ParseResultCache(2);
+        NavigationData result = new NavigationData();
+        cache.put(1, 1, data(1));
+        cache.put(2, 1, data(2));
+        cache.put(1, 1, data(10));
+        assertEquals(2, cache.size());
+
+        // 更新也算使用，接下来淘汰的是2
+        cache.put(3, 1, data(3));
+        assertFalse(cache.get(2, 1, result));
+        assertTrue(cache.get(1, 1, result));
+        assertEquals(10, result.getDistance());
+    }
+
+    @Test
+    public void collidingBucketsSurviveEviction() {
+        // 容量1时所有键落在同一组桶里，反复淘汰检查链表维护
+        ParseResultCache cache = new ParseResultCache(1);
+        NavigationData result = new NavigationData();
+        for (long key = 0; key < 100; key++) {
+            cache.put(key << 32, 1, data((int) key));
+            assertTrue(cache.get(key << 32, 1, result));
+            assertEquals(key, result.getDistance());
+            if (key > 0) {
+                assertFalse(cache.get((key - 1) << 32, 1, result));
+            }
+        }
+
+        ParseResultCache larger = new ParseResultCache(8);
+        for (long key = 0; key < 1000; key++) {
+            larger.put(key * 16, 1, data((int) key));
+        }
+        for (long key = 992; key < 1000; key++) {
+            assertTrue(larger.get(key * 16, 1, result));
+            assertEquals(key, result.getDistance());
+        }
+        assertFalse(larger.get(991 * 16, 1, result));
+    }
+
+    @Test
+    public void clearDropsAllEntries() {
+        ParseResultCache cache = new ParseResultCache(4);
+        cache.put(1, 1, data(1));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(cache.get(1, 1, new NavigationData()));
+        cache.put(2, 1, data(2));
+        assertTrue(cache.get(2, 1, new NavigationData()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new ParseResultCache(0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.amap.navigation_listener;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TechnicalTermConverterTest {
+
+    // 逐个术语调用String.replace的旧实现，结果依赖术语顺序
+    private static String sequentialReplace(String text, String[] terms, String[] replacements) {
+        for (int i = 0; i < terms.length; i++) {
+            text = text.replace(terms[i], replacements[i]);
+        }
+        return text;
+    }
+
+    @Test
+    public void longestMatchWins() {
+        TechnicalTermConverter converter = new TechnicalTermConverter(
+                new String[]{"路", "主路", "主路口"},
+                new String[]{"道路", "主要道路", "主路的路口"});
+        assertEquals("主路的路口右转", converter.replace("主路口右转"));
+        assertEquals("沿主要道路直行", converter.replace("沿主路直行"));
+        assertEquals("进入道路", converter.replace("进入路"));
+    }
+
+    @Test
+    public void resultIndependentOfTermOrder() {
+        // “调头”的替换结果里含有“头”，“靠左”的替换结果里含有“左”
+        String[] terms = {"调头", "掉头", "靠左", "左边"};
+        String[] replacements = {"掉头往回走", "调头", "往左边车道走", "左侧"};
+        String[] reversedTerms = {"左边", "靠左", "掉头", "调头"};
+        String[] reversedReplacements = {"左侧", "往左边车道走", "调头", "掉头往回走"};
+        TechnicalTermConverter forward = new TechnicalTermConverter(terms, replacements);
+        TechnicalTermConverter reversed = new TechnicalTermConverter(reversedTerms, reversedReplacements);
+
+        String text = "前方调头后靠左，再掉头";
+        String expected = "前方掉头往回走后往左边车道走，再调头";
+        assertEquals(expected, forward.replace(text));
+        assertEquals(expected, reversed.replace(text));
+
+        // 旧实现会把“调头”的替换结果再次替换成“调头往回走”
+        assertNotEquals(expected, sequentialReplace(text, terms, replacements));
+    }
+
+    @Test
+    public void replacementsAreNotRescanned() {
+        TechnicalTermConverter converter = new TechnicalTermConverter(
+                new String[]{"偏航", "路线"},
+                new String[]{"偏离了规划路线", "线路"});
+        assertEquals("偏离了规划路线，重新选择线路", converter.replace("偏航，重新选择路线"));
+    }
+
+    @Test
+    public void unmatchedTextIsReturnedAsIs() {
+        TechnicalTermConverter converter = new TechnicalTermConverter(
+                new String[]{"匝道"}, new String[]{"上下高速的连接路"});
+        String text = "前方300米右转";
+        assertSame(text, converter.replace(text));
+        assertEquals("", converter.replace(""));
+        // 只匹配到术语前缀时原样保留
+        assertEquals("沿匝走", converter.replace("沿匝走"));
+        assertEquals("进入上下高速的连接路", converter.replace("进入匝道"));
+    }
+
+    @Test
+    public void readsDictionaryWithCommentsAndDuplicates() throws IOException {
+        TechnicalTermConverter converter = TechnicalTermConverter.read(new StringReader(
+                "# 注释\n\n限速=速度限制\n限速=限制速度\n并线=需要变换车道\n"));
+        assertEquals(3, converter.getTermCount());
+        // 重复的术语以先出现的为准
+        assertEquals("速度限制60，需要变换车道", converter.replace("限速60，并线"));
+    }
+
+    @Test
+    public void malformedLineReportsLineNumber() {
+        try {
+            TechnicalTermConverter.read(new StringReader("限速=速度限制\n=空术语\n"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("第2行"));
+        }
+    }
+
+    @Test
+    public void defaultDictionaryConvertsNavigationText() {
+        assertEquals("前面堵车了，正在重新计算路线，前方往右边车道走进入辅助道路",
+                TechnicalTermConverter.convert("前方拥堵，重新规划，前方靠右进入辅路"));
+    }
+}
@@ -0,0 +1,366 @@
+package com.amap.navigation_listener;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TripLogStoreTest {
+    private static final String[] ROADS = {"中关村北路", "北四环西路辅路", "京藏高速公路", ""};
+    private static final String[] ACTIONS = {"直行", "左转", "靠右"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 读出的一条数据
+    private static final class Entry {
+        final long timestamp;
+        final NavigationSnapshot data;
+
+        Entry(long timestamp, NavigationSnapshot data) {
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return timestamp == other.timestamp && data.equals(other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(timestamp) * 31 + data.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + ": " + data;
+        }
+    }
+
+    // 生成一段行程：大多数数据只有数值变化，偶尔换道路、动作或导航状态
+    private static List<Entry> trip(long seed, int count, long start) {
+        Random random = new Random(seed);
+        List<Entry> entries = new ArrayList<>();
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setRoadName(ROADS[0]).setAction(ACTIONS[0]).setActive(true)
+                .setDistance(5000).setRemainingTime(1800).setSpeed(40);
+        long timestamp = start;
+        for (int i = 0; i < count; i++) {
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(100000) : 200 + random.nextInt(800);
+            NavigationSnapshot last = builder.build();
+            if (random.nextInt(30) == 0) {
+                builder.setRoadName(ROADS[random.nextInt(ROADS.length)]);
+            }
+            if (random.nextInt(20) == 0) {
+                builder.setAction(ACTIONS[random.nextInt(ACTIONS.length)]);
+            }
+            if (random.nextInt(50) == 0) {
+                builder.setActive(!last.isActive());
+            }
+            builder.setDistance(Math.max(last.getDistance() - random.nextInt(50) + (random.nextInt(40) == 0 ? 100000 : 0), 0))
+                    .setRemainingTime(Math.max(last.getRemainingTime() + random.nextInt(11) - 6, 0))
+                    .setSpeed(random.nextInt(8) == 0 ? random.nextInt(200) : last.getSpeed());
+            entries.add(new Entry(timestamp, builder.build()));
+        }
+        return entries;
+    }
+
+    private static void appendAll(TripLogStore store, List<Entry> entries) throws IOException {
+        for (Entry entry : entries) {
+            store.append(entry.timestamp, entry.data);
+        }
+    }
+
+    private static List<Entry> readRange(TripLogStore store, long fromMs, long toMs) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int visited = store.read(fromMs, toMs, (timestamp, data) -> entries.add(new Entry(timestamp, data)));
+        assertEquals(entries.size(), visited);
+        return entries;
+    }
+
+    private static List<Entry> readAll(TripLogStore store) throws IOException {
+        return readRange(store, 0, Long.MAX_VALUE);
+    }
+
+    private File[] files(File directory, String suffix) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(suffix));
+        Arrays.sort(files);
+        return files;
+    }
+
+    @Test
+    public void readsBackExactlyAfterReopen() throws IOException {
+        File directory = folder.newFolder();
+        List<Entry> entries = trip(1, 3000, 1000000);
+
+        TripLogStore store = TripLogStore.open(directory);
+        appendAll(store, entries.subList(0, 1700));
+        assertEquals(entries.subList(0, 1700), readAll(store));
+        store.close();
+
+        // 重新打开后继续写入最后一个分段
+        store = TripLogStore.open(directory);
+        assertEquals(entries.get(1699).timestamp, store.getLastTimestamp());
+        appendAll(store, entries.subList(1700, entries.size()));
+        assertEquals(entries, readAll(store));
+        store.close();
+
+        store = TripLogStore.open(directory);
+        assertEquals(entries, readAll(store));
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(entries.get(0).timestamp, store.getFirstTimestamp());
+        store.close();
+    }
+
+    @Test
+    public void mergesRepeatedSamplesIntoOneRecord() throws IOException {
+        TripLogStore store = TripLogStore.open(folder.newFolder());
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setRoadName("辅路").setAction("直行").setActive(true).setRemainingTime(1500).setSpeed(30);
+        List<Entry> entries = new ArrayList<>();
+        // 每条增量5字节，增量区能装下7条
+        for (int i = 0; i < 8; i++) {
+            entries.add(new Entry(1000 + i * 500L, builder.setDistance(2000 - i * 5).build()));
+        }
+        appendAll(store, entries);
+        assertEquals(1, store.getRecordCount());
+
+        // 道路变化后另起一条记录
+        Entry turn = new Entry(7000, builder.setRoadName("主路").build());
+        store.append(turn.timestamp, turn.data);
+        entries.add(turn);
+        assertEquals(2, store.getRecordCount());
+        assertEquals(entries, readAll(store));
+        store.close();
+    }
+
+    @Test
+    public void fullDeltaAreaStartsNewRecord() throws IOException {
+        TripLogStore store = TripLogStore.open(folder.newFolder());
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setRoadName("京藏高速公路").setAction("直行").setActive(true);
+        List<Entry> entries = new ArrayList<>();
+        // 每条增量都是最大长度，一条记录只能装下首条和两条增量
+        for (int i = 0; i < 7; i++) {
+            boolean odd = i % 2 == 1;
+            entries.add(new Entry(1 + i * (long) Integer.MAX_VALUE, builder
+                    .setDistance(odd ? NavigationSnapshot.MAX_DISTANCE : 0)
+                    .setRemainingTime(odd ? 0 : NavigationSnapshot.MAX_REMAINING_TIME)
+                    .setSpeed(odd ? NavigationSnapshot.MAX_SPEED : 0)
+                    .build()));
+        }
+        appendAll(store, entries);
+        assertEquals(3, store.getRecordCount());
+        assertEquals(entries, readAll(store));
+        store.close();
+    }
+
+    @Test
+    public void deltasRoundTripAcrossRecordBoundaries() throws IOException {
+        File directory = folder.newFolder();
+        Random random = new Random(10);
+        NavigationSnapshot.Builder builder = new NavigationSnapshot.Builder()
+                .setRoadName("京藏高速公路").setAction("直行").setActive(true)
+                .setDistance(40000).setRemainingTime(2400).setSpeed(100);
+        // 道路和动作不变，全部数据都以增量写入，增量长度随机，记录边界落在不同位置
+        List<Entry> entries = new ArrayList<>();
+        long timestamp = 1000;
+        for (int i = 0; i < 500; i++) {
+            timestamp += 1 + random.nextInt(random.nextBoolean() ? 100 : 1000000);
+            NavigationSnapshot last = builder.build();
+            builder.setDistance(Math.max(last.getDistance() - random.nextInt(random.nextBoolean() ? 10 : 100000), 0))
+                    .setRemainingTime(Math.max(last.getRemainingTime() + random.nextInt(2000) - 1000, 0))
+                    .setSpeed(random.nextInt(200));
+            entries.add(new Entry(timestamp, builder.build()));
+        }
+
+        TripLogStore store = TripLogStore.open(directory);
+        appendAll(store, entries.subList(0, 251));
+        long records = store.getRecordCount();
+        assertTrue(records > 10 && records < 251);
+        store.close();
+
+        // 重新打开后在最后一条记录上继续追加增量
+        store = TripLogStore.open(directory);
+        appendAll(store, entries.subList(251, entries.size()));
+        assertEquals(entries, readAll(store));
+
+        // 查询范围的两端落在记录中间
+        for (int i = 0; i < 50; i++) {
+            int from = random.nextInt(entries.size());
+            int to = from + random.nextInt(entries.size() - from);
+            assertEquals(entries.subList(from, to),
+                    readRange(store, entries.get(from).timestamp, entries.get(to).timestamp));
+        }
+        store.close();
+    }
+
+    @Test
+    public void rollsOverAndDeletesOldestSegments() throws IOException {
+        File directory = folder.newFolder();
+        List<Entry> entries = trip(2, 2000, 5000);
+        TripLogStore store = TripLogStore.open(directory, 8, 3);
+        appendAll(store, entries);
+        assertEquals(3, store.getSegmentCount());
+
+        // 被删除的分段的字符串表一起删除
+        File[] logs = files(directory, ".log");
+        File[] tables = files(directory, ".str");
+        assertEquals(3, logs.length);
+        assertEquals(3, tables.length);
+        for (int i = 0; i < logs.length; i++) {
+            assertEquals(logs[i].getName().replace(".log", ".str"), tables[i].getName());
+        }
+
+        // 剩下的正好是最后写入的一段连续数据
+        List<Entry> kept = readAll(store);
+        assertTrue(kept.size() < entries.size());
+        assertEquals(entries.subList(entries.size() - kept.size(), entries.size()), kept);
+        assertEquals(kept.get(0).timestamp, store.getFirstTimestamp());
+        store.close();
+
+        store = TripLogStore.open(directory, 8, 3);
+        assertEquals(kept, readAll(store));
+        store.close();
+    }
+
+    @Test
+    public void readsTimeRange() throws IOException {
+        List<Entry> entries = trip(3, 1500, 1000);
+        TripLogStore store = TripLogStore.open(folder.newFolder(), 32, 100);
+        appendAll(store, entries);
+
+        Random random = new Random(4);
+        for (int i = 0; i < 50; i++) {
+            long from = entries.get(random.nextInt(entries.size())).timestamp + random.nextInt(3) - 1;
+            long to = from + random.nextInt(200000);
+            List<Entry> expected = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (entry.timestamp >= from && entry.timestamp < to) {
+                    expected.add(entry);
+                }
+            }
+            assertEquals(expected, readRange(store, from, to));
+        }
+        store.close();
+    }
+
+    @Test
+    public void visitorCanStopEarly() throws IOException {
+        TripLogStore store = TripLogStore.open(folder.newFolder());
+        appendAll(store, trip(5, 100, 1000));
+        int[] seen = new int[1];
+        assertEquals(10, store.read(0, Long.MAX_VALUE, (timestamp, data) -> ++seen[0] < 10));
+        store.close();
+    }
+
+    @Test
+    public void clampsTimestampsGoingBackwards() throws IOException {
+        TripLogStore store = TripLogStore.open(folder.newFolder());
+        NavigationSnapshot data = new NavigationSnapshot.Builder().setRoadName("学院路").setDistance(100).build();
+        store.append(5000, data);
+        store.append(3000, data);
+        List<Entry> entries = readAll(store);
+        assertEquals(2, entries.size());
+        assertEquals(5000, entries.get(1).timestamp);
+        store.close();
+    }
+
+    @Test
+    public void dropsTornStringTableTail() throws IOException {
+        File directory = folder.newFolder();
+        List<Entry> entries = trip(6, 200, 1000);
+        TripLogStore store = TripLogStore.open(directory);
+        appendAll(store, entries);
+        store.close();
+
+        // 模拟写字符串时崩溃：只写了长度
+        File table = files(directory, ".str")[0];
+        long length = table.length();
+        try (FileOutputStream out = new FileOutputStream(table, true)) {
+            out.write(new byte[]{0, 10, 'x'});
+        }
+
+        store = TripLogStore.open(directory);
+        assertEquals(length, table.length());
+        List<Entry> more = trip(7, 50, entries.get(entries.size() - 1).timestamp);
+        appendAll(store, more);
+        store.close();
+
+        store = TripLogStore.open(directory);
+        List<Entry> expected = new ArrayList<>(entries);
+        expected.addAll(more);
+        assertEquals(expected, readAll(store));
+        store.close();
+    }
+
+    @Test
+    public void sealedSegmentStringTablesAreReadOnce() throws IOException {
+        File directory = folder.newFolder();
+        List<Entry> entries = trip(11, 300, 1000);
+        TripLogStore store = TripLogStore.open(directory, 8, 100);
+        appendAll(store, entries);
+        assertEquals(entries, readAll(store));
+
+        // 不再写入的分段的字符串表已在内存中，读取时不再解析文件
+        File[] tables = files(directory, ".str");
+        assertTrue(tables.length > 2);
+        for (int i = 0; i < tables.length - 1; i++) {
+            try (RandomAccessFile raf = new RandomAccessFile(tables[i], "rw")) {
+                raf.setLength(0);
+            }
+        }
+        assertEquals(entries, readAll(store));
+        store.close();
+    }
+
+    @Test
+    public void deletesSegmentsWithUnknownFormat() throws IOException {
+        File directory = folder.newFolder();
+        TripLogStore store = TripLogStore.open(directory);
+        appendAll(store, trip(8, 20, 1000));
+        store.close();
+
+        File segment = files(directory, ".log")[0];
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.writeInt(0);
+        }
+
+        store = TripLogStore.open(directory);
+        assertEquals(0, store.getSegmentCount());
+        assertEquals(0, files(directory, ".log").length);
+        assertEquals(0, files(directory, ".str").length);
+        assertEquals(0, readAll(store).size());
+        store.close();
+    }
+
+    @Test
+    public void closedStoreRejectsAccess() throws IOException {
+        TripLogStore store = TripLogStore.open(folder.newFolder());
+        store.close();
+        store.close();
+        try {
+            store.append(1000, NavigationSnapshot.EMPTY);
+            fail("关闭后不能写入");
+        } catch (IOException expected) {
+            // 预期
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.amap.navigation_listener.benchmark;
+
+import com.amap.navigation_listener.BinaryFrameEncoder;
+import com.amap.navigation_listener.NavigationProtocol;
+import com.amap.navigation_listener.NavigationSnapshot;
+import com.amap.navigation_listener.NavigationTextExtractor;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// 发送前的帧编码：旧版JSON与二进制增量帧
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncodingBenchmark {
+    private NavigationSnapshot[] snapshots;
+    private int index;
+    private BinaryFrameEncoder encoder;
+    private long clock;
+
+    @Setup
+    public void setUp() {
+        String[] corpus = ScreenTextCorpus.load();
+        NavigationTextExtractor extractor = new NavigationTextExtractor();
+        snapshots = new NavigationSnapshot[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            snapshots[i] = NavigationSnapshot.of(extractor.extract(corpus[i]));
+        }
+        encoder = new BinaryFrameEncoder(NavigationProtocol.LATEST_VERSION, 16);
+    }
+
+    private NavigationSnapshot next() {
+        NavigationSnapshot data = snapshots[index];
+        index = index + 1 < snapshots.length ? index + 1 : 0;
+        return data;
+    }
+
+    @Benchmark
+    public byte[] json() throws JSONException {
+        return NavigationProtocol.encodeJson(next());
+    }
+
+    // 每秒约10帧的节奏，包含周期性的关键帧
+    @Benchmark
+    public byte[] binary() {
+        clock += 100;
+        return encoder.encode(next(), clock);
+    }
+}
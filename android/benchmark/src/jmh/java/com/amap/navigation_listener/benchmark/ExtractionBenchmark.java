@@ -0,0 +1,65 @@
+package com.amap.navigation_listener.benchmark;
+
+import com.amap.navigation_listener.NavigationData;
+import com.amap.navigation_listener.NavigationTextExtractor;
+import com.amap.navigation_listener.ParseResultCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// 页面文本提取，对应NavigationListenerService中每帧的解析
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExtractionBenchmark {
+    private String[] corpus;
+    private int index;
+    private NavigationTextExtractor extractor;
+    private NavigationData reused;
+    private ParseResultCache cache;
+
+    @Setup
+    public void setUp() {
+        corpus = ScreenTextCorpus.load();
+        extractor = new NavigationTextExtractor();
+        reused = new NavigationData();
+        cache = new ParseResultCache();
+    }
+
+    private String next() {
+        String text = corpus[index];
+        index = index + 1 < corpus.length ? index + 1 : 0;
+        return text;
+    }
+
+    @Benchmark
+    public NavigationData extractNew() {
+        return extractor.extract(next());
+    }
+
+    // 服务中复用同一个对象的路径
+    @Benchmark
+    public NavigationData extractInto() {
+        extractor.extract(next(), reused);
+        return reused;
+    }
+
+    // 经过解析缓存的路径；语料条数小于缓存容量，预热后全部命中
+    @Benchmark
+    public NavigationData extractCached() {
+        String text = next();
+        long fingerprint = ParseResultCache.fingerprint(text);
+        if (!cache.get(fingerprint, text.length(), reused)) {
+            extractor.extract(text, reused);
+            cache.put(fingerprint, text.length(), reused);
+        }
+        return reused;
+    }
+}
@@ -0,0 +1,38 @@
+package com.amap.navigation_listener.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// 录制的高德地图页面文本语料
+final class ScreenTextCorpus {
+    private static final String RESOURCE = "/amap_screens.txt";
+
+    private ScreenTextCorpus() {
+    }
+
+    static String[] load() {
+        InputStream in = ScreenTextCorpus.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("缺少语料文件: " + RESOURCE);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    // 与NodeTextCollector一样，每段文本后跟一个空格
+                    lines.add(line + " ");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,34 @@
+package com.amap.navigation_listener.benchmark;
+
+import com.amap.navigation_listener.TechnicalTermConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// 专业术语转换，对应DataConverterFragment.convertTechnicalTerms
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TermConversionBenchmark {
+    private String[] corpus;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        corpus = ScreenTextCorpus.load();
+    }
+
+    @Benchmark
+    public String convert() {
+        String text = corpus[index];
+        index = index + 1 < corpus.length ? index + 1 : 0;
+        return TechnicalTermConverter.convert(text);
+    }
+}
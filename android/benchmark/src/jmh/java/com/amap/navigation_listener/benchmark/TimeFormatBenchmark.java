@@ -0,0 +1,38 @@
+package com.amap.navigation_listener.benchmark;
+
+import com.amap.navigation_listener.TimeFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// 剩余时间格式化，覆盖秒、整分钟和分秒三种分支
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeFormatBenchmark {
+    private static final int[] SECONDS = {0, 45, 60, 125, 600, 1799, 3600, 7385};
+
+    private int index;
+
+    private int next() {
+        int seconds = SECONDS[index];
+        index = (index + 1) & (SECONDS.length - 1);
+        return seconds;
+    }
+
+    @Benchmark
+    public String spaced() {
+        return TimeFormatter.formatSpaced(next());
+    }
+
+    @Benchmark
+    public String compact() {
+        return TimeFormatter.formatCompact(next());
+    }
+}
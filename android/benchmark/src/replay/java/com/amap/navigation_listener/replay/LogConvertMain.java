@@ -0,0 +1,37 @@
+package com.amap.navigation_listener.replay;
+
+import com.amap.navigation_listener.NavigationLogConverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// 在桌面JVM上转换导航日志
+// 用法：LogConvertMain <输入文件> <输出文件> [线程数]
+public final class LogConvertMain {
+    private LogConvertMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("用法: LogConvertMain <输入文件> <输出文件> [线程数]");
+            System.exit(1);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        NavigationLogConverter.Result result;
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8))) {
+            result = new NavigationLogConverter().convert(reader, writer, threads);
+        }
+        System.out.println(result + ", 耗时: " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+}
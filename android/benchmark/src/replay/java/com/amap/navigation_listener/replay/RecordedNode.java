@@ -0,0 +1,55 @@
+package com.amap.navigation_listener.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 录制的无障碍节点树，只保留文本相关的内容，用于离线回放
+public class RecordedNode {
+    private final String text;
+    private final String contentDescription;
+    private final List<RecordedNode> children = new ArrayList<>();
+
+    public RecordedNode(String text, String contentDescription) {
+        this.text = text;
+        this.contentDescription = contentDescription;
+    }
+
+    public RecordedNode addChild(RecordedNode child) {
+        children.add(child);
+        return this;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getContentDescription() {
+        return contentDescription;
+    }
+
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public RecordedNode getChild(int i) {
+        return children.get(i);
+    }
+
+    // 与NodeTextCollector相同的前序遍历和分隔方式
+    public static void appendText(RecordedNode root, StringBuilder sb, ArrayList<RecordedNode> stack) {
+        stack.clear();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            RecordedNode node = stack.remove(stack.size() - 1);
+            if (node.text != null && !node.text.isEmpty()) {
+                sb.append(node.text).append(' ');
+            }
+            if (node.contentDescription != null && !node.contentDescription.isEmpty()) {
+                sb.append(node.contentDescription).append(' ');
+            }
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                stack.add(node.children.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.amap.navigation_listener.replay;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+// 离线回放入口
+// 用法：ReplayMain [会话文件] [倍速|max] [重复次数]，不指定文件时使用内置的示例会话
+public final class ReplayMain {
+    private static final String SAMPLE_SESSION = "/sample_session.tsv";
+
+    private ReplayMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String path = args.length > 0 && !args[0].isEmpty() ? args[0] : null;
+        double speed = args.length > 1 ? parseSpeed(args[1]) : SessionReplayEngine.SPEED_MAX;
+        int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        ReplaySession session;
+        try (Reader reader = new InputStreamReader(open(path), StandardCharsets.UTF_8)) {
+            session = ReplaySession.read(reader);
+        }
+        System.out.println("会话: " + (path != null ? path : SAMPLE_SESSION)
+                + ", 记录: " + session.size() + ", 倍速: " + describeSpeed(speed));
+
+        SessionReplayEngine engine = new SessionReplayEngine(SessionReplayEngine.NULL_SINK);
+        for (int i = 0; i < repeat; i++) {
+            System.out.println("#" + (i + 1) + " " + engine.replay(session, speed));
+        }
+    }
+
+    private static InputStream open(String path) throws IOException {
+        if (path != null) {
+            return new FileInputStream(path);
+        }
+        InputStream in = ReplayMain.class.getResourceAsStream(SAMPLE_SESSION);
+        if (in == null) {
+            throw new IOException("缺少示例会话: " + SAMPLE_SESSION);
+        }
+        return in;
+    }
+
+    private static double parseSpeed(String value) {
+        return "max".equalsIgnoreCase(value) ? SessionReplayEngine.SPEED_MAX : Double.parseDouble(value);
+    }
+
+    private static String describeSpeed(double speed) {
+        return speed == SessionReplayEngine.SPEED_MAX ? "max" : speed + "x";
+    }
+}
@@ -0,0 +1,111 @@
+package com.amap.navigation_listener.replay;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// 录制的导航会话
+// 文件每行一条记录：时间戳(ms) <TAB> 类型 <TAB> 内容，以#开头的行为注释
+//   T：收集后的页面文本
+//   N：节点树快照，JSON格式 {"t":文本,"d":内容描述,"c":[子节点...]}
+public class ReplaySession {
+    public static final char TYPE_TEXT = 'T';
+    public static final char TYPE_TREE = 'N';
+
+    public static class Record {
+        private final long timestampMs;
+        private final String text;
+        private final RecordedNode tree;
+
+        public Record(long timestampMs, String text, RecordedNode tree) {
+            this.timestampMs = timestampMs;
+            this.text = text;
+            this.tree = tree;
+        }
+
+        public long getTimestampMs() {
+            return timestampMs;
+        }
+
+        // 文本记录返回文本，节点树记录返回null
+        public String getText() {
+            return text;
+        }
+
+        public RecordedNode getTree() {
+            return tree;
+        }
+    }
+
+    private final List<Record> records = new ArrayList<>();
+
+    public void add(Record record) {
+        records.add(record);
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public Record get(int i) {
+        return records.get(i);
+    }
+
+    // 录制时长
+    public long getDurationMs() {
+        return records.isEmpty() ? 0
+                : records.get(records.size() - 1).timestampMs - records.get(0).timestampMs;
+    }
+
+    public static ReplaySession read(Reader in) throws IOException {
+        ReplaySession session = new ReplaySession();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int first = line.indexOf('\t');
+            int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+            if (second != first + 2) {
+                throw new IOException("第" + lineNumber + "行格式错误");
+            }
+
+            try {
+                long timestamp = Long.parseLong(line.substring(0, first));
+                char type = line.charAt(first + 1);
+                String content = line.substring(second + 1);
+                if (type == TYPE_TEXT) {
+                    session.add(new Record(timestamp, content, null));
+                } else if (type == TYPE_TREE) {
+                    session.add(new Record(timestamp, null, parseNode(new JSONObject(content))));
+                } else {
+                    throw new IOException("第" + lineNumber + "行类型未知: " + type);
+                }
+            } catch (NumberFormatException | JSONException e) {
+                throw new IOException("第" + lineNumber + "行解析失败", e);
+            }
+        }
+        return session;
+    }
+
+    private static RecordedNode parseNode(JSONObject json) throws JSONException {
+        RecordedNode node = new RecordedNode(json.optString("t", null), json.optString("d", null));
+        JSONArray children = json.optJSONArray("c");
+        if (children != null) {
+            for (int i = 0; i < children.length(); i++) {
+                node.addChild(parseNode(children.getJSONObject(i)));
+            }
+        }
+        return node;
+    }
+}
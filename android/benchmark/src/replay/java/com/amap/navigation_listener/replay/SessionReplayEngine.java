@@ -0,0 +1,191 @@
+package com.amap.navigation_listener.replay;
+
+import com.amap.navigation_listener.AdaptiveSendScheduler;
+import com.amap.navigation_listener.BinaryFrameEncoder;
+import com.amap.navigation_listener.NavigationParsePipeline;
+import com.amap.navigation_listener.NavigationProtocol;
+import com.amap.navigation_listener.NavigationSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// 录制会话回放引擎
+// 按原始时间间隔（可加速）把页面文本或节点树送入解析、变化检测和发送路径，
+// 统计端到端延迟分位数和每秒事件数；不依赖Android，蓝牙发送由FrameSink替代。
+// 发送调度器按录制时间驱动：两个事件之间到期的发送（心跳、巡航间隔）在到期时间补发，与服务中按截止时间定时一致
+public class SessionReplayEngine {
+    // 不等待，尽可能快地回放
+    public static final double SPEED_MAX = Double.POSITIVE_INFINITY;
+
+    public interface FrameSink {
+        void write(byte[] frame);
+    }
+
+    // 丢弃所有帧，只统计字节数
+    public static final FrameSink NULL_SINK = frame -> { };
+
+    private final FrameSink sink;
+    private final int protocolVersion;
+    private final int roadDictionaryCapacity;
+
+    public SessionReplayEngine(FrameSink sink) {
+        this(sink, NavigationProtocol.LATEST_VERSION, 16);
+    }
+
+    public SessionReplayEngine(FrameSink sink, int protocolVersion, int roadDictionaryCapacity) {
+        this.sink = sink;
+        this.protocolVersion = protocolVersion;
+        this.roadDictionaryCapacity = roadDictionaryCapacity;
+    }
+
+    // speed为回放倍速，1表示按录制时的节奏
+    public Report replay(ReplaySession session, double speed) throws InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("倍速必须大于0: " + speed);
+        }
+
+        // 每次回放都从全新状态开始，结果可重复
+        NavigationParsePipeline pipeline = new NavigationParsePipeline();
+        AdaptiveSendScheduler sendScheduler = new AdaptiveSendScheduler();
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder(protocolVersion, roadDictionaryCapacity);
+        StringBuilder textBuffer = new StringBuilder(1024);
+        ArrayList<RecordedNode> nodeStack = new ArrayList<>();
+
+        Report report = new Report(session.size());
+        if (session.size() == 0) {
+            return report;
+        }
+
+        long firstTimestamp = session.get(0).getTimestampMs();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < session.size(); i++) {
+            ReplaySession.Record record = session.get(i);
+            long sessionTime = record.getTimestampMs() - firstTimestamp;
+
+            // 按倍速等待到该事件的预定时间；落后时不等待，延迟从预定时间算起，排队时间也计入
+            long dueNanos = startNanos;
+            if (speed != SPEED_MAX) {
+                dueNanos += (long) (sessionTime * 1_000_000L / speed);
+                long wait = dueNanos - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                }
+            }
+            long eventStart = speed == SPEED_MAX ? System.nanoTime() : dueNanos;
+
+            // 上一个事件之后到期的发送，服务中由定时任务在截止时间触发，不计入事件延迟
+            long deadline;
+            while ((deadline = sendScheduler.nextDeadline()) < sessionTime) {
+                send(sendScheduler.poll(deadline), deadline, encoder, report);
+                report.scheduledSends++;
+            }
+
+            CharSequence text = record.getText();
+            if (text == null) {
+                textBuffer.setLength(0);
+                RecordedNode.appendText(record.getTree(), textBuffer, nodeStack);
+                text = textBuffer;
+            }
+
+            NavigationSnapshot snapshot = pipeline.process(text);
+            if (snapshot != null) {
+                report.changes++;
+                sendScheduler.submit(snapshot);
+            }
+
+            // 发送节奏使用录制时间，与倍速无关
+            send(sendScheduler.poll(sessionTime), sessionTime, encoder, report);
+
+            report.record(System.nanoTime() - eventStart);
+        }
+        report.elapsedNanos = System.nanoTime() - startNanos;
+        report.sessionDurationMs = session.getDurationMs();
+        return report;
+    }
+
+    private void send(NavigationSnapshot data, long sessionTime, BinaryFrameEncoder encoder, Report report) {
+        if (data == null) {
+            return;
+        }
+        byte[] frame = encoder.encode(data, sessionTime);
+        sink.write(frame);
+        report.framesSent++;
+        report.bytesSent += frame.length;
+    }
+
+    // 回放结果
+    public static class Report {
+        private final long[] latencies;
+        private int events;
+        private boolean sorted;
+        long changes;
+        long framesSent;
+        // 其中在两个事件之间到期的发送
+        long scheduledSends;
+        long bytesSent;
+        long elapsedNanos;
+        long sessionDurationMs;
+
+        Report(int capacity) {
+            latencies = new long[capacity];
+        }
+
+        void record(long latencyNanos) {
+            latencies[events++] = latencyNanos;
+            sorted = false;
+        }
+
+        public int getEvents() {
+            return events;
+        }
+
+        public long getChanges() {
+            return changes;
+        }
+
+        public long getFramesSent() {
+            return framesSent;
+        }
+
+        public long getScheduledSends() {
+            return scheduledSends;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public double getEventsPerSecond() {
+            return elapsedNanos > 0 ? events * 1e9 / elapsedNanos : 0;
+        }
+
+        // p取0~100，返回纳秒
+        public long getLatencyPercentile(double p) {
+            if (events == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(latencies, 0, events);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(p / 100.0 * events) - 1;
+            return latencies[Math.min(Math.max(index, 0), events - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return "事件: " + events +
+                    ", 变化: " + changes +
+                    ", 发送帧: " + framesSent +
+                    ", 其中定时: " + scheduledSends +
+                    ", 发送字节: " + bytesSent +
+                    ", 录制时长: " + sessionDurationMs + "ms" +
+                    ", 回放耗时: " + elapsedNanos / 1_000_000 + "ms" +
+                    String.format(", 事件/秒: %.1f", getEventsPerSecond()) +
+                    ", 延迟 p50: " + getLatencyPercentile(50) / 1000 + "us" +
+                    ", p90: " + getLatencyPercentile(90) / 1000 + "us" +
+                    ", p99: " + getLatencyPercentile(99) / 1000 + "us" +
+                    ", 最大: " + getLatencyPercentile(100) / 1000 + "us";
+        }
+    }
+}
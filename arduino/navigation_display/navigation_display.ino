@@ -9,19 +9,70 @@
 #define SERVICE_UUID        "4fafc201-1fb5-459e-8fcc-c5c9c331914b"
 #define CHARACTERISTIC_UUID "beb5483e-36e1-4688-b7f5-ea07361b26a8"
 
+// 二进制协议定义（与Android端NavigationProtocol保持一致）
+#define PROTO_MAGIC          0xA5
+#define PROTO_VERSION        2
+#define PROTO_HEADER_SIZE    3
+#define FRAME_FULL           0x1
+#define FRAME_DELTA          0x2
+#define FRAME_RESYNC         0x3
+#define FRAME_CAPABILITIES   0xF
+#define FLAG_ACTIVE          0x01
+#define FLAG_ROAD_DEFINITION 0x02
+#define FLAG_CUSTOM_ACTION   0x04
+#define ROAD_DICT_SIZE       16
+
+// 增量帧字段掩码
+#define FIELD_ROAD_NAME      0x01
+#define FIELD_ACTION         0x02
+#define FIELD_DISTANCE       0x04
+#define FIELD_REMAINING_TIME 0x08
+#define FIELD_SPEED          0x10
+
+// 除字段掩码外的重绘区域
+#define DIRTY_STATUS         0x20
+#define DIRTY_ALL            0x3F
+
+// 字段区域高度：2倍字号的一行文字（16像素）加上行间留白
+#define FIELD_ROW_HEIGHT     20
+
+// 两次重新同步请求的最小间隔（毫秒）
+#define RESYNC_INTERVAL_MS   500
+
+// 接收环形缓冲区大小（必须是2的幂），可容纳两次最大MTU的写入
+#define RX_RING_SIZE         1024
+// JSON行缓冲区大小，超长的行整行丢弃
+#define LINE_BUFFER_SIZE     256
+// 字符串字段的缓冲区大小（UTF-8字节数，含结尾的0），超长时按字符截断
+#define ROAD_NAME_SIZE       96
+#define ACTION_SIZE          48
+// 没有收到数据时loop()最长等待的时间（毫秒）
+#define LOOP_IDLE_MS         100
+
+// 调试日志开关：置1时输出每个数据包的接收和解析过程
+#define NAV_DEBUG            0
+
+#if NAV_DEBUG
+#define DEBUG_PRINT(x)       Serial.print(x)
+#define DEBUG_PRINTLN(x)     Serial.println(x)
+#else
+#define DEBUG_PRINT(x)
+#define DEBUG_PRINTLN(x)
+#endif
+
 // TFT屏幕引脚定义（根据实际连接修改）
 TFT_eSPI tft = TFT_eSPI();
 
 // BLE服务器相关
 BLEServer* pServer = NULL;
 BLECharacteristic* pCharacteristic = NULL;
-bool deviceConnected = false;
+volatile bool deviceConnected = false;
 bool oldDeviceConnected = false;
 
-// 导航数据结构
+// 导航数据结构，字符串为定长数组，解析时直接写入，不分配堆内存
 struct NavigationData {
-  String roadName;
-  String action;
+  char roadName[ROAD_NAME_SIZE];
+  char action[ACTION_SIZE];
   int distance;
   int remainingTime;
   int speed;
@@ -30,38 +81,95 @@ struct NavigationData {
 
 NavigationData navData;
 
-// 接收缓冲区
-String receivedData = "";
+// 屏幕上当前显示的内容，用于判断哪些区域需要重绘
+NavigationData shownData;
+bool shownConnected = false;
+bool layoutDrawn = false;
+
+// 字段值所在的区域（横屏320x240），区域之间互不重叠，最下一行的底边不超过屏幕高度
+struct Region {
+  int16_t x;
+  int16_t y;
+  int16_t w;
+  int16_t h;
+};
+
+const Region REGION_ROAD           = {10, 85, 310, FIELD_ROW_HEIGHT};
+const Region REGION_ACTION         = {10, 140, 310, FIELD_ROW_HEIGHT};
+const Region REGION_DISTANCE       = {80, 165, 240, FIELD_ROW_HEIGHT};
+const Region REGION_REMAINING_TIME = {120, 190, 200, FIELD_ROW_HEIGHT};
+const Region REGION_SPEED          = {120, 215, 200, FIELD_ROW_HEIGHT};
+const Region REGION_STATUS         = {260, 14, 60, 24};
+
+// 字段绘制用的离屏缓冲区，按最宽的区域分配一次，所有字段共用
+TFT_eSprite fieldSprite = TFT_eSprite(&tft);
+bool spriteReady = false;
+
+// 接收环形缓冲区：BLE回调只把收到的数据复制进来并唤醒loop()，分帧和解析都在loop()中进行。
+// 下标自由递增，取模得到位置；rxHead只由回调修改，rxTail只由loop()修改
+uint8_t rxRing[RX_RING_SIZE];
+volatile uint32_t rxHead = 0;
+volatile uint32_t rxTail = 0;
+// 缓冲区满时丢弃整次写入并置位，loop()处理完之前的数据后重新同步，期间不再接收
+volatile bool rxOverflow = false;
+// 新连接时旧连接剩余的数据作废，loop()从rxResetAt开始继续读取
+volatile bool rxResetPending = false;
+volatile uint32_t rxResetAt = 0;
+uint32_t rxDropped = 0;
+portMUX_TYPE rxMux = portMUX_INITIALIZER_UNLOCKED;
+TaskHandle_t loopTask = NULL;
+
+// JSON行缓冲区
+char lineBuffer[LINE_BUFFER_SIZE];
+size_t lineLength = 0;
+bool lineOverflow = false;
+
+// 二进制帧缓冲区
+uint8_t frameBuffer[PROTO_HEADER_SIZE + 255];
+size_t frameLength = 0;
+
+// 动作编码表，顺序必须与Android端一致
+const char* ACTION_CODES[] = {
+  "", "直行", "左转", "右转", "掉头", "靠左", "靠右", "进入环岛", "驶出环岛", "继续行驶", "等待导航开始"
+};
+const int ACTION_CODE_COUNT = sizeof(ACTION_CODES) / sizeof(ACTION_CODES[0]);
+
+// 道路名称字典，下标即道路ID（0表示无）
+char roadDictionary[ROAD_DICT_SIZE + 1][ROAD_NAME_SIZE];
+
+// 增量协议状态
+bool haveKeyframe = false;
+uint8_t lastSequence = 0;
+unsigned long lastResyncRequest = 0;
 
 class MyServerCallbacks: public BLEServerCallbacks {
     void onConnect(BLEServer* pServer) {
       deviceConnected = true;
       Serial.println("设备已连接");
+      // 协议状态归loop()所有，这里只标记，由loop()在读取新连接的数据前清空
+      portENTER_CRITICAL(&rxMux);
+      rxResetAt = rxHead;
+      rxResetPending = true;
+      rxOverflow = false;
+      portEXIT_CRITICAL(&rxMux);
+      publishCapabilities();
+      wakeLoop();
     };
 
     void onDisconnect(BLEServer* pServer) {
       deviceConnected = false;
       Serial.println("设备已断开");
+      wakeLoop();
     }
 };
 
 class MyCallbacks: public BLECharacteristicCallbacks {
+    // 运行在BLE任务中：直接从特征值的缓冲区复制到环形缓冲区，不做任何解析和打印
     void onWrite(BLECharacteristic *pCharacteristic) {
-      std::string rxValue = pCharacteristic->getValue();
-
-      if (rxValue.length() > 0) {
-        Serial.print("收到数据: ");
-        for (int i = 0; i < rxValue.length(); i++) {
-          Serial.print(rxValue[i]);
-          receivedData += rxValue[i];
-        }
-        Serial.println();
-
-        // 检查是否收到完整的数据包（以换行符结束）
-        if (receivedData.indexOf('\n') != -1) {
-          parseNavigationData(receivedData);
-          receivedData = "";
-        }
+      size_t length = pCharacteristic->getLength();
+      if (length > 0) {
+        pushReceived(pCharacteristic->getData(), length);
+        wakeLoop();
       }
     }
 };
@@ -69,6 +177,7 @@ class MyCallbacks: public BLECharacteristicCallbacks {
 void setup() {
   Serial.begin(115200);
   Serial.println("ESP32导航显示系统启动");
+  loopTask = xTaskGetCurrentTaskHandle();
 
   // 初始化TFT屏幕
   tft.init();
@@ -79,6 +188,13 @@ void setup() {
   tft.setCursor(10, 10);
   tft.print("导航显示系统");
 
+  // 16位色的精灵约12KB，内存不足时createSprite返回NULL，改为直接绘制
+  fieldSprite.setColorDepth(16);
+  spriteReady = fieldSprite.createSprite(REGION_ROAD.w, FIELD_ROW_HEIGHT) != NULL;
+  if (!spriteReady) {
+    Serial.println("精灵分配失败，使用直接绘制");
+  }
+
   // 初始化BLE
   BLEDevice::init("ESP32_Navigation_Display");
   pServer = BLEDevice::createServer();
@@ -90,12 +206,14 @@ void setup() {
                       CHARACTERISTIC_UUID,
                       BLECharacteristic::PROPERTY_READ |
                       BLECharacteristic::PROPERTY_WRITE |
+                      BLECharacteristic::PROPERTY_WRITE_NR |
                       BLECharacteristic::PROPERTY_NOTIFY |
                       BLECharacteristic::PROPERTY_INDICATE
                     );
 
   pCharacteristic->setCallbacks(new MyCallbacks());
   pCharacteristic->addDescriptor(new BLE2902());
+  publishCapabilities();
 
   pService->start();
 
@@ -109,8 +227,8 @@ void setup() {
   Serial.println("等待设备连接...");
 
   // 初始化导航数据
-  navData.roadName = "未开始导航";
-  navData.action = "等待导航开始";
+  copyString(navData.roadName, sizeof(navData.roadName), "未开始导航", strlen("未开始导航"));
+  copyString(navData.action, sizeof(navData.action), "等待导航开始", strlen("等待导航开始"));
   navData.distance = 0;
   navData.remainingTime = 0;
   navData.speed = 0;
@@ -120,6 +238,11 @@ void setup() {
 }
 
 void loop() {
+  // 等待BLE回调唤醒，没有数据时也定期醒来检查连接状态
+  ulTaskNotifyTake(pdTRUE, pdMS_TO_TICKS(LOOP_IDLE_MS));
+
+  processReceived();
+
   // 处理BLE连接状态变化
   if (!deviceConnected && oldDeviceConnected) {
     delay(500);
@@ -131,55 +254,490 @@ void loop() {
     oldDeviceConnected = deviceConnected;
   }
 
-  delay(100);
+  // 只重绘有变化的区域，没有变化时不访问屏幕
+  updateDisplay();
+}
+
+void wakeLoop() {
+  if (loopTask != NULL) {
+    xTaskNotifyGive(loopTask);
+  }
+}
+
+// 在BLE任务中调用：把一次写入的数据整体放入环形缓冲区，放不下时整次丢弃
+void pushReceived(const uint8_t* data, size_t length) {
+  portENTER_CRITICAL(&rxMux);
+  uint32_t head = rxHead;
+  if (rxOverflow || length > RX_RING_SIZE - (head - rxTail)) {
+    rxOverflow = true;
+    rxDropped += length;
+  } else {
+    size_t offset = head & (RX_RING_SIZE - 1);
+    size_t first = RX_RING_SIZE - offset;
+    if (first > length) {
+      first = length;
+    }
+    memcpy(rxRing + offset, data, first);
+    memcpy(rxRing, data + first, length - first);
+    rxHead = head + length;
+  }
+  portEXIT_CRITICAL(&rxMux);
+}
+
+// 在loop()中调用：把环形缓冲区中的数据逐字节交给分帧器
+void processReceived() {
+  portENTER_CRITICAL(&rxMux);
+  bool reset = rxResetPending;
+  rxResetPending = false;
+  uint32_t tail = rxTail;
+  if (reset && (int32_t)(rxResetAt - tail) > 0) {
+    tail = rxResetAt;
+  }
+  uint32_t head = rxHead;
+  // 溢出后回调不再写入，此时的head就是丢失数据的位置
+  bool overflow = rxOverflow;
+  portEXIT_CRITICAL(&rxMux);
+
+  if (reset) {
+    resetProtocolState();
+  }
+
+  if (head != tail) {
+    DEBUG_PRINT("收到数据: ");
+    DEBUG_PRINT(head - tail);
+    DEBUG_PRINTLN(" 字节");
+  }
+  // 回调只写入空闲区域，tail到head之间的数据可以不加锁读取
+  while (tail != head) {
+    feedByte(rxRing[tail & (RX_RING_SIZE - 1)]);
+    tail++;
+  }
+
+  portENTER_CRITICAL(&rxMux);
+  rxTail = tail;
+  if (overflow) {
+    rxOverflow = false;
+  }
+  uint32_t dropped = rxDropped;
+  portEXIT_CRITICAL(&rxMux);
+
+  if (overflow) {
+    // 丢失的数据可能截断了正在接收的帧，之后的增量帧也无法应用
+    Serial.print("接收缓冲区溢出，累计丢弃 ");
+    Serial.print(dropped);
+    Serial.println(" 字节");
+    frameLength = 0;
+    lineLength = 0;
+    lineOverflow = true;
+    haveKeyframe = false;
+    requestResync();
+  }
+}
+
+// 分帧：以魔数开头的是二进制帧，按帧头中的长度收齐后解析；其余按行收集JSON
+void feedByte(uint8_t b) {
+  if (frameLength > 0 || (lineLength == 0 && !lineOverflow && b == PROTO_MAGIC)) {
+    frameBuffer[frameLength++] = b;
+    if (frameLength >= PROTO_HEADER_SIZE &&
+        frameLength == PROTO_HEADER_SIZE + frameBuffer[1]) {
+      DEBUG_PRINT("[二进制帧 ");
+      DEBUG_PRINT(frameLength);
+      DEBUG_PRINTLN(" 字节]");
+      parseBinaryFrame(frameBuffer, frameLength);
+      frameLength = 0;
+    }
+    return;
+  }
+
+  // 检查是否收到完整的数据包（以换行符结束）
+  if (b == '\n') {
+    if (!lineOverflow) {
+      lineBuffer[lineLength] = '\0';
+      parseNavigationData(lineBuffer, lineLength);
+    }
+    lineLength = 0;
+    lineOverflow = false;
+    return;
+  }
+  if (lineLength < LINE_BUFFER_SIZE - 1) {
+    lineBuffer[lineLength++] = (char)b;
+  } else {
+    lineOverflow = true;
+  }
 }
 
 // 解析导航数据（JSON格式）
-void parseNavigationData(String data) {
-  Serial.println("解析导航数据: " + data);
+// 单遍扫描一行扁平的JSON对象，识别的字段直接写入navData，未知的键跳过
+void parseNavigationData(const char* line, size_t length) {
+  DEBUG_PRINT("解析导航数据: ");
+  DEBUG_PRINTLN(line);
+
+  bool active = true;
+  size_t pos = 0;
+  while (pos < length) {
+    if (line[pos] != '"') {
+      pos++;
+      continue;
+    }
+
+    // 键
+    const char* key = line + pos + 1;
+    size_t keyLength = 0;
+    pos++;
+    while (pos < length && line[pos] != '"') {
+      pos++;
+      keyLength++;
+    }
+    pos++;
+    while (pos < length && line[pos] == ' ') {
+      pos++;
+    }
+    if (pos >= length || line[pos] != ':') {
+      continue;
+    }
+    pos++;
+    while (pos < length && line[pos] == ' ') {
+      pos++;
+    }
+    if (pos >= length) {
+      break;
+    }
+
+    // 值
+    char c = line[pos];
+    if (c == '"') {
+      if (keyEquals(key, keyLength, "roadName")) {
+        readJsonString(line, length, pos, navData.roadName, sizeof(navData.roadName));
+      } else if (keyEquals(key, keyLength, "action")) {
+        readJsonString(line, length, pos, navData.action, sizeof(navData.action));
+      } else {
+        readJsonString(line, length, pos, NULL, 0);
+      }
+    } else if (c == 't' || c == 'f') {
+      if (keyEquals(key, keyLength, "isActive")) {
+        active = c == 't';
+      }
+      while (pos < length && line[pos] >= 'a' && line[pos] <= 'z') {
+        pos++;
+      }
+    } else {
+      int value = readJsonInt(line, length, pos);
+      if (keyEquals(key, keyLength, "distance")) {
+        navData.distance = value;
+      } else if (keyEquals(key, keyLength, "remainingTime")) {
+        navData.remainingTime = value;
+      } else if (keyEquals(key, keyLength, "speed")) {
+        navData.speed = value;
+      }
+    }
+  }
+
+  // 旧版手机端不发送isActive，此时按正在导航处理
+  navData.isActive = active;
+}
+
+bool keyEquals(const char* key, size_t keyLength, const char* name) {
+  return strlen(name) == keyLength && memcmp(key, name, keyLength) == 0;
+}
 
-  // 简单的JSON解析
-  if (data.indexOf("\"roadName\":") != -1) {
-    int start = data.indexOf("\"roadName\":") + 11;
-    int end = data.indexOf("\"", start);
-    navData.roadName = data.substring(start, end);
+// pos指向开头的引号，读到结尾的引号之后；转义字符只取反斜杠后的字符。out为NULL时只跳过
+void readJsonString(const char* line, size_t length, size_t& pos, char* out, size_t size) {
+  size_t n = 0;
+  bool truncated = false;
+  pos++;
+  while (pos < length && line[pos] != '"') {
+    char c = line[pos++];
+    if (c == '\\' && pos < length) {
+      c = line[pos++];
+    }
+    if (out != NULL) {
+      if (n + 1 < size) {
+        out[n++] = c;
+      } else {
+        truncated = true;
+      }
+    }
   }
+  pos++;
+  if (out != NULL) {
+    out[truncated ? utf8Trim(out, n) : n] = '\0';
+  }
+}
 
-  if (data.indexOf("\"action\":") != -1) {
-    int start = data.indexOf("\"action\":") + 9;
-    int end = data.indexOf("\"", start);
-    navData.action = data.substring(start, end);
+// 读取整数（可带负号），超出int范围时截断
+int readJsonInt(const char* line, size_t length, size_t& pos) {
+  bool negative = false;
+  if (pos < length && line[pos] == '-') {
+    negative = true;
+    pos++;
   }
+  int64_t value = 0;
+  while (pos < length && line[pos] >= '0' && line[pos] <= '9') {
+    if (value <= INT32_MAX) {
+      value = value * 10 + (line[pos] - '0');
+    }
+    pos++;
+  }
+  if (value > INT32_MAX) {
+    value = INT32_MAX;
+  }
+  return (int)(negative ? -value : value);
+}
 
-  if (data.indexOf("\"distance\":") != -1) {
-    int start = data.indexOf("\"distance\":") + 11;
-    int end = data.indexOf(",", start);
-    if (end == -1) end = data.indexOf("}", start);
-    navData.distance = data.substring(start, end).toInt();
+// 截断后去掉末尾不完整的UTF-8字符，返回新的长度
+size_t utf8Trim(const char* s, size_t n) {
+  size_t i = n;
+  while (i > 0 && ((uint8_t)s[i - 1] & 0xC0) == 0x80) {
+    i--;
+  }
+  if (i == 0) {
+    return n;
   }
+  uint8_t lead = (uint8_t)s[i - 1];
+  size_t charLength = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+  return i - 1 + charLength <= n ? n : i - 1;
+}
 
-  if (data.indexOf("\"remainingTime\":") != -1) {
-    int start = data.indexOf("\"remainingTime\":") + 16;
-    int end = data.indexOf(",", start);
-    if (end == -1) end = data.indexOf("}", start);
-    navData.remainingTime = data.substring(start, end).toInt();
+// 复制最多n个字节并以0结尾，放不下时按UTF-8字符截断
+void copyString(char* out, size_t size, const char* s, size_t n) {
+  if (n > size - 1) {
+    n = utf8Trim(s, size - 1);
   }
+  memcpy(out, s, n);
+  out[n] = '\0';
+}
 
-  if (data.indexOf("\"speed\":") != -1) {
-    int start = data.indexOf("\"speed\":") + 8;
-    int end = data.indexOf(",", start);
-    if (end == -1) end = data.indexOf("}", start);
-    navData.speed = data.substring(start, end).toInt();
+// 在特征值中声明支持的协议版本，手机连接后读取并协商格式
+void publishCapabilities() {
+  uint8_t caps[] = {
+    PROTO_MAGIC, 2, (PROTO_VERSION << 4) | FRAME_CAPABILITIES,
+    PROTO_VERSION, ROAD_DICT_SIZE
+  };
+  pCharacteristic->setValue(caps, sizeof(caps));
+}
+
+// 新连接开始时清空协议状态
+void resetProtocolState() {
+  lineLength = 0;
+  lineOverflow = false;
+  frameLength = 0;
+  haveKeyframe = false;
+  lastSequence = 0;
+  for (int i = 0; i <= ROAD_DICT_SIZE; i++) {
+    roadDictionary[i][0] = '\0';
   }
+}
 
-  navData.isActive = true;
+uint32_t readVarint(const uint8_t* frame, size_t length, size_t& pos) {
+  uint32_t value = 0;
+  int shift = 0;
+  while (pos < length && shift < 35) {
+    uint8_t b = frame[pos++];
+    value |= (uint32_t)(b & 0x7F) << shift;
+    if ((b & 0x80) == 0) {
+      break;
+    }
+    shift += 7;
+  }
+  return value;
+}
 
-  // 更新显示
-  updateDisplay();
+// 长度前缀的字符串，直接从帧中复制到out；out为NULL时只跳过
+void readString(const uint8_t* frame, size_t length, size_t& pos, char* out, size_t size) {
+  if (pos >= length) {
+    if (out != NULL) {
+      out[0] = '\0';
+    }
+    return;
+  }
+  size_t n = frame[pos++];
+  if (pos + n > length) {
+    n = length - pos;
+  }
+  if (out != NULL) {
+    copyString(out, size, (const char*)frame + pos, n);
+  }
+  pos += n;
+}
+
+// 请求手机补发关键帧
+void requestResync() {
+  if (millis() - lastResyncRequest < RESYNC_INTERVAL_MS) {
+    return;
+  }
+  lastResyncRequest = millis();
+  Serial.println("请求重新同步");
+
+  uint8_t request[] = {
+    PROTO_MAGIC, 1, (PROTO_VERSION << 4) | FRAME_RESYNC, lastSequence
+  };
+  pCharacteristic->setValue(request, sizeof(request));
+  pCharacteristic->notify();
+}
+
+// 解析道路ID，字典中没有该道路时返回false
+bool applyRoad(uint32_t roadId) {
+  if (roadId == 0) {
+    navData.roadName[0] = '\0';
+    return true;
+  }
+  if (roadId > ROAD_DICT_SIZE || roadDictionary[roadId][0] == '\0') {
+    return false;
+  }
+  const char* road = roadDictionary[roadId];
+  copyString(navData.roadName, sizeof(navData.roadName), road, strlen(road));
+  return true;
+}
+
+// 道路定义直接写入字典，ID超出字典范围时跳过
+void readRoadDefinition(uint32_t roadId, const uint8_t* frame, size_t length, size_t& pos) {
+  char* slot = roadId > 0 && roadId <= ROAD_DICT_SIZE ? roadDictionary[roadId] : NULL;
+  readString(frame, length, pos, slot, ROAD_NAME_SIZE);
+}
+
+void applyAction(uint8_t flags, uint8_t actionCode, const uint8_t* frame, size_t length, size_t& pos) {
+  if (flags & FLAG_CUSTOM_ACTION) {
+    readString(frame, length, pos, navData.action, sizeof(navData.action));
+  } else if (actionCode < ACTION_CODE_COUNT) {
+    const char* action = ACTION_CODES[actionCode];
+    copyString(navData.action, sizeof(navData.action), action, strlen(action));
+  }
+}
+
+// 解析导航数据（二进制格式）
+void parseBinaryFrame(const uint8_t* frame, size_t length) {
+  uint8_t version = frame[2] >> 4;
+  uint8_t type = frame[2] & 0x0F;
+
+  if (version == 1 && type == FRAME_FULL && length >= PROTO_HEADER_SIZE + 2) {
+    parseFullFrameV1(frame, length);
+  } else if (version == 2 && (type == FRAME_FULL || type == FRAME_DELTA) &&
+             length >= PROTO_HEADER_SIZE + 3) {
+    parseFrameV2(frame, length, type);
+  } else {
+    Serial.println("不支持的帧");
+  }
+}
+
+void parseFullFrameV1(const uint8_t* frame, size_t length) {
+  size_t pos = PROTO_HEADER_SIZE;
+  uint8_t flags = frame[pos++];
+  uint8_t actionCode = frame[pos++];
+  navData.distance = readVarint(frame, length, pos);
+  navData.remainingTime = readVarint(frame, length, pos);
+  navData.speed = readVarint(frame, length, pos);
+  uint32_t roadId = readVarint(frame, length, pos);
+
+  if (flags & FLAG_ROAD_DEFINITION) {
+    readRoadDefinition(roadId, frame, length, pos);
+  }
+  applyRoad(roadId);
+  applyAction(flags, actionCode, frame, length, pos);
+  navData.isActive = (flags & FLAG_ACTIVE) != 0;
+}
+
+// 关键帧包含全部字段；增量帧只包含掩码中的字段，且序号必须连续
+void parseFrameV2(const uint8_t* frame, size_t length, uint8_t type) {
+  size_t pos = PROTO_HEADER_SIZE;
+  uint8_t sequence = frame[pos++];
+  uint8_t mask = frame[pos++];
+  uint8_t flags = frame[pos++];
+
+  if (type == FRAME_DELTA && (!haveKeyframe || sequence != (uint8_t)(lastSequence + 1))) {
+    Serial.println("增量帧序号不连续");
+    requestResync();
+    return;
+  }
+
+  uint8_t actionCode = 0;
+  if (mask & FIELD_ACTION) {
+    actionCode = frame[pos++];
+  }
+  if (mask & FIELD_DISTANCE) {
+    navData.distance = readVarint(frame, length, pos);
+  }
+  if (mask & FIELD_REMAINING_TIME) {
+    navData.remainingTime = readVarint(frame, length, pos);
+  }
+  if (mask & FIELD_SPEED) {
+    navData.speed = readVarint(frame, length, pos);
+  }
+  if (mask & FIELD_ROAD_NAME) {
+    uint32_t roadId = readVarint(frame, length, pos);
+    if (flags & FLAG_ROAD_DEFINITION) {
+      readRoadDefinition(roadId, frame, length, pos);
+    }
+    if (!applyRoad(roadId)) {
+      Serial.println("未知道路ID");
+      haveKeyframe = false;
+      requestResync();
+      return;
+    }
+  }
+  if (mask & FIELD_ACTION) {
+    applyAction(flags, actionCode, frame, length, pos);
+  }
+  navData.isActive = (flags & FLAG_ACTIVE) != 0;
+
+  lastSequence = sequence;
+  if (type == FRAME_FULL) {
+    haveKeyframe = true;
+  }
 }
 
 // 更新屏幕显示
+// 与屏幕上已显示的内容比较，只重绘发生变化的字段区域；导航状态切换时才整屏重绘静态标签
 void updateDisplay() {
+  uint8_t dirty = 0;
+  if (!layoutDrawn || navData.isActive != shownData.isActive) {
+    drawLayout(navData.isActive);
+    layoutDrawn = true;
+    dirty = DIRTY_ALL;
+  } else if (navData.isActive) {
+    if (strcmp(navData.roadName, shownData.roadName) != 0) dirty |= FIELD_ROAD_NAME;
+    if (strcmp(navData.action, shownData.action) != 0) dirty |= FIELD_ACTION;
+    if (navData.distance != shownData.distance) dirty |= FIELD_DISTANCE;
+    if (navData.remainingTime != shownData.remainingTime) dirty |= FIELD_REMAINING_TIME;
+    if (navData.speed != shownData.speed) dirty |= FIELD_SPEED;
+  }
+  if (deviceConnected != shownConnected) {
+    dirty |= DIRTY_STATUS;
+  }
+  if (dirty == 0) {
+    return;
+  }
+
+  if (navData.isActive) {
+    char text[32];
+    if (dirty & FIELD_ROAD_NAME) {
+      drawField(REGION_ROAD, navData.roadName, TFT_WHITE);
+    }
+    if (dirty & FIELD_ACTION) {
+      drawField(REGION_ACTION, navData.action, TFT_GREEN);
+    }
+    if (dirty & FIELD_DISTANCE) {
+      snprintf(text, sizeof(text), "%d 米", navData.distance);
+      drawField(REGION_DISTANCE, text, TFT_WHITE);
+    }
+    if (dirty & FIELD_REMAINING_TIME) {
+      formatTime(navData.remainingTime, text, sizeof(text));
+      drawField(REGION_REMAINING_TIME, text, TFT_WHITE);
+    }
+    if (dirty & FIELD_SPEED) {
+      snprintf(text, sizeof(text), "%d km/h", navData.speed);
+      drawField(REGION_SPEED, text, TFT_WHITE);
+    }
+  }
+  if (dirty & DIRTY_STATUS) {
+    drawStatus();
+  }
+
+  shownData = navData;
+  shownConnected = deviceConnected;
+}
+
+// 整屏重绘标题和各字段的标签，字段的值由updateDisplay随后绘制
+void drawLayout(bool active) {
   tft.fillScreen(TFT_BLACK);
 
   // 标题
@@ -191,99 +749,70 @@ void updateDisplay() {
   // 分割线
   tft.drawLine(0, 45, tft.width(), 45, TFT_WHITE);
 
-  if (navData.isActive) {
-    // 道路名称
-    tft.setTextSize(2);
+  tft.setTextSize(2);
+  if (active) {
     tft.setTextColor(TFT_YELLOW, TFT_BLACK);
     tft.setCursor(10, 60);
     tft.print("当前道路: ");
-    tft.setTextColor(TFT_WHITE, TFT_BLACK);
-    tft.setCursor(10, 85);
-    tft.print(navData.roadName);
-
-    // 导航动作
-    tft.setTextColor(TFT_YELLOW, TFT_BLACK);
     tft.setCursor(10, 115);
     tft.print("下一步: ");
-    tft.setTextColor(TFT_GREEN, TFT_BLACK);
-    tft.setCursor(10, 140);
-    tft.print(navData.action);
-
-    // 距离
-    tft.setTextColor(TFT_YELLOW, TFT_BLACK);
-    tft.setCursor(10, 170);
+    // 标签与字段值在同一行
+    tft.setCursor(10, REGION_DISTANCE.y);
     tft.print("距离: ");
-    tft.setTextColor(TFT_WHITE, TFT_BLACK);
-    tft.setCursor(80, 170);
-    tft.print(navData.distance);
-    tft.print(" 米");
-
-    // 剩余时间
-    tft.setTextColor(TFT_YELLOW, TFT_BLACK);
-    tft.setCursor(10, 200);
+    tft.setCursor(10, REGION_REMAINING_TIME.y);
     tft.print("剩余时间: ");
-    tft.setTextColor(TFT_WHITE, TFT_BLACK);
-    tft.setCursor(120, 200);
-    tft.print(formatTime(navData.remainingTime));
-
-    // 速度
-    tft.setTextColor(TFT_YELLOW, TFT_BLACK);
-    tft.setCursor(10, 230);
+    tft.setCursor(10, REGION_SPEED.y);
     tft.print("当前速度: ");
-    tft.setTextColor(TFT_WHITE, TFT_BLACK);
-    tft.setCursor(120, 230);
-    tft.print(navData.speed);
-    tft.print(" km/h");
-
-    // 连接状态
-    if (deviceConnected) {
-      tft.fillCircle(tft.width() - 20, 20, 5, TFT_GREEN);
-      tft.setTextSize(1);
-      tft.setTextColor(TFT_GREEN, TFT_BLACK);
-      tft.setCursor(tft.width() - 60, 30);
-      tft.print("已连接");
-    } else {
-      tft.fillCircle(tft.width() - 20, 20, 5, TFT_RED);
-      tft.setTextSize(1);
-      tft.setTextColor(TFT_RED, TFT_BLACK);
-      tft.setCursor(tft.width() - 60, 30);
-      tft.print("未连接");
-    }
   } else {
     // 未开始导航
-    tft.setTextSize(2);
     tft.setTextColor(TFT_WHITE, TFT_BLACK);
     tft.setCursor(10, 80);
     tft.print("等待导航开始...");
+  }
+}
 
-    // 连接状态
-    if (deviceConnected) {
-      tft.fillCircle(tft.width() - 20, 20, 5, TFT_GREEN);
-      tft.setTextSize(1);
-      tft.setTextColor(TFT_GREEN, TFT_BLACK);
-      tft.setCursor(tft.width() - 60, 30);
-      tft.print("已连接");
-    } else {
-      tft.fillCircle(tft.width() - 20, 20, 5, TFT_RED);
-      tft.setTextSize(1);
-      tft.setTextColor(TFT_RED, TFT_BLACK);
-      tft.setCursor(tft.width() - 60, 30);
-      tft.print("未连接");
-    }
+// 在区域内绘制一个字段：先画到精灵中再一次性推送，避免先清空再绘制造成的闪烁；
+// 精灵分配失败时退回直接在屏幕上清空区域后绘制
+void drawField(const Region& region, const char* text, uint16_t color) {
+  if (spriteReady) {
+    fieldSprite.fillSprite(TFT_BLACK);
+    fieldSprite.setTextSize(2);
+    fieldSprite.setTextColor(color, TFT_BLACK);
+    fieldSprite.setCursor(0, 0);
+    fieldSprite.print(text);
+    // 精灵比大部分区域宽，超出屏幕的部分由TFT_eSPI裁剪
+    fieldSprite.pushSprite(region.x, region.y);
+    return;
   }
+  tft.fillRect(region.x, region.y, region.w, region.h, TFT_BLACK);
+  tft.setTextSize(2);
+  tft.setTextColor(color, TFT_BLACK);
+  tft.setCursor(region.x, region.y);
+  tft.print(text);
+}
+
+// 右上角的连接状态
+void drawStatus() {
+  uint16_t color = deviceConnected ? TFT_GREEN : TFT_RED;
+  tft.fillRect(REGION_STATUS.x, REGION_STATUS.y, REGION_STATUS.w, REGION_STATUS.h, TFT_BLACK);
+  tft.fillCircle(tft.width() - 20, 20, 5, color);
+  tft.setTextSize(1);
+  tft.setTextColor(color, TFT_BLACK);
+  tft.setCursor(tft.width() - 60, 30);
+  tft.print(deviceConnected ? "已连接" : "未连接");
 }
 
 // 格式化时间（秒转换为分钟）
-String formatTime(int seconds) {
+void formatTime(int seconds, char* out, size_t size) {
   if (seconds < 60) {
-    return String(seconds) + " 秒";
+    snprintf(out, size, "%d 秒", seconds);
   } else {
     int minutes = seconds / 60;
     int remainingSeconds = seconds % 60;
     if (remainingSeconds == 0) {
-      return String(minutes) + " 分钟";
+      snprintf(out, size, "%d 分钟", minutes);
     } else {
-      return String(minutes) + " 分 " + String(remainingSeconds) + " 秒";
+      snprintf(out, size, "%d 分 %d 秒", minutes, remainingSeconds);
     }
   }
-}
\ No newline at end of file
+}